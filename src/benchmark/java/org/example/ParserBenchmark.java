@@ -0,0 +1,166 @@
+package org.example;
+
+import model.TennisCourt;
+import util.HtmlTableTokenizer;
+import util.ParserUtil;
+import util.ReservedCourtParser;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/// コート表・予約一覧の解析処理の計測用エントリーポイント
+///
+/// 同じHTMLをJsoupでの解析とDOMを作らない読み取り（HtmlTableTokenizer）の両方で解析し、
+/// 結果が一致することを確かめたうえで、1回あたりの処理時間と確保したメモリ量を比べる。
+/// 引数に保存済みのHTMLファイルを渡すとそれを使う（ファイル名に "yyk" を含むものは予約一覧として解析する）。
+/// 引数がなければ、実際のページに近い形の合成HTMLを使う。
+public class ParserBenchmark {
+    /// 計測前の慣らし回数
+    private static final int WARMUP_ITERATIONS = 10_000;
+    /// 計測回数
+    private static final int MEASURE_ITERATIONS = 10_000;
+    private static final String YMD = "20250601";
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> courtPages = new LinkedHashMap<>();
+        Map<String, String> reservedPages = new LinkedHashMap<>();
+        if (args.length == 0) {
+            courtPages.put("合成（コート表）", syntheticCourtPage());
+            reservedPages.put("合成（予約一覧）", syntheticReservedPage());
+        }
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            String html = Files.readString(path, StandardCharsets.UTF_8);
+            (path.getFileName().toString().contains("yyk") ? reservedPages : courtPages).put(path.getFileName().toString(), html);
+        }
+
+        boolean allMatched = true;
+        for (Map.Entry<String, String> page : courtPages.entrySet()) {
+            allMatched &= run(page.getKey(), page.getValue(), "link-table",
+                    html -> ParserUtil.parseTennisCourtsFromHtml(html, YMD, false),
+                    html -> ParserUtil.parseTennisCourtsFromHtml(html, YMD, true));
+        }
+        for (Map.Entry<String, String> page : reservedPages.entrySet()) {
+            allMatched &= run(page.getKey(), page.getValue(), null,
+                    html -> ReservedCourtParser.parseReservedTennisCourtsFromHtml(html, false),
+                    html -> ReservedCourtParser.parseReservedTennisCourtsFromHtml(html, true));
+        }
+        if (!allMatched) {
+            System.exit(1);
+        }
+    }
+
+    /// 1つのHTMLについて両方の解析を計測して結果を出力する（結果が一致すればtrue）
+    private static boolean run(String label, String html, String requiredClass,
+                               Function<String, List<TennisCourt>> jsoup, Function<String, List<TennisCourt>> streaming) {
+        List<TennisCourt> expected = jsoup.apply(html);
+        List<TennisCourt> actual = streaming.apply(html);
+        boolean matched = describe(expected).equals(describe(actual));
+        // Jsoupでの解析に切り替わる書き方を含んでいれば、ストリーミング側の計測値はJsoup分を含む
+        boolean fallback = HtmlTableTokenizer.readFirstTable(html, requiredClass) == null;
+
+        long[] jsoupCost = measure(jsoup, html);
+        long[] streamingCost = measure(streaming, html);
+        System.out.println("\n    ・" + label + "（" + html.length() + "文字、" + actual.size() + "件"
+                + (fallback ? "、Jsoupに切り替え" : "") + "）: 結果" + (matched ? "一致" : "不一致"));
+        System.out.println("      Jsoup        : " + format(jsoupCost));
+        System.out.println("      ストリーミング: " + format(streamingCost)
+                + String.format(" （時間 %.1f倍速、メモリ %.1f分の1）",
+                (double) jsoupCost[0] / Math.max(1, streamingCost[0]), (double) jsoupCost[1] / Math.max(1, streamingCost[1])));
+        if (!matched) {
+            System.out.println("      Jsoup        : " + describe(expected));
+            System.out.println("      ストリーミング: " + describe(actual));
+        }
+        return matched;
+    }
+
+    /// 1回あたりの処理時間（ナノ秒）と確保したメモリ量（バイト）を計測する
+    private static long[] measure(Function<String, List<TennisCourt>> parser, String html) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += parser.apply(html).size();
+        }
+        long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            sink += parser.apply(html).size();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        if (sink == 42) {
+            // 最適化で解析処理が省かれないよう結果を使う
+            System.out.print("");
+        }
+        return new long[]{elapsedNanos / MEASURE_ITERATIONS, allocated / MEASURE_ITERATIONS};
+    }
+
+    private static String format(long[] cost) {
+        return String.format("%,d ns/回、%,d バイト/回", cost[0], cost[1]);
+    }
+
+    /// 比較用にコートリストを文字列化する
+    private static String describe(List<TennisCourt> courtList) {
+        StringBuilder sb = new StringBuilder();
+        for (TennisCourt court : courtList) {
+            sb.append(court.getCourtName()).append('@').append(court.getYmd()).append(court.getTimeSlotList()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /// テニスiframeに近い形の合成HTML（同じコートの行が3回繰り返され、コメント・スクリプトを含む）
+    static String syntheticCourtPage() {
+        String[] times = {"9:00", "11:00", "13:00", "15:00", "17:00", "19:00"};
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html lang=\"ja\"><head><meta charset=\"UTF-8\"><title>施設空き状況</title>\n")
+          .append("<script type=\"text/javascript\">function sel(u){ if (u < 0) { return; } location.href = u; }</script>\n")
+          .append("<style>.link-table td { text-align: center; }</style></head>\n<body>\n")
+          .append("<form name=\"form1\" method=\"post\" action=\"/cultos/reserve/gin_sisetu\"><input type=\"hidden\" name=\"g_sessionid\" value=\"abc\"></form>\n")
+          .append("<div class=\"contents\"><h2>テニスコート</h2>\n<!-- 旧レイアウト <table class=\"link-table\"><tr><td>旧</td></tr></table> -->\n");
+        sb.append("<table class=\"link-table\" summary=\"空き状況\">\n");
+        for (int repeat = 0; repeat < 3; repeat++) {
+            sb.append("<tr><th>施設</th>");
+            for (String time : times) {
+                sb.append("<th>").append(time).append("<br>～</th>");
+            }
+            sb.append("</tr>\n");
+            for (int court = 1; court <= 16; court++) {
+                sb.append("<tr>\n  <td class=\"name\">").append(court <= 8 ? "中央公園庭球場" : "柳島スポーツ公園庭球場")
+                  .append(court).append("コート</td>\n");
+                for (int t = 0; t < times.length; t++) {
+                    if ((court + t) % 3 == 0) {
+                        sb.append("  <td><a href=\"/cultos/reserve/gin_yoyaku?ymd=").append(YMD).append("&amp;court=").append(court)
+                          .append("&amp;time=").append(t).append("\"><img src=\"/img/maru.gif\" alt=\"○\">○</a></td>\n");
+                    } else {
+                        sb.append("  <td><!-- 予約済み -->×</td>\n");
+                    }
+                }
+                sb.append("</tr>\n");
+            }
+        }
+        sb.append("</table>\n</div>\n</body></html>\n");
+        return sb.toString();
+    }
+
+    /// 予約一覧に近い形の合成HTML
+    static String syntheticReservedPage() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<html><head><title>予約一覧</title></head><body>\n<table class=\"yyk-list\">\n")
+          .append("<tr><th>利用日時</th><th>施設</th><th>状態</th></tr>\n");
+        for (int i = 1; i <= 20; i++) {
+            String ymd = "202506" + String.format("%02d", i);
+            sb.append("<tr><td><a href=\"/cultos/reserve/gin_yyk_detail?ymd=").append(ymd).append("&amp;no=").append(i).append("\">")
+              .append("2025/06/").append(String.format("%02d", i)).append("(日) ").append(9 + (i % 5) * 2).append(":00〜")
+              .append(11 + (i % 5) * 2).append(":00</a></td><td>中央公園庭球場").append(1 + i % 8).append("コート</td><td>予約済</td></tr>\n");
+        }
+        sb.append("</table>\n</body></html>\n");
+        return sb.toString();
+    }
+}
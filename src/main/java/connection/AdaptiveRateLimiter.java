@@ -0,0 +1,169 @@
+package connection;
+
+import log.LogWriter;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/// サイト向けの流量制御（トークンバケット＋AIMDによる同時実行数制御）
+///
+/// ・トークンバケット：秒間リクエスト数の上限（礼儀としての天井）を守る
+/// ・AIMD：応答が順調なら同時実行数を少しずつ増やし（加算増加）、
+///   遅延の悪化・5xx/429・エラー画面を検知したら半分に減らす（乗算減少）
+///
+/// 遅延の悪化は、リクエストの種類ごとに直近の正常な応答の最小値（基準遅延）と比べて判断する。
+/// HEAD・復旧確認・304の応答時間は通常のページ取得と比べられないため、基準遅延にも混雑判定にも使わない。
+public class AdaptiveRateLimiter {
+    /// 1秒あたりに補充するトークン数
+    private final double tokensPerSecond;
+    /// バケットの容量（瞬間的に連続送信できる数）
+    private final double burst;
+    /// 同時実行数の下限・上限
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    /// 基準遅延の何倍を超えたら混雑とみなすか
+    private final double latencyTolerance;
+    /// 基準遅延を求める直近の応答数
+    private final int baselineWindow;
+
+    /// 現在のトークン数（負なら予約済みの借り越し）
+    private double tokens;
+    /// 最後にトークンを補充した時刻
+    private long lastRefillNanos;
+    /// 現在の同時実行数の上限（AIMDで増減）
+    private double concurrencyLimit;
+    /// 実行中のリクエスト数
+    private int inFlight = 0;
+    /// リクエストの種類ごとの直近の正常な応答時間（最小値を基準遅延とする）
+    private final Map<RequestClass, LatencyTracker> baselines = new EnumMap<>(RequestClass.class);
+    /// 応答時間の指数移動平均
+    private double ewmaLatencyNanos = 0;
+    /// 最後に減少させた時刻（1往復内での連続減少を防ぐ）
+    private long lastDecreaseNanos = 0;
+
+    private int decreaseCount = 0;
+    private long totalTokenWaitNanos = 0;
+    private double peakConcurrencyLimit;
+
+    public AdaptiveRateLimiter(double tokensPerSecond, double burst, int minConcurrency, int initialConcurrency,
+                               int maxConcurrency, double latencyTolerance, int baselineWindow) {
+        this.tokensPerSecond = tokensPerSecond;
+        this.burst = burst;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.latencyTolerance = latencyTolerance;
+        this.baselineWindow = baselineWindow;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.concurrencyLimit = Math.max(minConcurrency, Math.min(initialConcurrency, maxConcurrency));
+        this.peakConcurrencyLimit = concurrencyLimit;
+    }
+
+    /// 実行枠を取得できれば取得してtrueを返す（待たない）
+    public synchronized boolean tryAcquireSlot() {
+        if (inFlight < (int) concurrencyLimit) {
+            inFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    /// トークンを1つ予約し、送信まで待つべき時間（ナノ秒）を返す
+    public synchronized long reserveToken() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * tokensPerSecond);
+        lastRefillNanos = now;
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        long waitNanos = (long) (-tokens / tokensPerSecond * 1_000_000_000L);
+        totalTokenWaitNanos += waitNanos;
+        return waitNanos;
+    }
+
+    /// 実行枠とトークンを取得するまで待つ（同期リクエスト用）
+    public void acquire() throws InterruptedException {
+        synchronized (this) {
+            while (inFlight >= (int) concurrencyLimit) {
+                wait();
+            }
+            inFlight++;
+        }
+        long waitNanos = reserveToken();
+        if (waitNanos > 0) {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+
+    /// 実行枠を返却する
+    public synchronized void releaseSlot() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * 応答結果を記録し、同時実行数を調整する。
+     *
+     * @param requestClass リクエストの種類（HEAD・復旧確認など応答時間を比べないリクエストはnull）
+     * @param latencyNanos 応答時間
+     * @param status       HTTPステータス（通信失敗時は0）
+     * @param errorPage    エラー画面（dspErr・無効なパラメータ）だったか
+     */
+    public synchronized void recordOutcome(RequestClass requestClass, long latencyNanos, int status, boolean errorPage) {
+        boolean failed = status == 0 || status == 429 || status >= 500 || errorPage;
+        ewmaLatencyNanos = ewmaLatencyNanos == 0 ? latencyNanos : ewmaLatencyNanos * 0.8 + latencyNanos * 0.2;
+        boolean congested = false;
+        if (requestClass != null && status != 304 && !failed) {
+            // 基準遅延は直近の応答だけから求める（深夜の速い応答などをいつまでも基準にしない）
+            LatencyTracker window = baselines.computeIfAbsent(requestClass, key -> new LatencyTracker(baselineWindow, 1));
+            long baseline = window.percentileNanos(0);
+            congested = baseline > 0 && latencyNanos > baseline * latencyTolerance;
+            window.record(latencyNanos);
+        }
+
+        long now = System.nanoTime();
+        if (failed || congested) {
+            // 同じ混雑で何度も減らさないよう、平均1往復分の間隔を空ける
+            if (now - lastDecreaseNanos > ewmaLatencyNanos) {
+                concurrencyLimit = Math.max(minConcurrency, concurrencyLimit / 2);
+                lastDecreaseNanos = now;
+                decreaseCount++;
+                System.out.print(" / 流量制御: 同時実行数を" + (int) concurrencyLimit + "に減少");
+            }
+        } else {
+            // 1往復あたり概ね+1となるよう 1/limit ずつ増やす
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+            peakConcurrencyLimit = Math.max(peakConcurrencyLimit, concurrencyLimit);
+        }
+        notifyAll();
+    }
+
+    /// 実行枠を返却し、応答結果を記録する（同期リクエスト用）
+    public void release(RequestClass requestClass, long latencyNanos, int status, boolean errorPage) {
+        releaseSlot();
+        recordOutcome(requestClass, latencyNanos, status, errorPage);
+    }
+
+    /// 現在の基準遅延（ナノ秒。まだ正常な応答がなければ0）
+    synchronized long getBaselineLatencyNanos(RequestClass requestClass) {
+        LatencyTracker window = baselines.get(requestClass);
+        return window == null ? 0 : window.percentileNanos(0);
+    }
+
+    synchronized int getConcurrencyLimit() {
+        return (int) concurrencyLimit;
+    }
+
+    /// 今回の処理の流量制御の状況をログに出力する
+    public synchronized void report() {
+        StringBuilder baselineText = new StringBuilder();
+        baselines.forEach((requestClass, window) -> baselineText.append(' ').append(requestClass)
+                .append(String.format(":%.0fms", window.percentileNanos(0) / 1_000_000.0)));
+        LogWriter.write(String.format(
+                "[INFO] 流量制御: 同時実行数 現在%d / 最大到達%d（上限%d） 減少%d回 基準遅延%s 平均遅延%.0fms トークン待ち累計%.0fms",
+                (int) concurrencyLimit, (int) peakConcurrencyLimit, maxConcurrency, decreaseCount,
+                baselineText.length() == 0 ? " なし" : baselineText,
+                ewmaLatencyNanos / 1_000_000.0, totalTokenWaitNanos / 1_000_000.0));
+    }
+}
@@ -0,0 +1,138 @@
+package connection;
+
+import log.LogWriter;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/// 非同期リクエストの再試行と重複リクエスト（ヘッジ）
+///
+/// 1回分の試行で応答が遅ければ同じリクエストをもう1本送り、先に成功した方を採用して残りは取り消す
+/// （送信待ちなら送らず、通信中なら中断する）。試行が失敗すれば、リクエストの種類ごとの方針でバックオフ後に再試行する。
+final class AsyncRetry {
+    /// 再試行・重複リクエストの送信を遅延実行するスケジューラ
+    private final Supplier<ScheduledExecutorService> scheduler;
+    /// リクエストの種類ごとの、重複リクエストを送るまでの待ち時間（0以下なら送らない）
+    private final ToLongFunction<RequestClass> hedgeDelayNanos;
+    /// 再試行した回数
+    private final AtomicLong retryCount = new AtomicLong();
+    /// 重複リクエスト（ヘッジ）を送った回数
+    private final AtomicLong hedgeCount = new AtomicLong();
+    /// 重複リクエストの方が先に応答した回数
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    AsyncRetry(Supplier<ScheduledExecutorService> scheduler, ToLongFunction<RequestClass> hedgeDelayNanos) {
+        this.scheduler = scheduler;
+        this.hedgeDelayNanos = hedgeDelayNanos;
+    }
+
+    /**
+     * 試行が失敗したらリクエストの種類ごとの方針で再試行する。
+     *
+     * @param url          接続先のURL（ログ用）
+     * @param requestClass リクエストの種類
+     * @param attempt      1回分のリクエストを送信し、そのFutureを返す処理
+     * @return いずれかの試行の結果
+     */
+    <T> CompletableFuture<T> withRetry(String url, RequestClass requestClass, Supplier<CompletableFuture<T>> attempt) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        runAttempt(url, requestClass, attempt, 1, result);
+        return result;
+    }
+
+    /// 1回分の試行（必要ならヘッジ付き）を行い、失敗すればバックオフ後に次の試行を予約する
+    private <T> void runAttempt(String url, RequestClass requestClass, Supplier<CompletableFuture<T>> attempt,
+                                int attemptNo, CompletableFuture<T> result) {
+        hedged(requestClass, attempt).whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (attemptNo >= requestClass.getMaxAttempts() || cause instanceof CancellationException
+                    || cause instanceof SiteUnavailableException) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            long backoff = requestClass.backoffMillis(attemptNo);
+            retryCount.incrementAndGet();
+            LogWriter.write("[WARN] 非同期接続失敗のため再試行します（" + attemptNo + "/" + requestClass.getMaxAttempts()
+                    + "回目失敗, " + backoff + "ms後）: " + url + " : " + cause);
+            scheduler.get().schedule(() -> runAttempt(url, requestClass, attempt, attemptNo + 1, result),
+                    backoff, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * 直近の応答時間のパーセンタイルを過ぎても応答がなければ、同じリクエストをもう1本送る。
+     * 先に成功した方を採用してもう一方は取り消し、両方失敗した場合のみ失敗とする（冪等なGETのみが対象）。
+     */
+    private <T> CompletableFuture<T> hedged(RequestClass requestClass, Supplier<CompletableFuture<T>> attempt) {
+        CompletableFuture<T> primary = attempt.get();
+        long delayNanos = requestClass.isHedged() ? hedgeDelayNanos.applyAsLong(requestClass) : 0;
+        if (delayNanos <= 0) {
+            return primary;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> hedge = new AtomicReference<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        });
+        // 決着したら負けた方を取り消す（完了済みのFutureには何もしない）
+        result.whenComplete((value, error) -> {
+            primary.cancel(false);
+            CompletableFuture<T> sent = hedge.get();
+            if (sent != null) {
+                sent.cancel(false);
+            }
+        });
+        scheduler.get().schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            hedgeCount.incrementAndGet();
+            CompletableFuture<T> sent = attempt.get();
+            hedge.set(sent);
+            if (result.isDone()) {
+                // 送信と同時に決着した
+                sent.cancel(false);
+            }
+            sent.whenComplete((value, error) -> {
+                if (error == null) {
+                    if (result.complete(value)) {
+                        hedgeWinCount.incrementAndGet();
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }, delayNanos, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    long getRetryCount() {
+        return retryCount.get();
+    }
+
+    long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+}
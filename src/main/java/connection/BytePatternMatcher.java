@@ -0,0 +1,334 @@
+package connection;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// 復号前のバイト列からページの目印（PageMarker）をまとめて探す照合器
+///
+/// 目印を文字コードごとにバイト列へ変換し、Aho-Corasick法の状態遷移表で1バイトずつ1回だけ走査する。
+/// 判定は「復号して空行除去した本文（空行除去しない走査では復号したままの本文）に contains した結果」と一致させる：
+/// - Shift_JISでは2バイト文字の途中から始まる一致を除く（復号できないバイト並びがあれば走査結果を出さず、呼び出し元が復号して判定する）
+/// - 空行除去する場合、空白で始まる目印は、同じ行でそれより前に空白以外がある場合のみ一致とする（行頭の空白は空行除去で消えるため）
+/// 一致判定が文字の区切りを追えない文字コード（EUC-JP・UTF-16など）には対応せず、呼び出し元が復号してから判定する。
+final class BytePatternMatcher {
+    /// 文字コードごとの照合器（対応しない文字コードは空）
+    private static final Map<Charset, Optional<BytePatternMatcher>> CACHE = new ConcurrentHashMap<>();
+    /// 直近のバイトを覚えておく数（目印の最大バイト長以上の2のべき乗）
+    private static final int RING = 128;
+    /// g_sessionidの値として読み取る最大バイト数（超えたら文字列から取り出し直す）
+    private static final int MAX_SESSION_ID_BYTES = 256;
+
+    private static final PageMarker[] MARKERS = PageMarker.values();
+
+    /// 目印ごとのバイト列（この文字コードで表せない目印はnull）
+    private final byte[][] patterns;
+    /// 状態遷移表（[状態 << 8 | バイト]。ASCII英字の大文字は小文字と同じ遷移）
+    private final int[] next;
+    /// 状態ごとに一致が確定する目印（序数のビット）
+    private final int[] outputs;
+    /// Shift_JISの2バイト文字を追うか
+    private final boolean shiftJis;
+    /// 1バイトで1文字に復号できるバイト（Shift_JISのみ）
+    private final boolean[] validSingle;
+    /// 2バイトで1文字に復号できる並び（[1バイト目 << 8 | 2バイト目]、Shift_JISのみ）
+    private final boolean[] validPair;
+
+    private BytePatternMatcher(byte[][] patterns, Charset charset, boolean shiftJis) {
+        this.patterns = patterns;
+        this.shiftJis = shiftJis;
+        this.validSingle = shiftJis ? new boolean[256] : null;
+        this.validPair = shiftJis ? new boolean[256 * 256] : null;
+        if (shiftJis) {
+            // 文字の区切りは、実際に復号に使うデコーダーと同じ判定にする
+            CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            ByteBuffer in = ByteBuffer.allocate(2);
+            CharBuffer out = CharBuffer.allocate(4);
+            for (int b1 = 0; b1 < 256; b1++) {
+                validSingle[b1] = decodesToOneChar(decoder, in, out, b1, -1);
+                if (!validSingle[b1]) {
+                    for (int b2 = 0; b2 < 256; b2++) {
+                        validPair[b1 << 8 | b2] = decodesToOneChar(decoder, in, out, b1, b2);
+                    }
+                }
+            }
+        }
+
+        // ▼トライ木を作る（大文字小文字を区別しない目印も区別する目印も、小文字にしたバイトでたどる）
+        List<int[]> gotoTable = new ArrayList<>();
+        List<Integer> outputList = new ArrayList<>();
+        gotoTable.add(newRow());
+        outputList.add(0);
+        for (int m = 0; m < patterns.length; m++) {
+            if (patterns[m] == null) {
+                continue;
+            }
+            int state = 0;
+            for (byte b : patterns[m]) {
+                int c = PageMarker.toLowerAscii(b & 0xFF);
+                if (gotoTable.get(state)[c] < 0) {
+                    gotoTable.get(state)[c] = gotoTable.size();
+                    gotoTable.add(newRow());
+                    outputList.add(0);
+                }
+                state = gotoTable.get(state)[c];
+            }
+            outputList.set(state, outputList.get(state) | 1 << m);
+        }
+
+        // ▼失敗遷移を幅優先で求め、状態遷移表を完成させる
+        int size = gotoTable.size();
+        int[][] table = gotoTable.toArray(new int[0][]);
+        int[] fail = new int[size];
+        outputs = new int[size];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < 256; c++) {
+            if (table[0][c] < 0) {
+                table[0][c] = 0;
+            } else {
+                fail[table[0][c]] = 0;
+                queue.add(table[0][c]);
+            }
+        }
+        outputs[0] = outputList.get(0);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            outputs[s] = outputList.get(s) | outputs[fail[s]];
+            for (int c = 0; c < 256; c++) {
+                int t = table[s][c];
+                if (t < 0) {
+                    table[s][c] = table[fail[s]][c];
+                } else {
+                    fail[t] = table[fail[s]][c];
+                    queue.add(t);
+                }
+            }
+        }
+        next = new int[size << 8];
+        for (int s = 0; s < size; s++) {
+            for (int c = 0; c < 256; c++) {
+                next[s << 8 | c] = table[s][PageMarker.toLowerAscii(c)];
+            }
+        }
+    }
+
+    private static boolean decodesToOneChar(CharsetDecoder decoder, ByteBuffer in, CharBuffer out, int b1, int b2) {
+        in.clear();
+        in.put((byte) b1);
+        if (b2 >= 0) {
+            in.put((byte) b2);
+        }
+        in.flip();
+        out.clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(in, out, true);
+        if (result.isError() || in.hasRemaining() || decoder.flush(out).isError()) {
+            return false;
+        }
+        return out.position() == 1;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[256];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /// 文字コードに対応する照合器を取得する（対応しない文字コードならnull）
+    static BytePatternMatcher forCharset(Charset charset) {
+        return CACHE.computeIfAbsent(charset, BytePatternMatcher::build).orElse(null);
+    }
+
+    private static Optional<BytePatternMatcher> build(Charset charset) {
+        String name = charset.name();
+        boolean shiftJis = name.equalsIgnoreCase("Shift_JIS") || name.equalsIgnoreCase("windows-31j");
+        // UTF-8は継続バイトが目印の先頭バイトと重ならないため、文字の区切りを追わなくてよい
+        boolean supported = shiftJis || charset.equals(StandardCharsets.UTF_8) || isAsciiCompatibleSingleByte(charset);
+        if (!supported) {
+            return Optional.empty();
+        }
+        CharsetEncoder encoder = charset.newEncoder();
+        byte[][] patterns = new byte[MARKERS.length][];
+        for (PageMarker marker : MARKERS) {
+            // 表せない（復号して元に戻らない）目印は、この文字コードの本文には現れない
+            if (encoder.canEncode(marker.getText())) {
+                byte[] encoded = marker.getText().getBytes(charset);
+                if (new String(encoded, charset).equals(marker.getText())) {
+                    patterns[marker.ordinal()] = encoded;
+                }
+            }
+        }
+        return Optional.of(new BytePatternMatcher(patterns, charset, shiftJis));
+    }
+
+    private static boolean isAsciiCompatibleSingleByte(Charset charset) {
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            return false;
+        }
+        String ascii = "<a=Z_\"&\n";
+        return Arrays.equals(ascii.getBytes(charset), ascii.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /// 1レスポンス分の走査を始める（stripLines: 本文を空行除去してから判定する場合と同じ結果にするか）
+    Scan newScan(boolean stripLines) {
+        return new Scan(stripLines);
+    }
+
+    /// 1レスポンス分の走査状態
+    final class Scan {
+        /// 空行除去した本文と同じ判定にするか
+        private final boolean stripLines;
+        private int state;
+        /// 走査したバイト数
+        private int position;
+        /// 直近のバイトと、それが文字の先頭か（Shift_JISのみ）
+        private final byte[] recent = new byte[RING];
+        private final boolean[] charStart = shiftJis ? new boolean[RING] : null;
+        /// 直前のバイトがShift_JISの2バイト文字の1バイト目ならその値（でなければ-1）
+        private int pendingLead = -1;
+        /// 復号できないバイト並びがあったか（あれば走査結果を使わない）
+        private boolean irregular;
+        /// 現在行で最初の空白以外のバイトの位置（まだなければ-1）
+        private int lineContentAt = -1;
+        private final Set<PageMarker> found = EnumSet.noneOf(PageMarker.class);
+        /// g_sessionidの値の読み取り状態
+        private static final int SESSION_NONE = 0, SESSION_READING = 1, SESSION_RESOLVED = 2, SESSION_UNRESOLVED = 3;
+        private int sessionState = SESSION_NONE;
+        private final byte[] sessionBytes = new byte[MAX_SESSION_ID_BYTES];
+        private int sessionLength;
+
+        private Scan(boolean stripLines) {
+            this.stripLines = stripLines;
+        }
+
+        /// バイト列を走査する（1バイトごとの処理になるため、参照するフィールドはローカル変数に置いてから回す）
+        void feed(byte[] buffer, int offset, int length) {
+            int[] next = BytePatternMatcher.this.next;
+            int[] outputs = BytePatternMatcher.this.outputs;
+            byte[] recent = this.recent;
+            int s = state;
+            int pos = position;
+            int contentAt = lineContentAt;
+            for (int i = offset, end = offset + length; i < end; i++, pos++) {
+                byte b = buffer[i];
+                int u = b & 0xFF;
+                recent[pos & (RING - 1)] = b;
+                if (shiftJis) {
+                    alignShiftJis(pos, u);
+                }
+                // 行の中身（空行除去と同じく ' ' 以下を空白とみなす）
+                if (u <= ' ') {
+                    if (u == '\n') {
+                        contentAt = -1;
+                    }
+                } else if (contentAt < 0) {
+                    contentAt = pos;
+                }
+                if (sessionState == SESSION_READING) {
+                    readSessionId(b, u);
+                }
+                s = next[s << 8 | u];
+                int matched = outputs[s];
+                if (matched != 0) {
+                    for (int m = 0; m < MARKERS.length; m++) {
+                        if ((matched & 1 << m) != 0 && isMatch(m, pos, contentAt)) {
+                            onMatch(MARKERS[m]);
+                        }
+                    }
+                }
+            }
+            state = s;
+            position = pos;
+            lineContentAt = contentAt;
+        }
+
+        /// Shift_JISの文字の区切りを記録する
+        private void alignShiftJis(int pos, int u) {
+            int slot = pos & (RING - 1);
+            if (pendingLead >= 0) {
+                irregular |= !validPair[pendingLead << 8 | u];
+                charStart[slot] = false;
+                pendingLead = -1;
+            } else {
+                charStart[slot] = true;
+                if (!validSingle[u]) {
+                    pendingLead = u;
+                }
+            }
+        }
+
+        /// g_sessionidの値（'"' か '&' まで。改行をまたぐ・長すぎる場合は文字列から取り出し直す）
+        private void readSessionId(byte b, int u) {
+            if (u == '"' || u == '&') {
+                sessionState = SESSION_RESOLVED;
+            } else if (u == '\n' || sessionLength == MAX_SESSION_ID_BYTES) {
+                sessionState = SESSION_UNRESOLVED;
+            } else {
+                sessionBytes[sessionLength++] = b;
+            }
+        }
+
+        /// posで終わる目印が、本文上でも一致するか
+        private boolean isMatch(int m, int pos, int contentAt) {
+            byte[] pattern = patterns[m];
+            int startPosition = pos - pattern.length + 1;
+            if (shiftJis && !charStart[startPosition & (RING - 1)]) {
+                return false;
+            }
+            if (!MARKERS[m].isIgnoreCase()) {
+                for (int j = 0; j < pattern.length; j++) {
+                    if (recent[(startPosition + j) & (RING - 1)] != pattern[j]) {
+                        return false;
+                    }
+                }
+            }
+            // 空白で始まる目印は、行頭の空白が除去されても残る位置でのみ一致
+            if (stripLines && (pattern[0] & 0xFF) <= ' ') {
+                return contentAt >= 0 && contentAt < startPosition;
+            }
+            return true;
+        }
+
+        private void onMatch(PageMarker marker) {
+            found.add(marker);
+            if (marker == PageMarker.SESSION_ID) {
+                if (sessionState == SESSION_NONE) {
+                    sessionState = SESSION_READING;
+                } else if (sessionState == SESSION_READING) {
+                    // 値の区切りより前に次の g_sessionid= が来た
+                    sessionState = SESSION_UNRESOLVED;
+                }
+            }
+        }
+
+        /// 走査結果を返す（復号できないバイト並びがあればnull）
+        PageFacts finish(Charset charset) {
+            if (irregular || pendingLead >= 0) {
+                return null;
+            }
+            String sessionId = null;
+            // 値が空の場合は文字列からの取り出し（エラー扱い）に任せる
+            boolean resolved = sessionState == SESSION_RESOLVED && sessionLength > 0;
+            if (resolved) {
+                sessionId = new String(sessionBytes, 0, sessionLength, charset).trim();
+            }
+            return new PageFacts(found, position == 0, sessionId, resolved);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package connection;
+
+/// 変化検知キャッシュ経由で取得したページ
+public class CachedPage {
+    /// キャッシュキー（g_sessionidを除いたURL）
+    private final String key;
+    /// レスポンスボディ（304の場合はキャッシュ済みのボディ）
+    private final String body;
+    /// ボディと判定条件（希望日・予約済みなど）を合わせたハッシュ
+    private final long hash;
+    /// 前回「処理済み」とした内容から変化していないか
+    private final boolean unchanged;
+    /// サーバーが304 Not Modifiedを返したか
+    private final boolean notModified;
+    /// 本文から作ったページ（エラー判定・DOMの使い回し用。未作成ならnull）
+    private HtmlPage page;
+
+    public CachedPage(String key, String body, long hash, boolean unchanged, boolean notModified) {
+        this.key = key;
+        this.body = body;
+        this.hash = hash;
+        this.unchanged = unchanged;
+        this.notModified = notModified;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /// 本文をページとして取得する（初回のみ作成する）
+    public synchronized HtmlPage getPage() {
+        if (page == null) {
+            page = new HtmlPage(body);
+        }
+        return page;
+    }
+}
@@ -11,14 +11,19 @@ import org.apache.hc.core5.http.message.BasicNameValuePair;
 import org.apache.hc.core5.net.URIBuilder;
 
 import java.time.DayOfWeek;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.io.IOException;
 
 import static constpk.ConConst.*;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -37,32 +42,110 @@ public class ConnectionService {
     List<TennisCourt>  successCourtList = new ArrayList<>();
     /// ルートURL（rootUrl.txt > ConConst.ROOT_URL の順に採用）
     private final String rootUrl = initRootUrl();
+    /// 変化検知の判定条件（希望日・除外日・予約済み・当日日付）のハッシュ
+    private long scanContextSignature = 0L;
+    /// ログインセッションの保存先
+    private final SessionStore sessionStore = new SessionStore(CommonConst.SESSION_PATH,
+            java.time.Duration.ofMinutes(CommonConst.SESSION_MAX_AGE_MINUTES));
+    /// 日付ごとのテニスiframeのURL（セッションの有効期間中のみ利用）
+    private final TennisUrlResolver tennisUrlResolver = new TennisUrlResolver();
+    /// 月ページの日付セルによる事前判定（変化のない日付の取得を省略する）
+    private final ScanProbe scanProbe = new ScanProbe(CommonConst.SCAN_PROBE_PATH,
+            java.time.Duration.ofMinutes(CommonConst.PROBE_FULL_SCAN_INTERVAL_MINUTES));
+    /// ログイン情報（常駐モードでは初回に読み込んだものを使い回す）
+    private Credential credential;
+    /// 日付ごとのテニスiframeの取得に要するリクエスト数（学習済みURLで直接取得する場合・4段階で辿る場合）
+    private static final int DATE_CHAIN_MIN_COST = 1;
+    private static final int DATE_CHAIN_FULL_COST = 4;
+    /// 希望の枠に空きが現れた記録（取得する日付の重み付けに使う）
+    private final CancellationStats cancellationStats = new CancellationStats(CommonConst.CANCELLATION_STATS_PATH);
+    /// 取得する日付の抽選用の乱数
+    private final Random pollRandom = new Random();
+    /// 希望日ごとの残りの予約希望数（探索中に0になった日付・月は取得しない。サイクル外ではnull）
+    private DemandTracker demandTracker;
+    /// 狙い撃ちの送信時刻（System.nanoTime基準。狙い撃ち中以外は0）
+    private long sniperReleaseNanos = 0L;
+    /// 狙い撃ちで解放から予約を送信するまでにかかった時間（ミリ秒）
+    private final List<Long> sniperPostLatencies = new ArrayList<>();
+    /// 希望日・除外日・他の人の予約のファイル（1度だけ読み込み、更新されたら差し替える）
+    private final ScanConfigStore scanConfigStore = new ScanConfigStore(CommonConst.EXPECTED_DATE_PATH,
+            CommonConst.JOGAIBI_PATH, CommonConst.RESERVED_COURT_PATH, CommonConst.CONFIG_RELOAD_DEBOUNCE_MILLIS);
+    /// 実行中の探索で使う設定（探索の開始時に取得し、探索中はファイルが更新されても差し替えない）
+    private ScanConfig scanConfig;
+    /// 予約済みの枠数（reservedSlotSource から作成し、予約に成功した枠を加算する）
+    private ReservedSlotCounter reservedSlots;
+    /// reservedSlots の作成元の予約済みリストと、その時点の件数
+    private List<TennisCourt> reservedSlotSource;
+    private int reservedSlotSourceSize;
 
 
     //予約親処理
     public List<Exception> reservationParent() {
         System.out.println("処理スタート");
         List<Exception> exceptionList = new ArrayList<>();
-        Credential credential = IOUtil.getCredential();
+        // 常駐モードで繰り返し呼ばれるため、前回の処理結果を持ち越さない
+        isError = false;
+        successCourtList = new ArrayList<>();
+        // サイト障害中（前回の起動で遮断したまま）なら、確認用の1件以外は送らずに終了する
+        connectionUtil.setProbeUrl(rootUrl);
+        if (!connectionUtil.isSiteAvailable()) {
+            LogWriter.write("[INFO] サイト障害中のため今回の処理をスキップします");
+            connectionUtil.getCircuitBreaker().report();
+            return exceptionList;
+        }
+        if (credential == null) {
+            credential = IOUtil.getCredential();
+        }
         // 予約済みリスト取得（ログイン処理はgetYykList内で実施される）
         List<TennisCourt> yykzumiCourtList = getYykList(credential);
+        if (yykzumiCourtList == null) {
+            exceptionList.add(new IOException("ログインまたは予約済みリストの取得に失敗しました"));
+            finishCycle();
+            return exceptionList;
+        }
         try {
-            //初期画面接続
-            isError = initScreen();
-            if (isError) {
+            scanConfig = scanConfigStore.current();
+            //他の人が予約した情報を追加
+            yykzumiCourtList.addAll(scanConfig.copyReservedCourts());
+            // 除外日リストをロード
+            List<String> jogaiDates = scanConfig.getJogaiDates();
+            // 希望日から探索する月・日付を絞り込む（予約希望数を満たした希望は除く）
+            LocalDate today = LocalDate.now();
+            ScanPlanner fullPlan = ScanPlanner.plan(scanConfig.getExpectedList(),
+                    jogaiDates, today, yykzumiCourtList);
+            if (fullPlan.isEmpty()) {
+                // 残りの予約希望がなければ画面遷移・探索をすべて省略する
+                fullPlan.report();
+                LogWriter.write("[INFO] 残りの予約希望がないため探索を省略します");
                 return exceptionList;
             }
-
-            //ログイン
-            isError = login(credential);
-            if (isError) {
+            // リクエスト予算の残りから画面遷移の分を除いた分を、月ページ・日付ページに割り当てる
+            int requestBudget = connectionUtil.getRequestBudget().available() - CommonConst.REQUEST_BUDGET_NAVIGATION_COST;
+            if (requestBudget < DATE_CHAIN_MIN_COST + 1) {
+                LogWriter.write("[INFO] リクエスト予算の残りが不足しているため今回の探索を省略します（残り "
+                        + connectionUtil.getRequestBudget().available() + "件）");
                 return exceptionList;
             }
-
-            //分類画面への接続
+            // 希望日が多い場合は、1リクエストあたりの価値（空きの出やすさ・支払期限前後 ÷ 取得に要するリクエスト数）の
+            // 高い日付ほど高い頻度で取得する
+            List<ExpectedYmdTimeRange> plannedEntries = fullPlan.getPlannedEntries();
+            ScanPlanner scanPlan = !CommonConst.SCAN_PLANNER_ENABLED ? fullPlan : fullPlan.selectWeighted(
+                    ymd -> cancellationStats.weightOf(ymd, plannedEntries, today,
+                            CommonConst.CANCELLATION_DEADLINE_BOOST, CommonConst.CANCELLATION_MIN_WEIGHT),
+                    ymd -> tennisUrlResolver.resolve(ymd, g_sessionid) != null ? DATE_CHAIN_MIN_COST : DATE_CHAIN_FULL_COST,
+                    1, CommonConst.POLL_DATE_BUDGET, requestBudget, pollRandom);
+            scanPlan.report();
+            demandTracker = new DemandTracker(new WishlistIndex(scanPlan.getPlannedEntries()));
+
+            //分類画面への接続（getYykListでログイン済みのセッションをそのまま使う）
             isError = accessBunruiScreen();
             if (isError) {
-                return exceptionList;
+                // セッションが切れていた場合に備え、ログインし直して一度だけ再試行
+                LogWriter.write("[INFO] 分類画面への接続に失敗したため再ログインします");
+                isError = freshLogin(credential) || accessBunruiScreen();
+                if (isError) {
+                    return exceptionList;
+                }
             }
 
             //第一選択画面への接続
@@ -71,26 +154,32 @@ public class ConnectionService {
                 return exceptionList;
             }
 
+            // 解放時刻の直前なら、接続を温めて解放時刻まで待つ
+            warmUpBeforeRelease();
+            // 探索全体の締め切り（1件の応答待ちはリクエストごとのタイムアウトで制限する）
+            Instant scanDeadline = Instant.now().plusSeconds(CommonConst.SCAN_DEADLINE_SECONDS);
+            connectionUtil.setAsyncDeadline(scanDeadline);
+
             //dataタブページへのアクセス
-            String responseBodyFromDataTab = dataTabAccess();
-            if (responseBodyFromDataTab == null) {
+            HtmlPage dataTabPage = dataTabAccess();
+            if (dataTabPage == null) {
                 System.out.println("エラー発生");
                 return exceptionList;
             }
             //iframe取得
-            String iframeUrl = extractIframeSrc(responseBodyFromDataTab);
+            String iframeUrl = extractIframeSrc(dataTabPage);
             if (iframeUrl == null) {
                 LogWriter.write("[ERROR] iframeが取得できませんでした: dataTab画面");
                 return exceptionList;
             }
-            String calendarResponse = accessCalendar(iframeUrl);
-            //他の人が予約した情報を追加
-            yykzumiCourtList.addAll(IOUtil.loadReservedCourtsFromCsv("reservedCourt.csv"));
-            // 除外日リストをロード
-            List<String> jogaiDates = IOUtil.loadJogaiDates("jogaibi.csv");
+            HtmlPage calendarPage = accessCalendar(iframeUrl);
+            // 判定条件が前回と同じなら、内容に変化のないページは解析・照合を省略できる
+            scanContextSignature = buildScanContextSignature(yykzumiCourtList, jogaiDates);
+            // 月ページの日付セルに変化がない日付は取得を省略する（一定時間ごとに全日付を取得）
+            scanProbe.beginCycle(!CommonConst.PROBE_ENABLED);
 
             //アクティブな月のレスポンスボディを取得（すべてのアクティブな月）
-            List<String> activeMonthUrlList = getActiveMonthUrls(calendarResponse);
+            List<String> activeMonthUrlList = getActiveMonthUrls(calendarPage);
             if (!activeMonthUrlList.isEmpty()) {
                 activeMonthUrlList.add(DateUtil.shiftHyojiymOneMonthBack(activeMonthUrlList.get(0)));
             } else {
@@ -102,14 +191,30 @@ public class ConnectionService {
                 LogWriter.write(" ・URL："+activeMonthUrl);
             }
 
+            // 希望日のない月は月ページも取得しない
+            if (CommonConst.SCAN_PLANNER_ENABLED) {
+                activeMonthUrlList.removeIf(url -> !scanPlan.coversMonth(extractHyojiym(url)));
+                activeMonthUrlList.sort(Comparator.comparingInt(url -> scanPlan.monthRank(extractHyojiym(url))));
+            } else {
+                Collections.shuffle(activeMonthUrlList);
+            }
+
             int i = 0;
-            Collections.shuffle(activeMonthUrlList);
             for (String activeMonthUrl:activeMonthUrlList){
-                List<String> targetUrlList = getHidukeUrl(activeMonthUrl);
+                if (isScanHalted()) break;
+                if (isPastDeadline(scanDeadline, "月")) break;
+                if (isDemandSatisfied(yykzumiCourtList)) break;
+                // 探索中の予約で予約希望数を満たした月は月ページも取得しない
+                if (!demandTracker.hasDemandInMonth(extractHyojiym(activeMonthUrl), reservedSlotsOf(yykzumiCourtList))) continue;
+                List<String> targetUrlList = CommonConst.SCAN_PLANNER_ENABLED ? getPlannedDayUrls(activeMonthUrl, scanPlan) : getHidukeUrl(activeMonthUrl);
 //            for (String url : targetUrlList) {
 //                System.out.println("取得したURL: " + url);
 //            }
-                checkActiveMonth(targetUrlList, jogaiDates, yykzumiCourtList);
+                checkActiveMonth(targetUrlList, jogaiDates, yykzumiCourtList, scanDeadline);
+            }
+            // 打ち切らずに最後まで探索できた場合のみ、全日付を取得したものとして記録する
+            if (Instant.now().isBefore(scanDeadline) && connectionUtil.getCircuitBreaker().allowRequest()) {
+                scanProbe.endFullScan();
             }
 
             LogWriter.write("💣️💣️💣️💣️💣️💣️今回の処理で予約した件数: " + successCourtList.size());
@@ -119,12 +224,485 @@ public class ConnectionService {
                 LogWriter.write("    at " + element.toString());
             }
             exceptionList.add(e);
+        } finally {
+            finishCycle();
+        }
+        return exceptionList;
+    }
+
+    /// サイクルの後処理（セッションの保存・集計の出力・変化検知キャッシュの保存）
+    private void finishCycle() {
+        // 次回の起動でログインを省略できるようセッションを保存（セッション切れで遮断した場合は破棄）
+        if (connectionUtil.getCircuitBreaker().getOpenReason() == ResponseClass.SESSION_EXPIRED) {
+            sessionStore.clear();
+        } else if (!isError) {
+            sessionStore.save(connectionUtil.getCookieStore(), g_sessionid, tennisUrlResolver);
+        }
+        // 転送量・変化検知キャッシュの集計を出力
+        TransferStatTracker.report();
+        connectionUtil.getRateLimiter().report();
+        connectionUtil.getRequestBudget().report();
+        connectionUtil.reportRetryStats();
+        connectionUtil.getCircuitBreaker().report();
+        tennisUrlResolver.report();
+        connectionUtil.getResponseCache().report();
+        connectionUtil.getResponseCache().save();
+        scanProbe.report();
+        scanProbe.save();
+        cancellationStats.report();
+        cancellationStats.save();
+        connectionUtil.setAsyncDeadline(null);
+        demandTracker = null;
+        TransferStatTracker.clear();
+    }
+
+    /**
+     * 狙い撃ち親処理。
+     * 解放時刻の前にログイン・画面遷移・希望日ページのURL解決・サーバー時計の推定・接続の準備を済ませ、
+     * サーバー時計での解放時刻ちょうどに希望日のページを一斉に取得して予約する。
+     *
+     * @param releaseAt 解放時刻（サイトの時間帯）
+     * @return 発生した例外のリスト
+     */
+    public List<Exception> sniperParent(java.time.LocalDateTime releaseAt) {
+        System.out.println("狙い撃ちスタート: " + releaseAt);
+        List<Exception> exceptionList = new ArrayList<>();
+        isError = false;
+        successCourtList = new ArrayList<>();
+        connectionUtil.setProbeUrl(rootUrl);
+        if (!connectionUtil.isSiteAvailable()) {
+            LogWriter.write("[INFO] サイト障害中のため狙い撃ちを中止します");
+            connectionUtil.getCircuitBreaker().report();
+            return exceptionList;
+        }
+        if (credential == null) {
+            credential = IOUtil.getCredential();
+        }
+        List<TennisCourt> yykzumiCourtList = getYykList(credential);
+        if (yykzumiCourtList == null) {
+            exceptionList.add(new IOException("ログインまたは予約済みリストの取得に失敗しました"));
+            finishCycle();
+            return exceptionList;
+        }
+        try {
+            // ▼▼▼解放前の準備▼▼▼
+            isError = accessBunruiScreen();
+            if (isError) {
+                LogWriter.write("[INFO] 分類画面への接続に失敗したため再ログインします");
+                isError = freshLogin(credential) || accessBunruiScreen();
+                if (isError) {
+                    return exceptionList;
+                }
+            }
+            isError = accessDaiichiScreen();
+            if (isError) {
+                return exceptionList;
+            }
+            HtmlPage dataTabPage = dataTabAccess();
+            String iframeUrl = dataTabPage == null ? null : extractIframeSrc(dataTabPage);
+            if (iframeUrl == null) {
+                LogWriter.write("[ERROR] iframeが取得できませんでした: dataTab画面");
+                return exceptionList;
+            }
+            scanConfig = scanConfigStore.current();
+            yykzumiCourtList.addAll(scanConfig.copyReservedCourts());
+            List<String> jogaiDates = scanConfig.getJogaiDates();
+            scanContextSignature = buildScanContextSignature(yykzumiCourtList, jogaiDates);
+            // 解放直後はすべて新しいページなので、月ページによる判定は行わない
+            scanProbe.beginCycle(true);
+
+            // 希望日ごとのテニスiframeのURLを解放前に解決しておく（未学習の日付は解放後に通常の探索で探す）
+            Map<String, String> resolvedUrlByYmd = new LinkedHashMap<>();
+            Set<String> unresolvedYmds = new LinkedHashSet<>();
+            String today = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+            for (ExpectedYmdTimeRange expected : scanConfig.getExpectedList()) {
+                String ymd = expected.getYmd();
+                if (ymd == null || ymd.compareTo(today) < 0 || scanConfig.isJogaiDate(ymd) || resolvedUrlByYmd.containsKey(ymd)) {
+                    continue;
+                }
+                String url = tennisUrlResolver.resolve(ymd, g_sessionid);
+                if (url != null) {
+                    resolvedUrlByYmd.put(ymd, url);
+                } else {
+                    unresolvedYmds.add(ymd);
+                }
+            }
+            LogWriter.write("[INFO] 狙い撃ち対象: URL解決済み " + resolvedUrlByYmd.keySet() + " / 未解決 " + unresolvedYmds);
+
+            // サーバー時計のずれを推定し、解放時刻に対応するローカル時刻を求める
+            connectionUtil.calibrateServerClock(rootUrl, CommonConst.SNIPER_CALIBRATION_PROBES);
+            connectionUtil.getServerClock().report();
+            Instant fireAt = connectionUtil.getServerClock()
+                    .toLocal(releaseAt.atZone(CommonConst.SITE_ZONE).toInstant())
+                    .plusMillis(CommonConst.SNIPER_FIRE_OFFSET_MILLIS);
+            if (fireAt.isBefore(Instant.now())) {
+                LogWriter.write("[WARN] 解放時刻を過ぎているため直ちに送信します");
+            } else {
+                // 接続を温めながら解放時刻の直前まで待ち、最後はミリ秒単位で合わせる
+                connectionUtil.warmUp(rootUrl, fireAt.minusMillis(CommonConst.SNIPER_WARMUP_MARGIN_MILLIS));
+                ServerClock.sleepUntil(fireAt);
+            }
+
+            // ▼▼▼解放時刻：一斉取得▼▼▼
+            sniperReleaseNanos = System.nanoTime();
+            sniperPostLatencies.clear();
+            Instant scanDeadline = Instant.now().plusSeconds(CommonConst.SCAN_DEADLINE_SECONDS);
+            connectionUtil.setAsyncDeadline(scanDeadline);
+            LinkedBlockingQueue<Pair<String, CompletableFuture<String>>> completedQueue = new LinkedBlockingQueue<>();
+            for (Map.Entry<String, String> entry : resolvedUrlByYmd.entrySet()) {
+                CompletableFuture<String> page = connectionUtil.sendGetRequestAsync(rootUrl + entry.getValue());
+                page.whenComplete((body, e) -> completedQueue.add(new Pair<>(entry.getKey(), page)));
+            }
+            for (int i = 0; i < resolvedUrlByYmd.size(); i++) {
+                long remainingMillis = Math.max(0, scanDeadline.toEpochMilli() - System.currentTimeMillis());
+                Pair<String, CompletableFuture<String>> done = completedQueue.poll(remainingMillis, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    LogWriter.write("[WARN] 探索の締め切りを過ぎたため狙い撃ちの取得を打ち切ります");
+                    connectionUtil.cancelOutstandingRequests();
+                    break;
+                }
+                String body;
+                try {
+                    body = done.second.join();
+                } catch (CompletionException | CancellationException e) {
+                    LogWriter.write("[ERROR] 狙い撃ちの取得に失敗: " + done.first + " : " + e.getCause());
+                    unresolvedYmds.add(done.first);
+                    continue;
+                }
+                if (i == 0) {
+                    LogWriter.write("[INFO] 解放から最初の応答まで: " + elapsedSinceReleaseMillis() + "ms");
+                }
+                if (body == null || ConnectionUtil.containsErrorMarker(body) || !isTennisIframeFor(body, done.first)) {
+                    // 学習済みURLが使えなかった日付は通常の探索に回す
+                    tennisUrlResolver.invalidate(done.first);
+                    unresolvedYmds.add(done.first);
+                    continue;
+                }
+                List<TennisCourt> courtList = findExpectedCourtsForYmd(body, done.first, yykzumiCourtList);
+                if (!courtList.isEmpty()) {
+                    reserveCourts(courtList, yykzumiCourtList);
+                }
+            }
+
+            // URLを解決できなかった日付は、カレンダーから辿って探索する
+            if (!unresolvedYmds.isEmpty() && !isPastDeadline(scanDeadline, "日付")) {
+                HtmlPage calendarPage = accessCalendar(iframeUrl);
+                for (String activeMonthUrl : getActiveMonthUrls(calendarPage)) {
+                    if (isScanHalted() || isPastDeadline(scanDeadline, "月")) break;
+                    List<String> targetUrlList = new ArrayList<>();
+                    for (String hidukeUrl : getHidukeUrl(activeMonthUrl)) {
+                        if (unresolvedYmds.contains(DateUtil.extractDateUrl(hidukeUrl))) {
+                            targetUrlList.add(hidukeUrl);
+                        }
+                    }
+                    if (!targetUrlList.isEmpty()) {
+                        checkActiveMonth(targetUrlList, jogaiDates, yykzumiCourtList, scanDeadline);
+                    }
+                }
+            }
+
+            LogWriter.write("[INFO] 狙い撃ち結果: 予約 " + successCourtList.size() + "件 / 解放から予約送信まで " + sniperPostLatencies + "ms");
+        } catch (IOException e) {
+            LogWriter.write("[ERROR] sniperParent中にIOException: " + e);
+            for (StackTraceElement element : e.getStackTrace()) {
+                LogWriter.write("    at " + element.toString());
+            }
+            exceptionList.add(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LogWriter.write("[ERROR] 狙い撃ちの待機中に割り込みが発生しました");
+        } finally {
+            sniperReleaseNanos = 0L;
+            finishCycle();
+        }
+        return exceptionList;
+    }
+
+    /**
+     * 集中監視親処理。
+     * 重要な希望日（指定がなければ直前OK「-OK」の希望）に絞り、テニスiframeのURLを事前に解決したうえで、
+     * そのページだけを短い間隔で取得し続ける。空きが出れば即座に予約し、予約希望数を満たすか監視時間が過ぎたら終了する。
+     * 監視中は通常の探索を行わない（常駐モードでもこの処理が終わるまで次のサイクルは始まらない）。
+     *
+     * @param focusYmds 監視する日付（yyyyMMdd）のリスト（空なら直前OKの希望日）
+     * @param duration 監視時間
+     * @return 発生した例外のリスト
+     */
+    public List<Exception> focusParent(List<String> focusYmds, java.time.Duration duration) {
+        System.out.println("集中監視スタート: " + (focusYmds.isEmpty() ? "直前OKの希望日" : focusYmds));
+        List<Exception> exceptionList = new ArrayList<>();
+        isError = false;
+        successCourtList = new ArrayList<>();
+        connectionUtil.setProbeUrl(rootUrl);
+        if (!connectionUtil.isSiteAvailable()) {
+            LogWriter.write("[INFO] サイト障害中のため集中監視を中止します");
+            connectionUtil.getCircuitBreaker().report();
+            return exceptionList;
+        }
+        if (credential == null) {
+            credential = IOUtil.getCredential();
+        }
+        List<TennisCourt> yykzumiCourtList = getYykList(credential);
+        if (yykzumiCourtList == null) {
+            exceptionList.add(new IOException("ログインまたは予約済みリストの取得に失敗しました"));
+            finishCycle();
+            return exceptionList;
+        }
+        try {
+            scanConfig = scanConfigStore.current();
+            yykzumiCourtList.addAll(scanConfig.copyReservedCourts());
+            List<String> jogaiDates = scanConfig.getJogaiDates();
+            scanContextSignature = buildScanContextSignature(yykzumiCourtList, jogaiDates);
+
+            // 監視対象の希望を決める（過去日・除外日・予約希望数を満たした希望は除く）
+            List<ExpectedYmdTimeRange> focusEntries = new ArrayList<>();
+            ScanPlanner plan = ScanPlanner.plan(scanConfig.getExpectedList(),
+                    jogaiDates, LocalDate.now(), yykzumiCourtList);
+            for (String ymd : plan.getPlannedYmds()) {
+                if (!focusYmds.isEmpty() && !focusYmds.contains(ymd)) continue;
+                boolean added = false;
+                for (ExpectedYmdTimeRange entry : plan.getPlannedEntries()) {
+                    if (entry.getYmd().equals(ymd) && (!focusYmds.isEmpty() || entry.isChokkinOk())) {
+                        focusEntries.add(entry);
+                        added = true;
+                    }
+                }
+                if (added && focusEntries.stream().map(ExpectedYmdTimeRange::getYmd).distinct().count() >= CommonConst.FOCUS_MAX_TARGETS) {
+                    break;
+                }
+            }
+            if (focusEntries.isEmpty()) {
+                LogWriter.write("[INFO] 集中監視の対象となる希望がないため終了します");
+                return exceptionList;
+            }
+            demandTracker = new DemandTracker(new WishlistIndex(focusEntries));
+            Set<String> targetYmds = new LinkedHashSet<>();
+            for (ExpectedYmdTimeRange entry : focusEntries) {
+                targetYmds.add(entry.getYmd());
+            }
+
+            // ▼▼▼監視前の準備：テニスiframeのURLを解決▼▼▼
+            Map<String, String> focusUrlByYmd = resolveFocusUrls(targetYmds);
+            if (focusUrlByYmd.isEmpty()) {
+                LogWriter.write("[ERROR] 集中監視の対象日のURLを解決できませんでした: " + targetYmds);
+                return exceptionList;
+            }
+            LogWriter.write("[INFO] 集中監視: 対象 " + focusUrlByYmd.keySet() + " / 間隔 "
+                    + TimeUnit.MILLISECONDS.toSeconds(focusIntervalMillis(focusUrlByYmd.size()))
+                    + "秒 / 監視時間 " + duration.toMinutes() + "分");
+
+            // ▼▼▼監視ループ▼▼▼
+            Instant focusDeadline = Instant.now().plus(duration);
+            int pollCount = 0;
+            int recoveries = 0;
+            boolean budgetShort = false;
+            while (Instant.now().isBefore(focusDeadline) && !focusUrlByYmd.isEmpty()) {
+                if (isScanHalted() || isDemandSatisfied(yykzumiCourtList)) break;
+                // リクエスト予算の残りで取得できる分だけ取得する（足りない回は優先度の低い対象を見送る）
+                int allowance = connectionUtil.getRequestBudget().available();
+                if (allowance < focusUrlByYmd.size() != budgetShort) {
+                    budgetShort = !budgetShort;
+                    LogWriter.write(budgetShort
+                            ? "[WARN] リクエスト予算の残りが不足しているため、集中監視の対象を減らします（残り " + allowance + "件）"
+                            : "[INFO] リクエスト予算が回復したため、集中監視のすべての対象を取得します");
+                }
+                int polledThisRound = 0;
+                boolean needsRecovery = false;
+                for (Iterator<Map.Entry<String, String>> it = focusUrlByYmd.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<String, String> target = it.next();
+                    String ymd = target.getKey();
+                    if (!demandTracker.hasDemand(ymd, reservedSlotsOf(yykzumiCourtList))) {
+                        LogWriter.write("[INFO] 予約希望数を満たしたため集中監視を終了: " + ymd);
+                        it.remove();
+                        continue;
+                    }
+                    if (polledThisRound >= allowance) {
+                        break;
+                    }
+                    polledThisRound++;
+                    CachedPage page;
+                    try {
+                        page = connectionUtil.sendCachedGetRequest(rootUrl + target.getValue(), scanContextSignature);
+                    } catch (SiteUnavailableException e) {
+                        break;
+                    }
+                    pollCount++;
+                    if (!isValidTennisIframe(page, ymd)) {
+                        // セッション切れ等で直接取得できなくなった場合は、ログインし直してURLを解決し直す
+                        tennisUrlResolver.invalidate(ymd);
+                        needsRecovery = true;
+                        break;
+                    }
+                    if (page.isUnchanged()) {
+                        cancellationStats.recordUnchanged(ymd, focusEntries, LocalDate.now());
+                        continue;
+                    }
+                    List<TennisCourt> courtList = findExpectedCourtsForYmd(page.getBody(), ymd, yykzumiCourtList);
+                    if (courtList.isEmpty()) {
+                        connectionUtil.getResponseCache().markSettled(page);
+                        continue;
+                    }
+                    LogWriter.write("[INFO] 集中監視で空きを検出: " + ymd + "（監視開始から" + pollCount + "回目の取得）");
+                    reserveCourts(courtList, yykzumiCourtList);
+                }
+                if (needsRecovery) {
+                    if (++recoveries > CommonConst.FOCUS_MAX_RECOVERIES) {
+                        LogWriter.write("[ERROR] 集中監視の再接続が上限に達したため終了します");
+                        break;
+                    }
+                    LogWriter.write("[WARN] 集中監視のページが取得できなくなったため再ログインします（" + recoveries + "回目）");
+                    if (freshLogin(credential)) {
+                        break;
+                    }
+                    focusUrlByYmd = resolveFocusUrls(focusUrlByYmd.keySet());
+                    continue;
+                }
+                // 間隔を少し揺らして、一定周期のアクセスにならないようにする
+                long intervalMillis = focusIntervalMillis(focusUrlByYmd.size());
+                Thread.sleep(intervalMillis - intervalMillis / 5 + pollRandom.nextLong(intervalMillis * 2 / 5 + 1));
+            }
+            LogWriter.write("[INFO] 集中監視結果: 取得 " + pollCount + "回 / 予約 " + successCourtList.size() + "件");
+        } catch (IOException e) {
+            LogWriter.write("[ERROR] focusParent中にIOException: " + e);
+            for (StackTraceElement element : e.getStackTrace()) {
+                LogWriter.write("    at " + element.toString());
+            }
+            exceptionList.add(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LogWriter.write("[ERROR] 集中監視の待機中に割り込みが発生しました");
+        } finally {
+            finishCycle();
         }
-        // クローズ
-        connectionUtil.close();
         return exceptionList;
     }
 
+    /**
+     * 集中監視の取得の間隔を求める。
+     * 対象すべてを毎回取得しても、1時間あたりのリクエスト予算のうち FOCUS_BUDGET_SHARE の割合に収まるまで
+     * FOCUS_INTERVAL_SECONDS から延ばす（集中監視で予算を使い切って通常の探索が止まらないようにする）。
+     *
+     * @param targetCount 対象の日付の数
+     * @return 取得の間隔（ミリ秒）
+     */
+    private static long focusIntervalMillis(int targetCount) {
+        long minimum = TimeUnit.SECONDS.toMillis(CommonConst.FOCUS_INTERVAL_SECONDS);
+        double requestsPerHour = CommonConst.REQUEST_BUDGET_PER_HOUR * CommonConst.FOCUS_BUDGET_SHARE;
+        long paced = (long) Math.ceil(Math.max(1, targetCount) * TimeUnit.HOURS.toMillis(1) / requestsPerHour);
+        return Math.max(minimum, paced);
+    }
+
+    /// 集中監視の対象日のテニスiframeのURLを解決する（画面遷移のうえ、学習済みでなければカレンダーから辿って学習する）
+    private Map<String, String> resolveFocusUrls(Set<String> targetYmds) throws IOException {
+        Map<String, String> urlByYmd = new LinkedHashMap<>();
+        isError = accessBunruiScreen() || accessDaiichiScreen();
+        if (isError) {
+            return urlByYmd;
+        }
+        HtmlPage dataTabPage = dataTabAccess();
+        String iframeUrl = dataTabPage == null ? null : extractIframeSrc(dataTabPage);
+        if (iframeUrl == null) {
+            LogWriter.write("[ERROR] iframeが取得できませんでした: dataTab画面");
+            return urlByYmd;
+        }
+        Set<String> unresolved = new LinkedHashSet<>();
+        for (String ymd : targetYmds) {
+            String url = tennisUrlResolver.resolve(ymd, g_sessionid);
+            if (url != null) {
+                urlByYmd.put(ymd, url);
+            } else {
+                unresolved.add(ymd);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return urlByYmd;
+        }
+
+        HtmlPage calendarPage = accessCalendar(iframeUrl);
+        for (String activeMonthUrl : getActiveMonthUrls(calendarPage)) {
+            String uHyojiym = extractHyojiym(activeMonthUrl);
+            List<Integer> days = new ArrayList<>();
+            for (String ymd : unresolved) {
+                if (ymd.startsWith(uHyojiym)) {
+                    days.add(Integer.parseInt(ymd.substring(6)));
+                }
+            }
+            if (days.isEmpty()) continue;
+            // キャンセル待ちのため、満の日付もURLを取得する
+            HtmlPage activeMonthPage = connectionUtil.getPage(rootUrl + activeMonthUrl, RequestClass.NAVIGATION);
+            for (String hidukeUrl : getTargetDayUrls(activeMonthPage, Integer.parseInt(uHyojiym.substring(0, 4)),
+                    Integer.parseInt(uHyojiym.substring(4)), days, false)) {
+                // 4段階の取得でテニスiframeのURLを学習させる
+                fetchTennisIframePage(convertToSecondUrl(hidukeUrl));
+            }
+        }
+        for (String ymd : unresolved) {
+            String url = tennisUrlResolver.resolve(ymd, g_sessionid);
+            if (url != null) {
+                urlByYmd.put(ymd, url);
+            } else {
+                LogWriter.write("[WARN] 集中監視の対象日のURLを解決できませんでした: " + ymd);
+            }
+        }
+        return urlByYmd;
+    }
+
+    /**
+     * 起動時間の計測。起動から最初のHTTPリクエストの応答までの各段階の時間をログに出力する（ログイン・探索は行わない）。
+     * JVM・AppCDS・ネイティブイメージのどの起動方法が速いかを比べるために使う。
+     *
+     * @param launchedAt プロセスの起動時刻（取得できなければnull）
+     * @param mainAt main開始時刻
+     * @param serviceAt ConnectionService生成完了時刻
+     * @param variant 起動方法（jvm / appcds / native）
+     */
+    public void measureStartup(Instant launchedAt, Instant mainAt, Instant serviceAt, String variant) {
+        // 認証情報の読み込み（Gsonの初期化を含む）
+        credential = IOUtil.getCredential();
+        Instant credentialAt = Instant.now();
+        Instant firstResponseAt = null;
+        try {
+            connectionUtil.sendGetRequest("https://yoyaku.city.chigasaki.kanagawa.jp/cultos/reserve/gin_init2");
+            firstResponseAt = Instant.now();
+        } catch (IOException e) {
+            LogWriter.write("[WARN] 起動時間の計測で最初のリクエストに失敗: " + e);
+        }
+        Instant origin = launchedAt != null ? launchedAt : mainAt;
+        String msg = "起動時間（" + variant + "）: "
+                + (launchedAt != null ? "起動→main " + java.time.Duration.between(launchedAt, mainAt).toMillis() + "ms / " : "")
+                + "→Service生成 " + java.time.Duration.between(origin, serviceAt).toMillis() + "ms"
+                + " / →認証情報 " + java.time.Duration.between(origin, credentialAt).toMillis() + "ms"
+                + " / →最初の応答 " + (firstResponseAt != null ? java.time.Duration.between(origin, firstResponseAt).toMillis() + "ms" : "失敗")
+                + "（うち通信 " + (firstResponseAt != null ? java.time.Duration.between(credentialAt, firstResponseAt).toMillis() + "ms" : "-") + "）";
+        System.out.println("\n    ・" + msg);
+        LogWriter.write("[INFO] " + msg);
+    }
+
+    /// 解放時刻（狙い撃ちの送信時刻）からの経過ミリ秒
+    private long elapsedSinceReleaseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sniperReleaseNanos);
+    }
+
+    /**
+     * HTTPクライアントを閉じる。
+     * 常駐モードではサイクルをまたいで接続・セッションを使い回すため、終了時にのみ呼び出す。
+     */
+    public void close() {
+        scanConfigStore.close();
+        connectionUtil.close();
+    }
+
+    /// 設定された解放時刻の直前（WARMUP_LEAD_SECONDS以内）であれば、接続を温めて解放時刻まで待つ
+    private void warmUpBeforeRelease() {
+        java.time.ZonedDateTime releaseAt = DateUtil.upcomingRelease(CommonConst.RELEASE_TIMES, CommonConst.SITE_ZONE,
+                CommonConst.WARMUP_LEAD_SECONDS);
+        if (releaseAt != null) {
+            long leadSeconds = java.time.Duration.between(Instant.now(), releaseAt.toInstant()).getSeconds();
+            LogWriter.write("[INFO] 解放時刻 " + releaseAt.toLocalTime() + " の" + leadSeconds + "秒前のため接続を準備します");
+            connectionUtil.warmUp(rootUrl, releaseAt.toInstant());
+        }
+    }
+
     /// rootUrl.txt からルートURLを読み込む。読み込めなければ定数を使用
     private String initRootUrl() {
         String path = "rootUrl.txt";
@@ -182,29 +760,36 @@ public class ConnectionService {
         return yykzumiCourt;
     }
 
-    /// 予約済みリストを取得する
+    /// 予約済みリストを取得する（ログイン・予約済みリストの取得に失敗した場合はnull）
     private List<TennisCourt> getYykList(Credential credential) {
         List<TennisCourt> yykzumiCourt = new ArrayList<>();
             try {
-                //初期画面接続
-                isError = initScreen();
-                if (isError) {
-                    LogWriter.write("[ERROR] 初期画面接続に失敗しました");
-                    System.exit(1);
+                //使用中または保存済みのセッションが有効なら初期画面接続・ログインを省略する
+                boolean hasSession = (g_sessionid != null && !g_sessionid.isEmpty()) || restoreSession();
+                String yykResponse = hasSession ? accessYykList() : null;
+                if (yykResponse != null && !isValidYykResponse(yykResponse)) {
+                    LogWriter.write("[INFO] セッションが無効のためログインし直します");
+                    connectionUtil.getCookieStore().clear();
+                    tennisUrlResolver.clear();
+                    sessionStore.clear();
+                    yykResponse = null;
                 }
 
-                //ログイン
-                isError = login(credential);
-                if (isError) {
-                    LogWriter.write("[ERROR] ログインに失敗しました");
-                    System.exit(1);
-                }
+                if (yykResponse == null) {
+                    //初期画面接続・ログイン
+                    isError = freshLogin(credential);
+                    if (isError) {
+                        LogWriter.write("[ERROR] ログインに失敗しました");
+                        g_sessionid = "";
+                        return null;
+                    }
 
-                //予約済みリストへの接続
-                String yykResponse = accessYykList();
+                    //予約済みリストへの接続
+                    yykResponse = accessYykList();
+                }
                 if (yykResponse == null || yykResponse.isEmpty()) {
                     LogWriter.write("[ERROR] 予約済みリストの取得に失敗しました");
-                    System.exit(1);
+                    return null;
                 }
 
                 //予約済みリストの作成
@@ -214,23 +799,53 @@ public class ConnectionService {
                 for (StackTraceElement element : e.getStackTrace()) {
                     LogWriter.write("    at " + element.toString());
                 }
-                System.exit(1);
+                return null;
             }
         return yykzumiCourt;
     }
 
+    /// 保存済みセッションを復元する。復元できればtrue
+    private boolean restoreSession() {
+        String restoredSessionId = sessionStore.restore(connectionUtil.getCookieStore(), tennisUrlResolver);
+        if (restoredSessionId == null) {
+            return false;
+        }
+        System.out.println("▶PrivateM：保存済みセッションを再利用");
+        g_sessionid = restoredSessionId;
+        return true;
+    }
 
+    /// 予約済みリストの応答が有効なセッションのものか（エラー画面でなく、一覧の表を含む）
+    private boolean isValidYykResponse(String yykResponse) {
+        return !connectionUtil.isErrorResponse(yykResponse) && yykResponse.contains("<table");
+    }
 
+    /// 初期画面接続とログインを行い、成功したらセッションを保存する。失敗時はtrue
+    private boolean freshLogin(Credential credential) throws IOException {
+        //初期画面接続
+        if (initScreen()) {
+            LogWriter.write("[ERROR] 初期画面接続に失敗しました");
+            return true;
+        }
+        //ログイン
+        if (login(credential)) {
+            return true;
+        }
+        // 新しいセッションでは以前のURLは使えない
+        tennisUrlResolver.clear();
+        sessionStore.save(connectionUtil.getCookieStore(), g_sessionid, tennisUrlResolver);
+        return false;
+    }
 
     //初期画面接続
     private boolean initScreen() throws IOException {
         System.out.println("▶PrivateM：初期画面接続処理");
         String initUrl = "https://yoyaku.city.chigasaki.kanagawa.jp/cultos/reserve/gin_init2";
-        String initResponseBody = connectionUtil.sendGetRequest(initUrl);
-        if (isError(initResponseBody)) {
+        HtmlPage initPage = connectionUtil.getPage(initUrl, RequestClass.NAVIGATION);
+        if (isError(initPage)) {
             return true;
         }
-        g_sessionid = connectionUtil.extractGSessionId(initResponseBody);
+        g_sessionid = connectionUtil.extractGSessionId(initPage);
         return false;
     }
 
@@ -246,8 +861,8 @@ public class ConnectionService {
         postBodyParams.add(new BasicNameValuePair(ConConst.PASS_KEY, credential.getPass()));
         postBodyParams.add(new BasicNameValuePair(ConConst.G_SESSION_ID_KEY, g_sessionid));
         String loginUrl = "https://yoyaku.city.chigasaki.kanagawa.jp/cultos/reserve/gin_login";
-        String loginResponseBody = connectionUtil.sendPostRequest(loginUrl, postBodyParams);
-        return isError(loginResponseBody);
+        HtmlPage loginPage = connectionUtil.postPage(loginUrl, postBodyParams);
+        return isError(loginPage);
     }
 
     /// 分類画面への接続
@@ -257,8 +872,8 @@ public class ConnectionService {
         List<NameValuePair> postBodyParamsForBunruiScreen = new ArrayList<>();
         postBodyParamsForBunruiScreen.add(new BasicNameValuePair(ConConst.G_KINONAIYO_KEY, String.valueOf(g_kinonaiyo + 1)));
         postBodyParamsForBunruiScreen.add(new BasicNameValuePair(ConConst.U_GENZAI_IDX_KEY, String.valueOf(u_genzai_idx)));
-        String bunruiScreenResponseBody = connectionUtil.sendPostRequest(bunruiUrl, postBodyParamsForBunruiScreen);
-        return isError(bunruiScreenResponseBody);
+        HtmlPage bunruiScreenPage = connectionUtil.postPage(bunruiUrl, postBodyParamsForBunruiScreen);
+        return isError(bunruiScreenPage);
     }
 
     /// 第一条件選択画面への接続
@@ -280,13 +895,13 @@ public class ConnectionService {
             }
             return true;
         }
-        String daiichiScreenResponseBody = connectionUtil.sendGetRequest(daiichiScreenUrl);
-        return isError(daiichiScreenResponseBody);
+        HtmlPage daiichiScreenPage = connectionUtil.getPage(daiichiScreenUrl, RequestClass.NAVIGATION);
+        return isError(daiichiScreenPage);
     }
 
 
     /// 日付選択タブへの接続
-    private String dataTabAccess() throws IOException {
+    private HtmlPage dataTabAccess() throws IOException {
         System.out.println("\n▶PrivateM：日付選択タブへの接続");
         String url = "https://yoyaku.city.chigasaki.kanagawa.jp/cultos/reserve/gin_z_first";
         List<NameValuePair> getBodyParams = new ArrayList<>();
@@ -302,18 +917,18 @@ public class ConnectionService {
                 LogWriter.write("    at " + element.toString());
             }
         }
-        String responseBody = connectionUtil.sendGetRequest(url);
-        if (isError(responseBody)) {
+        HtmlPage page = connectionUtil.getPage(url, RequestClass.NAVIGATION);
+        if (isError(page)) {
             return null;
         }
-        return responseBody;
+        return page;
     }
 
     /// カレンダーiframeへの接続
-    private String accessCalendar(String iframeUrl) throws IOException {
+    private HtmlPage accessCalendar(String iframeUrl) throws IOException {
         System.out.println("▶PrivateM：//カレンダーiframeへの接続");
         String calendarUrl = rootUrl + iframeUrl;
-        return connectionUtil.sendGetRequest(calendarUrl);
+        return connectionUtil.getPage(calendarUrl, RequestClass.NAVIGATION);
     }
 
     /// 予約済みリストへの接続
@@ -324,12 +939,13 @@ public class ConnectionService {
     }
 
 
-    /// エラーチェック処理
-    private boolean isError(String responseBody) {
-        if (connectionUtil.isErrorResponse(responseBody)) {
-            LogWriter.write("[ERROR] リダイレクトされました。処理を終了します");
+    /// エラーチェック処理（判定は取得時にページが求めた結果を使う）
+    private boolean isError(HtmlPage page) {
+        if (connectionUtil.isErrorResponse(page)) {
+            LogWriter.write("[ERROR] リダイレクトされました（" + (page == null ? ResponseClass.TRANSIENT : page.getResponseClass()) + "）。処理を終了します");
             return true;
-        } else if (responseBody == null) {
+        } else if (page.isEmpty()) {
+            // 本文の有無は走査結果で判定する（本文を復号しない）
             LogWriter.write("[ERROR]レスポンスボディがnullです。処理を終了します");
             return true;
         } else {
@@ -356,11 +972,11 @@ public class ConnectionService {
     }
 
     /// 複数のアクティブな月のURLを取得する
-    private List<String> getActiveMonthUrls(String html) {
+    private List<String> getActiveMonthUrls(HtmlPage page) {
         List<String> activeMonthUrls = new ArrayList<>();
         try {
-            // HTMLをパース
-            Document document = Jsoup.parse(html);
+            // 解析済みのドキュメントを使う
+            Document document = page.getDocument();
 
             // アクティブな月を探す（<a> 要素を持つ月）
             Elements monthCells = document.select("table#MonthTbl td:has(a)");
@@ -393,30 +1009,58 @@ public class ConnectionService {
     /**
      * 指定された年と月から指定曜日のリンクを取得するメソッド。
      *
-     * @param html HTMLソース
+     * @param page 月ページ
      * @param year 年
      * @param month 月
      * @param targetWeekdays 対象の曜日リスト（例: List.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY)）
-     * @return 対象曜日に対応するリンクのリスト
+     * @return 対象曜日に対応するリンクのリスト（満・休の日付を除き、空きのある日付から順に並べる）
+     */
+    private List<String> getTargetDayUrlsByWeekdays(HtmlPage page, int year, int month, List<DayOfWeek> targetWeekdays) {
+        // DateUtilの新しいユーティリティメソッドを利用
+        return getTargetDayUrls(page, year, month, DateUtil.getDaysOfWeek(year, month, targetWeekdays), true);
+    }
+
+    /**
+     * 指定された年と月から指定日のリンクを取得するメソッド。
+     *
+     * @param page 月ページ
+     * @param year 年
+     * @param month 月
+     * @param targetDays 対象の日のリスト
+     * @param skipUnavailable 満・休の日付を除くか（キャンセル待ちで満の日付も取得する場合はfalse）
+     * @return 対象日に対応するリンクのリスト（満・休の日付を除く場合は、空きのある日付から順に並べる）
      */
-    private List<String> getTargetDayUrlsByWeekdays(String html, int year, int month, List<DayOfWeek> targetWeekdays) {
+    private List<String> getTargetDayUrls(HtmlPage page, int year, int month, List<Integer> targetDays, boolean skipUnavailable) {
         List<String> resultUrls = new ArrayList<>();
         try {
-            // DateUtilの新しいユーティリティメソッドを利用
-            List<Integer> targetDays = DateUtil.getDaysOfWeek(year, month, targetWeekdays);
-
-            Document document = Jsoup.parse(html);
+            Document document = page.getDocument();
             Elements cells = document.select("table.link-table td");
 
+            // 日付セルの空き状況ごとに振り分ける（EnumMapの並びがそのまま取得順になる）
+            Map<DayAvailability, List<String>> urlsByAvailability = new EnumMap<>(DayAvailability.class);
             for (Element cell : cells) {
                 String cellText = cell.text().trim();
-                if (cellText.matches("\\d+") && targetDays.contains(Integer.parseInt(cellText))) {
+                // 日付の後ろに○×等の記号が付くセルも日付として扱う
+                String dayText = cellText.replaceAll("^(\\d{1,2})\\D*$", "$1");
+                if (dayText.matches("\\d+") && targetDays.contains(Integer.parseInt(dayText))) {
                     Element link = cell.selectFirst("a");
                     if (link != null) {
-                        resultUrls.add(link.attr("href"));
+                        scanProbe.observeDayCell(DateUtil.extractDateUrl(link.attr("href")), cell.outerHtml());
+                        DayAvailability availability = ParserUtil.parseDayAvailability(cell);
+                        urlsByAvailability.computeIfAbsent(availability, k -> new ArrayList<>()).add(link.attr("href"));
                     }
                 }
             }
+
+            StringBuilder summary = new StringBuilder();
+            for (Map.Entry<DayAvailability, List<String>> entry : urlsByAvailability.entrySet()) {
+                DayAvailability availability = entry.getKey();
+                summary.append(availability.getLabel()).append(":").append(entry.getValue().size()).append(" ");
+                if (!skipUnavailable || !CommonConst.DAY_AVAILABILITY_FILTER_ENABLED || availability.canHaveSlot()) {
+                    resultUrls.addAll(entry.getValue());
+                }
+            }
+            LogWriter.write("[INFO] " + year + "年" + month + "月の日付セル " + summary + "→ 取得対象 " + resultUrls.size() + "日");
             return resultUrls;
         } catch (Exception e) {
             LogWriter.write("[ERROR] 例外発生: " + e);
@@ -428,9 +1072,9 @@ public class ConnectionService {
     }
 
     /// テニスのULRを取得する
-    private String getTennisUrl(String html) {
-        // HTMLをパース
-        Document document = Jsoup.parse(html);
+    private String getTennisUrl(HtmlPage page) {
+        // 解析済みのドキュメントを使う
+        Document document = page.getDocument();
         // 全リンクを取得
         Elements links = document.select("a");
 
@@ -449,22 +1093,17 @@ public class ConnectionService {
     }
 
     /**
-     * HTMLソースから最初のiframeのsrc属性を取得するメソッド。
+     * ページから最初のiframeのsrc属性を取得するメソッド。
      *
-     * @param html HTML文字列
+     * @param page 取得したページ
      * @return iframeのsrc属性の値（見つからない場合はnull）
      */
-    private String extractIframeSrc(String html) {
+    private String extractIframeSrc(HtmlPage page) {
         try {
-            // HTMLをパース
-            Document document = Jsoup.parse(html);
+            // iframeタグのsrc属性を取得（ページ内で1度だけ解析・抽出する）
+            String src = page.getIframeSrc();
 
-            // iframeタグを検索
-            Element iframe = document.selectFirst("iframe");
-
-            if (iframe != null) {
-                // src属性を取得
-                String src = iframe.attr("src");
+            if (src != null) {
 //                System.out.println("\n    ・抽出したiframeのsrc: " + src);
                 return src;
             } else {
@@ -481,23 +1120,39 @@ public class ConnectionService {
 
     /// 日付ごとのURLを取得する
     private List<String> getHidukeUrl(String activeMonthUrl) throws IOException {
-        String activeMonthHtml = connectionUtil.sendGetRequest(rootUrl + activeMonthUrl);
+        HtmlPage activeMonthPage = connectionUtil.getPage(rootUrl + activeMonthUrl, RequestClass.NAVIGATION);
         String uHyojiym = activeMonthUrl.split("u_hyojiym=")[1].split("&")[0]; // "202501"を取得
         int year = Integer.parseInt(uHyojiym.substring(0, 4)); // 年を取得
         int month = Integer.parseInt(uHyojiym.substring(4));   // 月を取得
         List<DayOfWeek> weekdays = List.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY, DayOfWeek.MONDAY,DayOfWeek.TUESDAY,DayOfWeek.WEDNESDAY,DayOfWeek.THURSDAY,DayOfWeek.FRIDAY);
-        List<String> hidukeUrlList = getTargetDayUrlsByWeekdays(activeMonthHtml, year, month, weekdays);
+        List<String> hidukeUrlList = getTargetDayUrlsByWeekdays(activeMonthPage, year, month, weekdays);
         return hidukeUrlList;
     }
 
+    /// 探索計画にある日付のURLを、計画の探索順に取得する
+    private List<String> getPlannedDayUrls(String activeMonthUrl, ScanPlanner scanPlan) throws IOException {
+        String uHyojiym = extractHyojiym(activeMonthUrl);
+        HtmlPage activeMonthPage = connectionUtil.getPage(rootUrl + activeMonthUrl, RequestClass.NAVIGATION);
+        int year = Integer.parseInt(uHyojiym.substring(0, 4)); // 年を取得
+        int month = Integer.parseInt(uHyojiym.substring(4));   // 月を取得
+        List<String> hidukeUrlList = getTargetDayUrls(activeMonthPage, year, month, scanPlan.getDays(uHyojiym), true);
+        hidukeUrlList.sort(Comparator.comparingInt(url -> scanPlan.rankOf(DateUtil.extractDateUrl(url))));
+        return hidukeUrlList;
+    }
+
+    /// 月ページのURLから表示年月（"202501"）を取得する
+    private String extractHyojiym(String activeMonthUrl) {
+        return activeMonthUrl.split("u_hyojiym=")[1].split("&")[0];
+    }
+
     /// 日付ごとのURLを取得する(平日)
     private List<String> getWeekDayUrl(String activeMonthUrl) throws IOException {
-        String activeMonthHtml = connectionUtil.sendGetRequest(rootUrl + activeMonthUrl);
+        HtmlPage activeMonthPage = connectionUtil.getPage(rootUrl + activeMonthUrl, RequestClass.NAVIGATION);
         String uHyojiym = activeMonthUrl.split("u_hyojiym=")[1].split("&")[0]; // "202501"を取得
         int year = Integer.parseInt(uHyojiym.substring(0, 4)); // 年を取得
         int month = Integer.parseInt(uHyojiym.substring(4));   // 月を取得
         List<DayOfWeek> weekdays = List.of(DayOfWeek.TUESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY);
-        List<String> hidukeUrlList = getTargetDayUrlsByWeekdays(activeMonthHtml, year, month, weekdays);
+        List<String> hidukeUrlList = getTargetDayUrlsByWeekdays(activeMonthPage, year, month, weekdays);
         return hidukeUrlList;
     }
 
@@ -511,16 +1166,16 @@ public class ConnectionService {
         return false;
     }
 
-    private boolean hasHtmlErr(String hidukeHtml,String hidukeUrl){
-        if (hidukeHtml == null) {
+    private boolean hasHtmlErr(HtmlPage hidukePage,String hidukeUrl){
+        if (hidukePage == null) {
             System.out.println("エラーの日付URL："+hidukeUrl);
             System.out.println("エラー発生");
             return true;
         }
         return false;
     }
-    private boolean hasHidukeIframeErr(String hidukeIframeResponse){
-        if (hidukeIframeResponse == null) {
+    private boolean hasHidukeIframeErr(HtmlPage hidukeIframePage){
+        if (hidukeIframePage == null) {
             System.out.println("エラー発生");
             return true;
         }
@@ -530,97 +1185,404 @@ public class ConnectionService {
 
 
     /// アクティブな月を探索する
-    private void checkActiveMonth(List<String> hidukeUrlList, List<String> jogaibiCsv, List<TennisCourt> yykCourtList) throws IOException {
+    private void checkActiveMonth(List<String> hidukeUrlList, List<String> jogaibiCsv, List<TennisCourt> yykCourtList, Instant scanDeadline) throws IOException {
+        if (CommonConst.ASYNC_SCAN_ENABLED) {
+            checkActiveMonthConcurrently(hidukeUrlList, jogaibiCsv, yykCourtList, scanDeadline);
+            return;
+        }
 
         //▼▼▼取得した日付ループ▼▼▼
 
         for (String hidukeUrl : hidukeUrlList) {
+            if (isScanHalted()) break;
+            if (isPastDeadline(scanDeadline, "日付")) break;
+            if (isDemandSatisfied(yykCourtList)) break;
             hidukeUrl = convertToSecondUrl(hidukeUrl);
             //除外日対象ならコンティニュー
             if (isJogaibi(hidukeUrl,jogaibiCsv)) continue;
-            //取得した日付ページのレスポンスを取得
-            String hidukeHtml = connectionUtil.sendGetRequest(rootUrl + hidukeUrl);
-            if (hasHtmlErr(hidukeHtml,hidukeUrl)) continue;
-            //日付のiframe取得
-            String hidukeIframeResponse = connectionUtil.sendGetRequest(rootUrl + extractIframeSrc(hidukeHtml));
-            if(hasHidukeIframeErr(hidukeIframeResponse)) continue;
-            //利用目的：テニスURLの取得
-            String tennisUrl = getTennisUrl(hidukeIframeResponse);
-            String tennisResponse = connectionUtil.sendGetRequest(rootUrl + tennisUrl);
-            //テニスのiframe取得
-            String tennisIframeUrl = extractIframeSrc(tennisResponse);
-            String tennisIframeResponse = connectionUtil.sendGetRequest(rootUrl + tennisIframeUrl);
-
-            //コートリストをModelに変換
-//            System.out.print("\n");
-            String ymd = DateUtil.extractDateUrl(hidukeUrl);
-            if (tennisIframeResponse == null) {
-                LogWriter.write("[ERROR] テニスiframeレスポンスがnullです: " + tennisIframeUrl);
+            //予約希望数を満たした日付ならコンティニュー
+            if (!hasDemand(hidukeUrl, yykCourtList)) continue;
+            //月ページの日付セルに変化がなければコンティニュー
+            if (!scanProbe.needsScan(DateUtil.extractDateUrl(hidukeUrl), scanContextSignature)) continue;
+            //テニスiframeの取得（学習済みなら直接、未学習なら日付ページから探索）
+            CachedPage tennisIframePage;
+            try {
+                tennisIframePage = fetchTennisIframePage(hidukeUrl);
+            } catch (SiteUnavailableException e) {
+                // 取得途中で遮断された場合は次の判定で打ち切る
+                continue;
+            }
+            if (tennisIframePage == null) continue;
+            handleTennisIframePage(tennisIframePage, hidukeUrl, yykCourtList);
+        }
+        //▲▲▲日付ループ終了▲▲▲
+    }
+
+    /// 探索全体の締め切りを過ぎていれば、残りの日付・月の探索を打ち切る
+    private boolean isPastDeadline(Instant scanDeadline, String unit) {
+        if (Instant.now().isBefore(scanDeadline)) {
+            return false;
+        }
+        LogWriter.write("[WARN] 探索の締め切り（" + CommonConst.SCAN_DEADLINE_SECONDS + "秒）を過ぎたため残りの" + unit + "の探索を打ち切ります");
+        return true;
+    }
+
+    /// 全希望の予約希望数を満たしていれば、残りの日付・月の探索を打ち切る
+    private boolean isDemandSatisfied(List<TennisCourt> yykCourtList) {
+        if (demandTracker == null || demandTracker.totalDemand(reservedSlotsOf(yykCourtList)) > 0) {
+            return false;
+        }
+        LogWriter.write("[INFO] すべての希望の予約希望数を満たしたため残りの探索を打ち切ります");
+        return true;
+    }
+
+    /// 日付に残りの予約希望があるか（探索計画のないサイクルでは常に取得する）
+    private boolean hasDemand(String hidukeUrl, List<TennisCourt> yykCourtList) {
+        return demandTracker == null || demandTracker.hasDemand(DateUtil.extractDateUrl(hidukeUrl), reservedSlotsOf(yykCourtList));
+    }
+
+    /// サイト障害で遮断中なら、残りの日付・月の探索を打ち切る
+    private boolean isScanHalted() {
+        if (connectionUtil.getCircuitBreaker().allowRequest()) {
+            return false;
+        }
+        LogWriter.write("[WARN] サイト障害（" + connectionUtil.getCircuitBreaker().getOpenReason() + "）のため残りの探索を打ち切ります");
+        return true;
+    }
+
+    /// 日付のテニスiframeを取得する（学習済みURLで直接取得し、エラー画面なら4段階の探索に戻る）
+    private CachedPage fetchTennisIframePage(String hidukeUrl) throws IOException {
+        String ymd = DateUtil.extractDateUrl(hidukeUrl);
+        String shortcutUrl = tennisUrlResolver.resolve(ymd, g_sessionid);
+        if (shortcutUrl != null) {
+            CachedPage page = connectionUtil.sendCachedGetRequest(rootUrl + shortcutUrl, scanContextSignature);
+            if (isValidTennisIframe(page, ymd)) {
+                tennisUrlResolver.recordShortcutHit();
+                return page;
+            }
+            tennisUrlResolver.invalidate(ymd);
+        }
+
+        //取得した日付ページのレスポンスを取得
+        HtmlPage hidukePage = connectionUtil.getPage(rootUrl + hidukeUrl, RequestClass.SCAN);
+        if (hasHtmlErr(hidukePage,hidukeUrl)) return null;
+        //日付のiframe取得
+        HtmlPage hidukeIframePage = connectionUtil.getPage(rootUrl + extractIframeSrc(hidukePage), RequestClass.SCAN);
+        if(hasHidukeIframeErr(hidukeIframePage)) return null;
+        //利用目的：テニスURLの取得
+        String tennisUrl = getTennisUrl(hidukeIframePage);
+        HtmlPage tennisPage = connectionUtil.getPage(rootUrl + tennisUrl, RequestClass.SCAN);
+        //テニスのiframe取得
+        String tennisIframeUrl = extractIframeSrc(tennisPage);
+        CachedPage tennisIframePage = connectionUtil.sendCachedGetRequest(rootUrl + tennisIframeUrl, scanContextSignature);
+
+        if (tennisIframePage.getBody() == null) {
+            LogWriter.write("[ERROR] テニスiframeレスポンスがnullです: " + tennisIframeUrl);
+            return null;
+        }
+        if (isValidTennisIframe(tennisIframePage, ymd)) {
+            tennisUrlResolver.learn(ymd, tennisIframeUrl);
+        }
+        return tennisIframePage;
+    }
+
+    /// 直接取得したテニスiframeが使える内容か（エラー画面でなく、指定した日付のコート表を含む）
+    private boolean isValidTennisIframe(CachedPage page, String ymd) {
+        return page != null && page.getBody() != null
+                && !page.getPage().isErrorPage()
+                && isTennisIframeFor(page.getBody(), ymd);
+    }
+
+    /// コート表を含む、指定した日付のページか（別の日付のページを希望の日付として照合・予約しない）
+    private boolean isTennisIframeFor(String body, String ymd) {
+        if (!body.contains("link-table")) {
+            return false;
+        }
+        if (!TennisUrlResolver.isPageFor(body, ymd)) {
+            LogWriter.write("[WARN] テニスiframeが指定の日付のページではないため使いません: " + ymd);
+            return false;
+        }
+        return true;
+    }
+
+    /// アクティブな月を探索する（日付ごとの4段階の取得を並行実行する）
+    private void checkActiveMonthConcurrently(List<String> hidukeUrlList, List<String> jogaibiCsv, List<TennisCourt> yykCourtList, Instant scanDeadline) throws IOException {
+        // 日付ごとの取得チェーンを一斉に開始（同時送信数はConnectionUtil側で制限）
+        LinkedBlockingQueue<Pair<String, CompletableFuture<CachedPage>>> completedQueue = new LinkedBlockingQueue<>();
+        List<Pair<String, CompletableFuture<CachedPage>>> chains = new ArrayList<>();
+        int chainCount = 0;
+        for (String hidukeUrl : hidukeUrlList) {
+            String secondUrl = convertToSecondUrl(hidukeUrl);
+            //除外日対象ならコンティニュー
+            if (isJogaibi(secondUrl, jogaibiCsv)) continue;
+            //予約希望数を満たした日付ならコンティニュー
+            if (!hasDemand(secondUrl, yykCourtList)) continue;
+            //月ページの日付セルに変化がなければコンティニュー
+            if (!scanProbe.needsScan(DateUtil.extractDateUrl(secondUrl), scanContextSignature)) continue;
+            CompletableFuture<CachedPage> chain = fetchTennisIframeAsync(secondUrl);
+            chain.whenComplete((body, e) -> completedQueue.add(new Pair<>(secondUrl, chain)));
+            chains.add(new Pair<>(secondUrl, chain));
+            chainCount++;
+        }
+
+        // 完了した日付から順に予約処理（予約処理・LINE通知はこのスレッドで逐次実行）
+        IOException firstError = null;
+        int haltedCount = 0;
+        boolean deadlineExceeded = false;
+        for (int i = 0; i < chainCount; i++) {
+            Pair<String, CompletableFuture<CachedPage>> done;
+            try {
+                if (deadlineExceeded) {
+                    // 締め切り後は取得済みの日付だけ処理する
+                    done = completedQueue.poll();
+                } else {
+                    long remainingMillis = Math.max(0, scanDeadline.toEpochMilli() - System.currentTimeMillis());
+                    done = completedQueue.poll(remainingMillis, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("日付ごとの取得待機中に割り込みが発生しました", e);
+            }
+            if (done == null) {
+                if (deadlineExceeded) {
+                    break;
+                }
+                deadlineExceeded = true;
+                cancelStragglers(chains, "探索の締め切り（" + CommonConst.SCAN_DEADLINE_SECONDS + "秒）を過ぎた");
+                i--;
                 continue;
             }
-            List<TennisCourt> courtList = ParserUtil.parseTennisCourtsFromHtml(tennisIframeResponse, ymd);
-
-            // フィルタリング対象外の希望日コートを取得
-            List<ExpectedYmdTimeRange> expectedDateList = new ArrayList<>();
-            expectedDateList = IOUtil.loadExpectedYmdAndTimeRanges(CommonConst.EXPECTED_DATE_PATH);
-            List<TennisCourt> expectedCourtList = new ArrayList<>();
-//            System.out.print("希望日の件数:");
-//            System.out.println(expectedDateList.size());
-//            System.out.println("内容");
-            for(ExpectedYmdTimeRange expectedData:expectedDateList){
-//                expectedData.printProperties();
-                expectedCourtList.addAll(
-                FilterUtill.getExpectedCourt(courtList,expectedData,
-                        expectedData.getYmd(),expectedData.getTimeRange(),expectedData.getCourtAreaName(),expectedData.getMaxCount(),yykCourtList));
-            }
-            //重複削除（HTML時点で同一コートが３つ取得されてしまうため）
+            CachedPage tennisIframePage;
+            try {
+                tennisIframePage = done.second.join();
+            } catch (CancellationException e) {
+                // 締め切りで取り消した日付（cancelStragglersで報告済み）
+                continue;
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    continue;
+                }
+                if (e.getCause() instanceof SiteUnavailableException) {
+                    // 遮断中に送らなかった日付はエラーとして扱わない
+                    haltedCount++;
+                    continue;
+                }
+                LogWriter.write("[ERROR] 日付ページの取得に失敗: " + done.first + " : " + e.getCause());
+                if (firstError == null) {
+                    firstError = e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+                }
+                continue;
+            }
+            if (tennisIframePage == null || tennisIframePage.getBody() == null) {
+                LogWriter.write("[ERROR] テニスiframeレスポンスがnullです: " + done.first);
+                continue;
+            }
+            // 先に完了した日付の予約で予約希望数を満たした日付は解析しない
+            if (!hasDemand(done.first, yykCourtList)) continue;
+            handleTennisIframePage(tennisIframePage, done.first, yykCourtList);
+            if (!deadlineExceeded && isDemandSatisfied(yykCourtList)) {
+                // 残りの日付は取得不要のため取り消す（取得済みの日付も予約対象がないので処理しない）
+                cancelStragglers(chains, "すべての希望の予約希望数を満たした");
+                break;
+            }
+        }
+
+        if (haltedCount > 0) {
+            LogWriter.write("[WARN] サイト障害のため " + haltedCount + " 日分の取得を打ち切りました");
+        }
+        // 逐次モードと同様に、通信エラーは呼び出し元へ伝播させる
+        if (firstError != null) {
+            throw firstError;
+        }
+    }
+
+    /// 締め切り・予約希望数の充足で不要になった日付の取得を取り消し、どの日付を打ち切ったかを記録する
+    private void cancelStragglers(List<Pair<String, CompletableFuture<CachedPage>>> chains, String reason) {
+        List<String> stragglers = new ArrayList<>();
+        for (Pair<String, CompletableFuture<CachedPage>> chain : chains) {
+            if (!chain.second.isDone()) {
+                stragglers.add(DateUtil.extractDateUrl(chain.first));
+                chain.second.cancel(false);
+            }
+        }
+        int cancelledRequests = connectionUtil.cancelOutstandingRequests();
+        LogWriter.write("[WARN] " + reason + "ため "
+                + stragglers.size() + " 日分の取得を打ち切りました（通信中・送信待ち " + cancelledRequests + "件を取消）: " + stragglers);
+    }
+
+    /// 日付のテニスiframeを非同期で取得する（学習済みURLで直接取得し、エラー画面なら4段階の探索に戻る）
+    private CompletableFuture<CachedPage> fetchTennisIframeAsync(String hidukeUrl) {
+        String ymd = DateUtil.extractDateUrl(hidukeUrl);
+        String shortcutUrl = tennisUrlResolver.resolve(ymd, g_sessionid);
+        if (shortcutUrl == null) {
+            return discoverTennisIframeAsync(hidukeUrl, ymd);
+        }
+        return connectionUtil.sendCachedGetRequestAsync(rootUrl + shortcutUrl, scanContextSignature)
+                .thenCompose(page -> {
+                    if (isValidTennisIframe(page, ymd)) {
+                        tennisUrlResolver.recordShortcutHit();
+                        return CompletableFuture.completedFuture(page);
+                    }
+                    tennisUrlResolver.invalidate(ymd);
+                    return discoverTennisIframeAsync(hidukeUrl, ymd);
+                });
+    }
+
+    /// 日付ページ → 日付iframe → テニスページ → テニスiframe の順に非同期で辿る
+    private CompletableFuture<CachedPage> discoverTennisIframeAsync(String hidukeUrl, String ymd) {
+        return connectionUtil.getPageAsync(rootUrl + hidukeUrl)
+                .thenCompose(hidukePage -> hasHtmlErr(hidukePage, hidukeUrl)
+                        ? CompletableFuture.<HtmlPage>completedFuture(null)
+                        : connectionUtil.getPageAsync(rootUrl + extractIframeSrc(hidukePage)))
+                .thenCompose(hidukeIframePage -> hasHidukeIframeErr(hidukeIframePage)
+                        ? CompletableFuture.<HtmlPage>completedFuture(null)
+                        : connectionUtil.getPageAsync(rootUrl + getTennisUrl(hidukeIframePage)))
+                .thenCompose(tennisPage -> {
+                    if (tennisPage == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    String tennisIframeUrl = extractIframeSrc(tennisPage);
+                    return connectionUtil.sendCachedGetRequestAsync(rootUrl + tennisIframeUrl, scanContextSignature)
+                            .thenApply(page -> {
+                                if (isValidTennisIframe(page, ymd)) {
+                                    tennisUrlResolver.learn(ymd, tennisIframeUrl);
+                                }
+                                return page;
+                            });
+                });
+    }
+
+    /// 取得したテニスiframeを処理する（前回処理済みの内容から変化がなければ解析・照合を省略）
+    private void handleTennisIframePage(CachedPage tennisIframePage, String hidukeUrl, List<TennisCourt> yykCourtList) throws IOException {
+        String ymd = DateUtil.extractDateUrl(hidukeUrl);
+        if (tennisIframePage.isUnchanged()) {
+            System.out.print(" / 前回から変化なし・解析省略");
+            cancellationStats.recordUnchanged(ymd, scanConfig.getWishlist().entriesFor(ymd), LocalDate.now());
+            scanProbe.markSettled(ymd, scanContextSignature);
+            return;
+        }
+        long start = System.nanoTime();
+        List<TennisCourt> courtList = findExpectedCourts(tennisIframePage.getBody(), hidukeUrl, yykCourtList);
+        connectionUtil.getResponseCache().recordParseTime(System.nanoTime() - start);
+
+        if (courtList.isEmpty()) {
+            // 予約対象がなかった内容を記録し、次回同じ内容なら解析を省略する
+            connectionUtil.getResponseCache().markSettled(tennisIframePage);
+            scanProbe.markSettled(ymd, scanContextSignature);
+            return;
+        }
+        scanProbe.markPending(ymd);
+        reserveCourts(courtList, yykCourtList);
+    }
+
+    /// テニスiframeのHTMLから希望コートを抽出する
+    private List<TennisCourt> findExpectedCourts(String tennisIframeResponse, String hidukeUrl, List<TennisCourt> yykCourtList) throws IOException {
+        return findExpectedCourtsForYmd(tennisIframeResponse, DateUtil.extractDateUrl(hidukeUrl), yykCourtList);
+    }
+
+    /// テニスiframeから予約対象のコートを抽出する（日付を直接指定）
+    private List<TennisCourt> findExpectedCourtsForYmd(String tennisIframeResponse, String ymd, List<TennisCourt> yykCourtList) throws IOException {
+        //コートリストをModelに変換
+//            System.out.print("\n");
+        List<TennisCourt> courtList = ParserUtil.parseTennisCourtsFromHtml(tennisIframeResponse, ymd);
+
+        // フィルタリング対象外の希望日コートを取得（この日付の希望のみ）
+        WishlistIndex wishlist = scanConfig.getWishlist();
+        List<ExpectedYmdTimeRange> expectedDateList = wishlist.entriesFor(ymd);
+        // 希望の枠に空きが現れたかを記録（予約済み数による除外の前に判定する）
+        cancellationStats.record(ymd, courtList, expectedDateList, LocalDate.now());
+        // 空きのある枠ごとに索引から希望を引く（希望の件数によらず、この日付のコート・枠の数に比例する）
+        List<TennisCourt> expectedCourtList = FilterUtill.getExpectedCourts(courtList, wishlist, reservedSlotsOf(yykCourtList));
+        //重複削除（HTML時点で同一コートが３つ取得されてしまうため）
 //            courtList = TennisCourt.mergeDuplicateCourts(courtList);
 
 
-            //フィルタリング
+        //フィルタリング
 //            courtList = FilterUtill.filterCourt(courtList,yykCourtList);
-            //ほしいコートのリストを追加
-            // ※※※※※※※※※※※※
-            // ※※※※※※※※※※※※
-            // ※※※※※※※※※※※※
-            // ※※※※※※※※※※※※
-            // ※※※※※※※※※※※※
-            // 希望日のみ予約する仕様に変更中
-            // ※※※※※※※※※※※※
-            // ※※※※※※※※※※※※
-            // ※※※※※※※※※※※※
-            // ※※※※※※※※※※※※
-            // ※※※※※※※※※※※※
-            courtList.clear();
-            courtList=expectedCourtList;
-
-            // コート予約日候補
+        //ほしいコートのリストを追加
+        // ※※※※※※※※※※※※
+        // ※※※※※※※※※※※※
+        // ※※※※※※※※※※※※
+        // ※※※※※※※※※※※※
+        // ※※※※※※※※※※※※
+        // 希望日のみ予約する仕様に変更中
+        // ※※※※※※※※※※※※
+        // ※※※※※※※※※※※※
+        // ※※※※※※※※※※※※
+        // ※※※※※※※※※※※※
+        // ※※※※※※※※※※※※
+        courtList.clear();
+        courtList=expectedCourtList;
+
+        // コート予約日候補
 //            System.out.println("▶▶▶最終的に予約処理を実施するコート一覧");
 //            TennisCourtLogger.printTennisCourts(courtList);
 
-            // コート優先度順にソート
-            courtList.sort(Comparator.comparingInt(
-                    court -> CourtAreaType.fromCourtName(court.getCourtName()).getPriority()
-            ));
+        // コート優先度順にソート
+        courtList.sort(Comparator.comparingInt(
+                court -> CourtAreaType.fromCourtName(court.getCourtName()).getPriority()
+        ));
 
-            // 最終的に予約処理を実施するコート一覧
+        // 最終的に予約処理を実施するコート一覧
 //            System.out.println("▶▶▶最終的に予約処理を実施するコート一覧");
 //            TennisCourtLogger.printTennisCourts(courtList);
+        return courtList;
+    }
 
-            for (TennisCourt court : courtList) {
-                for (TimeSlot timeSlot : court.getTimeSlotList()) {
-                    String timePageResponse = connectionUtil.sendGetRequest(timeSlot.getUrl());
-                    if (extractFormDetails(timePageResponse)) {
-                        // 成功したときだけ
-                       String msg = createLineMessage(court,timeSlot,yykCourtList);
-                        // ▼ LINE通知
-                        LogWriter.write("[DEBUG] LINE通知直前");
-                        LineNotify.sendNotification(msg);
-                    }
+    /// 希望コートの予約処理を行う
+    private void reserveCourts(List<TennisCourt> courtList, List<TennisCourt> yykCourtList) throws IOException {
+        for (TennisCourt court : courtList) {
+            for (TimeSlot timeSlot : court.getTimeSlotList()) {
+                HtmlPage timePage = connectionUtil.getPage(timeSlot.getUrl(), RequestClass.NAVIGATION);
+                if (extractFormDetails(timePage, court, timeSlot)) {
+                    // 成功したときだけ
+                   String msg = createLineMessage(court,timeSlot,yykCourtList);
+                    // ▼ LINE通知
+                    LogWriter.write("[DEBUG] LINE通知直前");
+                    LineNotify.sendNotification(msg);
                 }
             }
         }
-        //▲▲▲日付ループ終了▲▲▲
+    }
+
+    /// 変化検知の判定条件（当日日付・希望日・除外日・予約済み）のハッシュを作る
+    private long buildScanContextSignature(List<TennisCourt> yykCourtList, List<String> jogaiDates) {
+        StringBuilder sb = new StringBuilder();
+        // 直前予約の判定が日付に依存するため当日日付も含める
+        sb.append(LocalDate.now()).append('|');
+        for (ExpectedYmdTimeRange e : scanConfig.getExpectedList()) {
+            sb.append(e.getYmd()).append('/').append(e.getTimeRange()).append('/').append(e.getCourtAreaName())
+                    .append('/').append(e.getMaxCount()).append('/').append(e.isChokkinOk()).append(',');
+        }
+        sb.append('|').append(String.join(",", jogaiDates)).append('|');
+        for (TennisCourt court : yykCourtList) {
+            sb.append(court.getCourtName()).append('@').append(court.getYmd());
+            for (TimeSlot slot : court.getTimeSlotList()) {
+                sb.append('/').append(slot.getTime());
+            }
+            sb.append(',');
+        }
+        return ResponseCache.hash64(sb);
+    }
+
+    /// 予約済みの枠数を取得する（作成元と異なるリスト・件数が変わったリストなら数え直す）
+    private ReservedSlotCounter reservedSlotsOf(List<TennisCourt> yykCourtList) {
+        if (reservedSlots == null || reservedSlotSource != yykCourtList || reservedSlotSourceSize != yykCourtList.size()) {
+            reservedSlots = ReservedSlotCounter.of(yykCourtList);
+            reservedSlotSource = yykCourtList;
+            reservedSlotSourceSize = yykCourtList.size();
+        }
+        return reservedSlots;
+    }
+
+    /// 予約に成功した枠を予約済みの枠数に加算する（予約済みリストへの追加後に呼ぶ）
+    private void recordReservedSlot(List<TennisCourt> yykCourtList, TennisCourt reservedCourt, TimeSlot timeSlot) {
+        if (reservedSlots == null || reservedSlotSource != yykCourtList) {
+            // 数えていないリストなら、次に使う時に数え直す
+            return;
+        }
+        reservedSlots.add(reservedCourt, timeSlot);
+        reservedSlotSourceSize = yykCourtList.size();
     }
 
     /// 予約済みコートの取得
@@ -648,6 +1610,7 @@ public class ConnectionService {
 
         // 成功したTimeSlotだけ追加
         reservedCourt.addTimeSlot(timeSlot);
+        recordReservedSlot(yykCourtList, reservedCourt, timeSlot);
 
         // ▼ グローバル変数（今回成功したコートリスト）にも追加
         TennisCourt successCourt = new TennisCourt(court.getCourtName());
@@ -718,55 +1681,148 @@ public class ConnectionService {
 
 
     //フォーム情報取得AND送信
-    private boolean extractFormDetails(String html) {
-        // HTMLをパース
-        Document document = Jsoup.parse(html);
+    private boolean extractFormDetails(HtmlPage page, TennisCourt court, TimeSlot timeSlot) {
+        // フォームを取得 (name="form_nm" のみ。解析済みのドキュメントを使う)
+        Element form = findReservationForm(page);
+        if (form == null) {
+            return false;
+        }
+
+        // 狙い撃ち中は解放からの経過時間を記録する
+        if (sniperReleaseNanos != 0L) {
+            long latency = elapsedSinceReleaseMillis();
+            sniperPostLatencies.add(latency);
+            LogWriter.write("[INFO] 解放から予約送信まで: " + latency + "ms");
+        }
 
-        // フォームを取得 (name="form_nm" のみ)
-        Elements forms = document.select("form[name=form_nm]");
+        // 必要であればここで POST リクエストを送信
+        HtmlPage result = postReservationForm(form);
+
+        // 通信失敗（応答なし）の場合は、予約が成立していないことを確認してから一度だけ再送する
+        if (result == null) {
+            Boolean landed = confirmReservationLanded(court, timeSlot);
+            if (Boolean.TRUE.equals(landed)) {
+                LogWriter.write("[INFO] 予約送信の応答はありませんでしたが、予約済み一覧で成立を確認しました: "
+                        + court.getCourtName() + " " + court.getYmd() + " " + timeSlot.getTime());
+                return true;
+            }
+            if (landed == null) {
+                // 成立有無が確認できない場合は二重送信を避けて再送しない
+                return false;
+            }
+            LogWriter.write("[WARN] 予約送信に失敗したため一度だけ再送します: "
+                    + court.getCourtName() + " " + court.getYmd() + " " + timeSlot.getTime());
+            // 予約済み一覧を開いたことでサーバー側の画面の状態が変わっているため、
+            // 前回のフォームは使わず、枠のページから予約フォームを開き直して送信する
+            HtmlPage slotPage;
+            try {
+                slotPage = connectionUtil.getPage(timeSlot.getUrl(), RequestClass.NAVIGATION);
+            } catch (Exception e) {
+                LogWriter.write("[ERROR] 再送のための予約フォームの取得に失敗: " + e);
+                return false;
+            }
+            Element freshForm = slotPage == null ? null : findReservationForm(slotPage);
+            if (freshForm == null) {
+                return false;
+            }
+            result = postReservationForm(freshForm);
+        }
+
+        // 予約成功した場合、trueを返す
+        return !isError(result);
+    }
+
+    /// 予約フォーム（name="form_nm" の最初のフォーム）を取得する（見つからなければnull）
+    private Element findReservationForm(HtmlPage page) {
+        Elements forms = page.getForms("form_nm");
 
         // フォームが見つからない場合の処理
         if (forms.isEmpty()) {
             LogWriter.write("[ERROR] フォーム name=\"form_nm\" が見つかりませんでした。");
-            return false;
+            return null;
         }
+        return forms.first();
+    }
 
-        // フォーム情報を処理
-        String actionUrl;
-        List<NameValuePair> postBodyParams = new ArrayList<>();
-
-        for (Element form : forms) {
-            // フォーム送信先URL
-            actionUrl = form.attr("action");
-            System.out.println("フォーム送信先: " + actionUrl);
-
-            // キーバリューのペアを生成
-            Elements inputs = form.select("input");
-            for (Element input : inputs) {
-                String key = input.attr("name");
-                String value = input.attr("value");
-                if (!key.isEmpty()) {
-                    postBodyParams.add(new BasicNameValuePair(key, value));
-                }
-            }
+    /// 予約フォームの内容をPOSTする（応答がなければnull）
+    private HtmlPage postReservationForm(Element form) {
+        // フォーム送信先URL
+        String actionUrl = form.attr("action");
+        System.out.println("フォーム送信先: " + actionUrl);
 
-            // 結果を出力
-            System.out.println("POSTパラメータ:");
-            for (NameValuePair pair : postBodyParams) {
-                System.out.println("  " + pair.getName() + ": " + pair.getValue());
+        // キーバリューのペアを生成
+        List<NameValuePair> postBodyParams = new ArrayList<>();
+        Elements inputs = form.select("input");
+        for (Element input : inputs) {
+            String key = input.attr("name");
+            String value = input.attr("value");
+            if (!key.isEmpty()) {
+                postBodyParams.add(new BasicNameValuePair(key, value));
             }
+        }
 
-            // 必要であればここで POST リクエストを送信
-            String result =
-            connectionUtil.sendPostRequest(rootUrl + actionUrl, postBodyParams);
+        // 結果を出力
+        System.out.println("POSTパラメータ:");
+        for (NameValuePair pair : postBodyParams) {
+            System.out.println("  " + pair.getName() + ": " + pair.getValue());
+        }
 
-            // 予約成功した場合、trueを返す
-            return !isError(result);
+        return connectionUtil.postPage(rootUrl + actionUrl, postBodyParams);
+    }
 
+    /**
+     * 応答のなかった予約送信が成立したかを、少し待ってから予約済み一覧で確認するメソッド。
+     * 応答のない送信がサーバー側で遅れて成立することがあるため、未成立の場合も間隔をあけて確認し直す。
+     *
+     * @return 成立していれば true、すべての確認で未成立なら false、確認できなければ null
+     */
+    private Boolean confirmReservationLanded(TennisCourt court, TimeSlot timeSlot) {
+        for (int attempt = 1; attempt <= CommonConst.RESERVATION_CONFIRM_ATTEMPTS; attempt++) {
+            try {
+                Thread.sleep(CommonConst.RESERVATION_CONFIRM_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Boolean landed = isReservationLanded(court, timeSlot);
+            if (!Boolean.FALSE.equals(landed)) {
+                return landed;
+            }
+            LogWriter.write("[INFO] 予約済み一覧で予約の成立を確認できませんでした（" + attempt + "/"
+                    + CommonConst.RESERVATION_CONFIRM_ATTEMPTS + "回目）");
         }
         return false;
     }
 
+    /**
+     * 予約済み一覧を取得し、指定コート・時間帯の予約が成立しているかを確認するメソッド
+     *
+     * @return 成立していれば true、していなければ false、確認できなければ null
+     */
+    private Boolean isReservationLanded(TennisCourt court, TimeSlot timeSlot) {
+        try {
+            String yykResponse = accessYykList();
+            if (!isValidYykResponse(yykResponse)) {
+                LogWriter.write("[ERROR] 予約済み一覧を取得できず、予約の成立を確認できませんでした");
+                return null;
+            }
+            for (TennisCourt reserved : ReservedCourtParser.parseReservedTennisCourtsFromHtml(yykResponse)) {
+                if (!TennisCourtCompareUtil.isSameDate(reserved, court) || !TennisCourtCompareUtil.isSameCourt(reserved, court)) {
+                    continue;
+                }
+                for (TimeSlot reservedSlot : reserved.getTimeSlotList()) {
+                    if (TennisCourtCompareUtil.isTimeOverlap(reservedSlot.getTime(), timeSlot.getTime())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (Exception e) {
+            LogWriter.write("[ERROR] 予約の成立確認中にエラー発生: " + e);
+            return null;
+        }
+    }
+
     /**
      * gin_z_kaisi_smk_rsp → gin_z_second、
      * u_genzai_idx=4 → u_genzai_idx=2 に変換するメソッド
@@ -1,30 +1,151 @@
 package connection;
 
+import constpk.CommonConst;
 import log.LogWriter;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpHead;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
 import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.NameValuePair;
 import org.apache.hc.core5.http.protocol.BasicHttpContext;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.Timeout;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.net.ssl.SSLContext;
 
 
 public class ConnectionUtil {
+    /// サイトの既定文字コード（POSTレスポンスで文字コード指定がない場合に使用）
+    private static final Charset SITE_DEFAULT_CHARSET = Charset.forName("Shift_JIS");
+    /// TLSの設定（同期・非同期で共有し、確立済みのTLSセッションを再開できるようにする）
+    private final SSLContext sslContext = SSLContexts.createSystemDefault();
     private final CloseableHttpClient httpClient;
     private final BasicHttpContext httpContext;
+    /// Cookie（同期・非同期クライアントで共有し、ログイン状態を引き継ぐ）
+    private final BasicCookieStore cookieStore;
+    /// 非同期クライアント（初回の非同期リクエスト時に起動）
+    private CloseableHttpAsyncClient asyncClient;
+    /// サイト向けの流量制御（同期・非同期の全リクエストで共有）
+    private final AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(
+            CommonConst.RATE_LIMIT_PER_SECOND, CommonConst.RATE_LIMIT_BURST,
+            1, CommonConst.RATE_LIMIT_INITIAL_CONCURRENCY, CommonConst.ASYNC_MAX_IN_FLIGHT,
+            CommonConst.RATE_LIMIT_LATENCY_TOLERANCE, CommonConst.RATE_LIMIT_BASELINE_WINDOW);
+    /// 同時送信数の上限により待機中のリクエスト
+    private final Queue<Runnable> pendingRequests = new ConcurrentLinkedQueue<>();
+    /// トークン待ちの非同期リクエストを遅延実行するスケジューラ
+    private ScheduledExecutorService delayScheduler;
+    /// 非同期レスポンスの後続処理（HTML解析など）を実行するスレッドプール
+    private ExecutorService callbackExecutor;
+    /// ページの変化検知キャッシュ
+    private final ResponseCache responseCache = new ResponseCache(CommonConst.RESPONSE_CACHE_PATH,
+            CommonConst.RESPONSE_CACHE_MAX_AGE_DAYS, CommonConst.RESPONSE_CACHE_MAX_ENTRIES);
+    /// サイト全体の遮断器（障害中はリクエストを送らずに失敗させる）
+    private final SiteCircuitBreaker circuitBreaker = new SiteCircuitBreaker(CommonConst.BREAKER_STATE_PATH,
+            CommonConst.BREAKER_FAILURE_THRESHOLD, Duration.ofSeconds(CommonConst.BREAKER_COOLDOWN_SECONDS),
+            Duration.ofSeconds(CommonConst.BREAKER_MAX_COOLDOWN_SECONDS));
+    /// リクエスト数の予算（送信したリクエストをすべて消費として記録する）
+    private final RequestBudget requestBudget = new RequestBudget(CommonConst.REQUEST_BUDGET_PATH,
+            CommonConst.REQUEST_BUDGET_PER_MINUTE, CommonConst.REQUEST_BUDGET_PER_HOUR, CommonConst.REQUEST_BUDGET_CARRY_MINUTES);
+    /// 遮断器の復旧確認に使う安価なページのURL
+    private String probeUrl;
+    /// レスポンスのDateヘッダーから推定したサーバー時計のずれ
+    private final ServerClock serverClock = new ServerClock();
+    /// 非同期リクエストの受付締め切り（これ以降の送信は打ち切る。nullなら無期限）
+    private volatile Instant asyncDeadline;
+    /// 完了していない非同期リクエスト（締め切り時にまとめて取り消す）
+    private final Set<CompletableFuture<?>> outstandingRequests = ConcurrentHashMap.newKeySet();
+    /// リクエストの種類ごとの直近の応答時間（ヘッジ判定用）
+    private final Map<RequestClass, LatencyTracker> latencyTrackers = new EnumMap<>(RequestClass.class);
+    /// 同期リクエストを再試行した回数
+    private final AtomicLong retryCount = new AtomicLong();
+    /// 非同期リクエストの再試行・重複リクエスト
+    private final AsyncRetry asyncRetry;
+
+    /// 非同期レスポンスを変換する処理
+    private interface AsyncResponseConverter<T> {
+        T convert(SimpleHttpResponse response) throws IOException;
+    }
+
+    /// 同期レスポンスを変換する処理
+    private interface ClassicResponseConverter<T> {
+        T convert(CloseableHttpResponse response) throws IOException;
+    }
+
+    /// 再試行の対象となる同期処理
+    private interface RetryableCall<T> {
+        T call() throws IOException;
+    }
 
     // コンストラクタ
     public ConnectionUtil() {
-        this.httpClient = HttpClients.createDefault();
+        this.cookieStore = new BasicCookieStore();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setSSLSocketFactory(SSLConnectionSocketFactoryBuilder.create()
+                                .setSslContext(sslContext)
+                                .build())
+                        .setDefaultConnectionConfig(buildConnectionConfig())
+                        .build())
+                .setDefaultCookieStore(cookieStore)
+                // 受信バイト数を計測するため、展開はResponseBodyDecoder側で行う
+                .disableContentCompression()
+                .build();
         this.httpContext = new BasicHttpContext();
+        for (RequestClass requestClass : RequestClass.values()) {
+            latencyTrackers.put(requestClass, new LatencyTracker(128, CommonConst.HEDGE_MIN_SAMPLES));
+        }
+        this.asyncRetry = new AsyncRetry(this::getDelayScheduler,
+                requestClass -> latencyTrackers.get(requestClass).percentileNanos(CommonConst.HEDGE_PERCENTILE));
     }
 
 
@@ -35,35 +156,77 @@ public class ConnectionUtil {
      * @return レスポンスボディ（文字列）
      */
     public String sendGetRequest(String url) throws IOException {
+        return sendGetRequest(url, RequestClass.NAVIGATION);
+    }
+
+    /**
+     * 任意のURLに接続してレスポンスを取得するメソッド。
+     * 接続に失敗した場合はリクエストの種類ごとの方針に従って再試行する。
+     *
+     * @param url          接続先のURL
+     * @param requestClass リクエストの種類
+     * @return レスポンスボディ（文字列）
+     */
+    public String sendGetRequest(String url, RequestClass requestClass) throws IOException {
+        return getPage(url, requestClass).getBody();
+    }
+
+    /**
+     * 任意のURLに接続してページを取得するメソッド。
+     * 返したページはエラー判定・DOMを保持しているため、同じ応答を何度も解析せずに済む。
+     *
+     * @param url          接続先のURL
+     * @param requestClass リクエストの種類
+     * @return 取得したページ
+     */
+    public HtmlPage getPage(String url, RequestClass requestClass) throws IOException {
 //        System.out.println("    ・接続URL: " + url);
         try {
-            HttpGet httpGet = new HttpGet(url);
+            return withRetry(url, requestClass, () -> {
+                HttpGet httpGet = new HttpGet(url);
+                httpGet.setHeader(HttpHeaders.ACCEPT_ENCODING, ResponseBodyDecoder.ACCEPT_ENCODING);
 
-            // GETリクエスト送信
-            try (CloseableHttpResponse response = httpClient.execute(httpGet, httpContext)) {
-                // ステータスコードの表示
-                int statusCode = response.getCode();
-//                System.out.print("    ・HTTPステータスコード: " + statusCode);
-
-                // レスポンスボディの取得と表示
-                String responseBody = "";
-                if (response.getEntity() != null) {
-                    // Content-Typeから文字エンコーディングを判定
-                    Charset charset = StandardCharsets.UTF_8; // デフォルトエンコーディング
-                    if (response.getFirstHeader("Content-Type") != null) {
-                        String contentType = response.getFirstHeader("Content-Type").getValue();
-                        if (contentType.contains("charset=")) {
-                            String encoding = contentType.split("charset=")[1];
-                            charset = Charset.forName(encoding);
-                        }
-                    }
-                    responseBody = new String(response.getEntity().getContent().readAllBytes(), charset);
-                }
-                responseBody = removeEmptyLines(responseBody);
-                //                System.out.println("レスポンスボディ:");
-                //                System.out.println(responseBody);
-                return responseBody;
+                // GETリクエスト送信
+                // レスポンスボディは展開しながら目印を走査し、復号は本文が必要になるまで行わない
+                return executeClassic(requestClass, httpGet, response -> new HtmlPage(scanBody(response, StandardCharsets.UTF_8, true)), page -> page);
+            });
+        } catch (IOException e) {
+            LogWriter.write("[ERROR] 接続中にエラー発生: " + e);
+            for (StackTraceElement element : e.getStackTrace()) {
+                LogWriter.write("    at " + element.toString());
             }
+            // 呼び出し元に伝播させる
+            throw e;
+        }
+    }
+
+    /**
+     * 変化検知キャッシュを使ってGETリクエストを送信するメソッド。
+     * 前回の本文を保持していれば条件付きGETを行い、304なら保持している本文を返す。
+     *
+     * @param url              接続先のURL
+     * @param contextSignature 判定条件（希望日・予約済みなど）のハッシュ。条件が変われば「変化あり」となる
+     * @return 取得したページ（前回処理済みの内容から変化がなければ isUnchanged() が真）
+     */
+    public CachedPage sendCachedGetRequest(String url, long contextSignature) throws IOException {
+        String key = ResponseCache.toCacheKey(url);
+        try {
+            return withRetry(url, RequestClass.SCAN, () -> {
+                HttpGet httpGet = new HttpGet(url);
+                httpGet.setHeader(HttpHeaders.ACCEPT_ENCODING, ResponseBodyDecoder.ACCEPT_ENCODING);
+                responseCache.applyConditionalHeaders(httpGet, key);
+
+                return executeClassic(RequestClass.SCAN, httpGet, response -> {
+                    if (response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+                        return responseCache.onNotModified(key, contextSignature);
+                    }
+                    String responseBody = readBody(response, StandardCharsets.UTF_8);
+                    return responseCache.onResponse(key, responseBody,
+                            headerValue(response.getFirstHeader(HttpHeaders.ETAG)),
+                            headerValue(response.getFirstHeader(HttpHeaders.LAST_MODIFIED)),
+                            contextSignature);
+                }, CachedPage::getPage);
+            });
         } catch (IOException e) {
             LogWriter.write("[ERROR] 接続中にエラー発生: " + e);
             for (StackTraceElement element : e.getStackTrace()) {
@@ -74,6 +237,489 @@ public class ConnectionUtil {
         }
     }
 
+    /**
+     * 任意のURLに非同期で接続してレスポンスボディを取得するメソッド。
+     * 同時送信数は ASYNC_MAX_IN_FLIGHT までに制限され、超過分は順番待ちとなる。
+     * 失敗時は再試行し、応答が遅い場合は重複リクエストを送って先に届いた方を採用する。
+     *
+     * @param url 接続先のURL
+     * @return レスポンスボディ（文字列）のFuture。後続処理はcallbackExecutor上で実行される
+     */
+    public CompletableFuture<String> sendGetRequestAsync(String url) {
+        return getPageAsync(url).thenApply(HtmlPage::getBody);
+    }
+
+    /**
+     * 任意のURLに非同期で接続してページを取得するメソッド（送信数の制限・再試行・重複リクエストは sendGetRequestAsync と同じ）。
+     *
+     * @param url 接続先のURL
+     * @return 取得したページのFuture。後続処理はcallbackExecutor上で実行される
+     */
+    public CompletableFuture<HtmlPage> getPageAsync(String url) {
+        return asyncRetry.withRetry(url, RequestClass.SCAN, () -> {
+            SimpleHttpRequest request = SimpleRequestBuilder.get(url)
+                    .addHeader(HttpHeaders.ACCEPT_ENCODING, ResponseBodyDecoder.ACCEPT_ENCODING)
+                    .build();
+            return submitAsync(url, RequestClass.SCAN, request, response -> new HtmlPage(scanAsyncBody(response)), page -> page);
+        });
+    }
+
+    /**
+     * 変化検知キャッシュを使って非同期でGETリクエストを送信するメソッド。
+     *
+     * @param url              接続先のURL
+     * @param contextSignature 判定条件のハッシュ
+     * @return 取得したページのFuture
+     */
+    public CompletableFuture<CachedPage> sendCachedGetRequestAsync(String url, long contextSignature) {
+        String key = ResponseCache.toCacheKey(url);
+        return asyncRetry.withRetry(url, RequestClass.SCAN, () -> {
+            SimpleHttpRequest request = SimpleRequestBuilder.get(url)
+                    .addHeader(HttpHeaders.ACCEPT_ENCODING, ResponseBodyDecoder.ACCEPT_ENCODING)
+                    .build();
+            responseCache.applyConditionalHeaders(request, key);
+            return submitAsync(url, RequestClass.SCAN, request, response -> {
+                if (response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+                    return responseCache.onNotModified(key, contextSignature);
+                }
+                return responseCache.onResponse(key, decodeAsyncBody(response),
+                        headerValue(response.getFirstHeader(HttpHeaders.ETAG)),
+                        headerValue(response.getFirstHeader(HttpHeaders.LAST_MODIFIED)),
+                        contextSignature);
+            }, CachedPage::getPage);
+        });
+    }
+
+    /// 接続失敗時にリクエストの種類ごとの方針で再試行する（待ち時間は指数バックオフ＋ジッター）
+    private <T> T withRetry(String url, RequestClass requestClass, RetryableCall<T> call) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (IOException e) {
+                if (attempt >= requestClass.getMaxAttempts() || e instanceof SiteUnavailableException
+                        || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                long backoff = requestClass.backoffMillis(attempt);
+                retryCount.incrementAndGet();
+                LogWriter.write("[WARN] 接続失敗のため再試行します（" + attempt + "/" + requestClass.getMaxAttempts()
+                        + "回目失敗, " + backoff + "ms後）: " + url + " : " + e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /// 接続確立・受信途切れのタイムアウト（同期・非同期で共通）
+    private static ConnectionConfig buildConnectionConfig() {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofSeconds(CommonConst.CONNECT_TIMEOUT_SECONDS))
+                .setSocketTimeout(Timeout.ofSeconds(CommonConst.SOCKET_TIMEOUT_SECONDS))
+                .build();
+    }
+
+    /// 流量制御を通して同期リクエストを実行する
+    private <T> T executeClassic(RequestClass requestClass, HttpUriRequestBase request, ClassicResponseConverter<T> converter, Function<T, HtmlPage> pageOf) throws IOException {
+        checkCircuit(request.getRequestUri());
+        request.setConfig(requestClass.getRequestConfig());
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("流量制御の待機中に割り込みが発生しました");
+        }
+        requestBudget.spend(requestClass);
+        long start = System.nanoTime();
+        long sentAtMillis = System.currentTimeMillis();
+        int status = 0;
+        boolean errorPage = false;
+        ResponseClass responseClass = ResponseClass.TRANSIENT;
+        try (CloseableHttpResponse response = httpClient.execute(request, httpContext)) {
+            serverClock.record(sentAtMillis, System.currentTimeMillis(), DateUtils.parseStandardDate(response, HttpHeaders.DATE));
+            status = response.getCode();
+            T result = converter.convert(response);
+            // エラー判定は取得したページが保持している結果を使う（本文を何度も走査しない）
+            HtmlPage page = pageOf.apply(result);
+            errorPage = page.isErrorPage();
+            responseClass = ResponseClass.classify(status, page);
+            recordLatency(requestClass, System.nanoTime() - start, status, errorPage);
+            return result;
+        } finally {
+            circuitBreaker.record(responseClass);
+            rateLimiter.release(requestClass, System.nanoTime() - start, status, errorPage);
+            drainPendingRequests();
+        }
+    }
+
+    /// 非同期リクエストを送信待ちに積み、空き枠があれば送信する
+    private <T> CompletableFuture<T> submitAsync(String url, RequestClass requestClass, SimpleHttpRequest request,
+                                                 AsyncResponseConverter<T> converter, Function<T, HtmlPage> pageOf) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Instant deadline = asyncDeadline;
+        if (deadline != null && !Instant.now().isBefore(deadline)) {
+            // 締め切り後に来た次の段階・再試行・重複リクエストは送らない
+            result.cancel(false);
+            return result;
+        }
+        try {
+            checkCircuit(url);
+        } catch (SiteUnavailableException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        request.setConfig(requestClass.getRequestConfig());
+        outstandingRequests.add(result);
+        result.whenComplete((value, error) -> outstandingRequests.remove(result));
+        pendingRequests.add(() -> executeAsync(url, requestClass, request, converter, pageOf, result));
+        drainPendingRequests();
+        return result;
+    }
+
+    /// 流量制御の空き枠がある限り、待機中のリクエストを送信する（トークン不足分は遅延実行）
+    private void drainPendingRequests() {
+        while (!pendingRequests.isEmpty() && rateLimiter.tryAcquireSlot()) {
+            Runnable task = pendingRequests.poll();
+            if (task == null) {
+                rateLimiter.releaseSlot();
+                return;
+            }
+            long waitNanos = rateLimiter.reserveToken();
+            if (waitNanos > 0) {
+                getDelayScheduler().schedule(task, waitNanos, TimeUnit.NANOSECONDS);
+            } else {
+                task.run();
+            }
+        }
+    }
+
+    /// 非同期リクエストを実行し、完了時に枠を解放して変換結果をFutureへ渡す
+    private <T> void executeAsync(String url, RequestClass requestClass, SimpleHttpRequest request, AsyncResponseConverter<T> converter,
+                                  Function<T, HtmlPage> pageOf, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // 送信待ちの間に取り消された
+            rateLimiter.releaseSlot();
+            drainPendingRequests();
+            return;
+        }
+        long start = System.nanoTime();
+        long sentAtMillis = System.currentTimeMillis();
+        try {
+            // 並行リクエスト間でコンテキストを共有しないよう、リクエストごとに作成する
+            HttpClientContext context = HttpClientContext.create();
+            context.setCookieStore(cookieStore);
+
+            Future<SimpleHttpResponse> exchange = getAsyncClient().execute(request, context, new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    // 予算には応答を受けた送信・失敗した送信だけを数える（取り消した重複リクエストは数えない）
+                    requestBudget.spend(requestClass);
+                    long latency = System.nanoTime() - start;
+                    serverClock.record(sentAtMillis, System.currentTimeMillis(), DateUtils.parseStandardDate(response, HttpHeaders.DATE));
+                    finish(() -> {
+                        try {
+                            T converted = converter.convert(response);
+                            HtmlPage page = pageOf.apply(converted);
+                            boolean errorPage = page.isErrorPage();
+                            circuitBreaker.record(ResponseClass.classify(response.getCode(), page));
+                            rateLimiter.recordOutcome(requestClass, latency, response.getCode(), errorPage);
+                            recordLatency(requestClass, latency, response.getCode(), errorPage);
+                            result.complete(converted);
+                        } catch (IOException e) {
+                            LogWriter.write("[ERROR] レスポンスの展開に失敗: " + url + " : " + e);
+                            circuitBreaker.record(ResponseClass.TRANSIENT);
+                            rateLimiter.recordOutcome(requestClass, latency, 0, false);
+                            result.completeExceptionally(e);
+                        }
+                        drainPendingRequests();
+                    });
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    LogWriter.write("[ERROR] 非同期接続中にエラー発生: " + url + " : " + e);
+                    requestBudget.spend(requestClass);
+                    long latency = System.nanoTime() - start;
+                    finish(() -> {
+                        circuitBreaker.record(ResponseClass.TRANSIENT);
+                        rateLimiter.recordOutcome(requestClass, latency, 0, false);
+                        result.completeExceptionally(e);
+                        drainPendingRequests();
+                    });
+                }
+
+                @Override
+                public void cancelled() {
+                    finish(() -> result.cancel(false));
+                }
+            });
+            // 呼び出し側で取り消されたら通信も中断する
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+        } catch (Exception e) {
+            LogWriter.write("[ERROR] 非同期リクエストの送信に失敗: " + url + " : " + e);
+            finish(() -> result.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 遮断器が開いていればリクエストを送らずに失敗させる。
+     * 停止時間が過ぎていれば、このスレッドが確認用のリクエストを1件だけ送り、正常なら再開する。
+     */
+    private void checkCircuit(String url) throws SiteUnavailableException {
+        if (circuitBreaker.allowRequest()) {
+            return;
+        }
+        if (circuitBreaker.tryStartProbe()) {
+            ResponseClass probeResult = probeSite();
+            circuitBreaker.onProbeResult(probeResult);
+            if (probeResult == ResponseClass.OK) {
+                return;
+            }
+        }
+        circuitBreaker.recordRejected();
+        throw new SiteUnavailableException("サイト障害（" + circuitBreaker.getOpenReason() + "）のためリクエストを停止中です: " + url);
+    }
+
+    /// 復旧確認用の安価なページを取得して応答を分類する（確認用URLが未設定なら次のリクエストを確認代わりにする）
+    private ResponseClass probeSite() {
+        if (probeUrl == null || probeUrl.isEmpty()) {
+            return ResponseClass.OK;
+        }
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseClass.TRANSIENT;
+        }
+        requestBudget.spend(RequestClass.NAVIGATION);
+        long start = System.nanoTime();
+        int status = 0;
+        try {
+            HttpGet httpGet = new HttpGet(probeUrl);
+            httpGet.setHeader(HttpHeaders.ACCEPT_ENCODING, ResponseBodyDecoder.ACCEPT_ENCODING);
+            httpGet.setConfig(RequestClass.NAVIGATION.getRequestConfig());
+            try (CloseableHttpResponse response = httpClient.execute(httpGet, httpContext)) {
+                status = response.getCode();
+                return ResponseClass.classify(status, readBody(response, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            LogWriter.write("[WARN] サイトの復旧確認に失敗: " + probeUrl + " : " + e);
+            return ResponseClass.TRANSIENT;
+        } finally {
+            rateLimiter.release(null, System.nanoTime() - start, status, false);
+            drainPendingRequests();
+        }
+    }
+
+    /**
+     * サイトにリクエストを送れる状態かを確認するメソッド。
+     * 前回のJVMから引き継いだ遮断中であれば、停止時間が過ぎている場合のみ確認用のリクエストを送る。
+     *
+     * @return リクエストを送れるならtrue
+     */
+    public boolean isSiteAvailable() {
+        try {
+            checkCircuit(probeUrl);
+            return true;
+        } catch (SiteUnavailableException e) {
+            LogWriter.write("[WARN] " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * サーバー時計のずれを推定するため、送信タイミングを1秒の中でずらしながらHEADを送るメソッド。
+     * 送信間隔を「1秒 + 1秒/回数」にすることで、秒の境目をまたぐ観測が得られ推定範囲が狭まる。
+     *
+     * @param url    観測に使うURL（サイトのルートURL）
+     * @param probes 観測回数
+     */
+    public void calibrateServerClock(String url, int probes) {
+        long intervalMillis = 1000 + 1000 / Math.max(1, probes);
+        for (int i = 0; i < probes; i++) {
+            if (i > 0) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            requestBudget.spend(RequestClass.NAVIGATION);
+            long start = System.nanoTime();
+            int status = 0;
+            try {
+                HttpHead head = new HttpHead(url);
+                head.setConfig(RequestClass.NAVIGATION.getRequestConfig());
+                long sentAtMillis = System.currentTimeMillis();
+                status = httpClient.execute(head, httpContext, response -> {
+                    serverClock.record(sentAtMillis, System.currentTimeMillis(), DateUtils.parseStandardDate(response, HttpHeaders.DATE));
+                    return response.getCode();
+                });
+            } catch (IOException e) {
+                LogWriter.write("[WARN] サーバー時計の観測に失敗: " + url + " : " + e);
+            } finally {
+                rateLimiter.release(null, System.nanoTime() - start, status, false);
+                drainPendingRequests();
+            }
+        }
+    }
+
+    /// サーバー時計のずれの推定を取得する
+    public ServerClock getServerClock() {
+        return serverClock;
+    }
+
+    /**
+     * 非同期リクエストの受付締め切りを設定するメソッド。
+     * 締め切り後に送ろうとしたリクエストは送信せずに取り消される。
+     *
+     * @param deadline 締め切り（nullなら無期限）
+     */
+    public void setAsyncDeadline(Instant deadline) {
+        this.asyncDeadline = deadline;
+    }
+
+    /**
+     * 完了していない非同期リクエスト（送信待ち・通信中）をすべて取り消すメソッド。
+     *
+     * @return 取り消したリクエスト数
+     */
+    public int cancelOutstandingRequests() {
+        int cancelled = 0;
+        for (CompletableFuture<?> future : outstandingRequests) {
+            if (future.cancel(false)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /// 遮断器の復旧確認に使うURLを設定する
+    public void setProbeUrl(String probeUrl) {
+        this.probeUrl = probeUrl;
+    }
+
+    /// 遮断器を取得する
+    public SiteCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /// 正常な応答の応答時間を記録する（ヘッジの判定に使う）
+    private void recordLatency(RequestClass requestClass, long latencyNanos, int status, boolean errorPage) {
+        if (status > 0 && status < 500 && !errorPage) {
+            latencyTrackers.get(requestClass).record(latencyNanos);
+        }
+    }
+
+    /// 枠を解放し、次の待機リクエストを送信したうえで後続処理をワーカースレッドに渡す
+    private void finish(Runnable completion) {
+        rateLimiter.releaseSlot();
+        drainPendingRequests();
+        getCallbackExecutor().execute(completion);
+    }
+
+    /// トークン待ち用のスケジューラを取得する（未作成なら作成する）
+    private synchronized ScheduledExecutorService getDelayScheduler() {
+        if (delayScheduler == null) {
+            delayScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "rate-limit-delay");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return delayScheduler;
+    }
+
+    /// 非同期レスポンスのボディを展開・復号して文字列に変換する
+    private String decodeAsyncBody(SimpleHttpResponse response) throws IOException {
+        byte[] body = response.getBodyBytes();
+        if (body == null) {
+            return "";
+        }
+        Header contentType = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+        Header contentEncoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        return ResponseBodyDecoder.decode(new ByteArrayInputStream(body),
+                contentType != null ? contentType.getValue() : null,
+                contentEncoding != null ? contentEncoding.getValue() : null,
+                StandardCharsets.UTF_8);
+    }
+
+    /// 非同期レスポンスのボディを展開しながら目印を走査する（復号はしない）
+    private ResponseBodyDecoder.Scanned scanAsyncBody(SimpleHttpResponse response) throws IOException {
+        byte[] body = response.getBodyBytes();
+        Header contentType = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+        Header contentEncoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        return ResponseBodyDecoder.scan(new ByteArrayInputStream(body != null ? body : new byte[0]),
+                contentType != null ? contentType.getValue() : null,
+                body != null && contentEncoding != null ? contentEncoding.getValue() : null,
+                StandardCharsets.UTF_8, true);
+    }
+
+    /// 非同期クライアントを取得する（未起動なら起動する）
+    private synchronized CloseableHttpAsyncClient getAsyncClient() {
+        if (asyncClient == null) {
+            asyncClient = HttpAsyncClients.custom()
+                    .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                            .setMaxConnTotal(CommonConst.ASYNC_MAX_IN_FLIGHT)
+                            .setMaxConnPerRoute(CommonConst.ASYNC_MAX_IN_FLIGHT)
+                            .setTlsStrategy(ClientTlsStrategyBuilder.create()
+                                    .setSslContext(sslContext)
+                                    .build())
+                            .setDefaultConnectionConfig(buildConnectionConfig())
+                            .build())
+                    .setDefaultCookieStore(cookieStore)
+                    .build();
+            asyncClient.start();
+        }
+        return asyncClient;
+    }
+
+    /// 後続処理用のスレッドプールを取得する（未作成なら作成する）
+    private synchronized ExecutorService getCallbackExecutor() {
+        if (callbackExecutor == null) {
+            callbackExecutor = Executors.newFixedThreadPool(CommonConst.ASYNC_MAX_IN_FLIGHT, runnable -> {
+                Thread thread = new Thread(runnable, "async-scan-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return callbackExecutor;
+    }
+
+    /**
+     * 取得したページから g_sessionid を抽出（走査時に値を取り出せていれば本文を復号しない）
+     *
+     * @param page 取得したページ
+     * @return g_sessionid の値（見つからない場合は null）
+     */
+    public String extractGSessionId(HtmlPage page) {
+        PageFacts facts = page.getFacts();
+        if (facts.isSessionIdResolved()) {
+            // 受信バイト列の走査で値まで取り出せている
+            return facts.getSessionId();
+        }
+        if (!facts.isEmpty() && !facts.has(PageMarker.SESSION_ID)) {
+            LogWriter.write("[ERROR] エラー発生:g_sessionid が見つかりませんでした。");
+            System.out.print("\n    ・g_sessionid が見つかりませんでした。");
+            return null;
+        }
+        return extractGSessionId(page.getBody());
+    }
+
     /**
      * レスポンスボディから g_sessionid を抽出
      *
@@ -107,6 +753,21 @@ public class ConnectionUtil {
             String baseUrl,
             List<NameValuePair> postBodyParams
     ) {
+        HtmlPage page = postPage(baseUrl, postBodyParams);
+        return page == null ? null : page.getBody();
+    }
+
+    /**
+     * POSTリクエストを送信してページを取得するメソッド。
+     *
+     * @param baseUrl        送信先のURL
+     * @param postBodyParams POSTパラメータ
+     * @return 取得したページ（通信に失敗した場合はnull）
+     */
+    public HtmlPage postPage(
+            String baseUrl,
+            List<NameValuePair> postBodyParams
+    ) {
 //        System.out.println("    ・接続URL: " + baseUrl);
         try {
 
@@ -119,19 +780,13 @@ public class ConnectionUtil {
             }
 
             // 必要なヘッダーを追加
+            post.setHeader(HttpHeaders.ACCEPT_ENCODING, ResponseBodyDecoder.ACCEPT_ENCODING);
             post.setHeader("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/111.0.0.0 Safari/537.36");
 
             // リクエスト送信
-            try (CloseableHttpResponse response = httpClient.execute(post, httpContext)) {
-                int statusCode = response.getCode();
-//                System.out.print("    ・HTTPステータスコード: " + statusCode);
-
-                // レスポンス内容を取得（必要に応じて解析）
-                String responseBody = new String(response.getEntity().getContent().readAllBytes(), Charset.forName("Shift_JIS"));
-                //    	            System.out.println("レスポンス内容: " + responseBody);
-
-                return responseBody; // ステータスコード200を成功とみなす
-            }
+            // レスポンス内容を取得（Content-Typeに文字コード指定がなければShift_JISとみなす）
+            // POSTの応答は行頭の空白を含めて目印（"   ・dspErr()" など）を判定するため、空行除去しない
+            return executeClassic(RequestClass.POST, post, response -> new HtmlPage(scanBody(response, SITE_DEFAULT_CHARSET, false)), page -> page);
         } catch (Exception e) {
             e.printStackTrace();
             LogWriter.write("[ERROR] 接続中にエラー発生: " + e);
@@ -144,12 +799,100 @@ public class ConnectionUtil {
 
 
 
+    /**
+     * 解放時刻の直前に接続を温めておくメソッド。
+     * 接続数ぶんの軽いリクエスト（HEAD）を同時に送ってコネクションとTLSセッションを確立し、
+     * 解放時刻まで一定間隔で同じリクエストを送って接続を維持する。解放時刻になったら戻る。
+     * リクエスト数がわずかなため、流量制御は通さない。
+     *
+     * @param url       接続を温める先のURL（サイトのルートURL）
+     * @param releaseAt 解放時刻
+     */
+    public void warmUp(String url, Instant releaseAt) {
+        int connections = Math.min(CommonConst.WARMUP_CONNECTIONS, CommonConst.ASYNC_MAX_IN_FLIGHT);
+        long start = System.nanoTime();
+        int rounds = 0;
+        try {
+            while (true) {
+                sendWarmUpRound(url, connections);
+                rounds++;
+                Duration remaining = Duration.between(Instant.now(), releaseAt);
+                if (remaining.isNegative() || remaining.isZero()) {
+                    break;
+                }
+                Thread.sleep(Math.min(remaining.toMillis(), TimeUnit.SECONDS.toMillis(CommonConst.WARMUP_KEEPALIVE_SECONDS)));
+                if (!Instant.now().isBefore(releaseAt)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String msg = "ウォームアップ完了: 接続数 " + connections + " / 送信 " + rounds + "回 / "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms";
+        System.out.println("\n    ・" + msg);
+        LogWriter.write("[INFO] " + msg);
+    }
+
+    /// 同期クライアント1本と非同期クライアントの接続数ぶんのHEADを同時に送る（失敗しても処理は続行）
+    private void sendWarmUpRound(String url, int connections) {
+        List<CompletableFuture<SimpleHttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            CompletableFuture<SimpleHttpResponse> future = new CompletableFuture<>();
+            requestBudget.spend(RequestClass.NAVIGATION);
+            getAsyncClient().execute(SimpleRequestBuilder.head(url).build(), new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    future.complete(response);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    future.completeExceptionally(e);
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel(false);
+                }
+            });
+            futures.add(future);
+        }
+        try {
+            requestBudget.spend(RequestClass.NAVIGATION);
+            httpClient.execute(new HttpHead(url), httpContext, response -> null);
+        } catch (IOException e) {
+            LogWriter.write("[WARN] ウォームアップ中の接続に失敗: " + url + " : " + e);
+        }
+        for (CompletableFuture<SimpleHttpResponse> future : futures) {
+            try {
+                future.get(CommonConst.WARMUP_KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                LogWriter.write("[WARN] ウォームアップ中の非同期接続に失敗: " + url + " : " + e);
+            }
+        }
+    }
+
     /**
      * HTTPクライアントを閉じる。
      */
     public void close() {
         try {
             httpClient.close();
+            synchronized (this) {
+                if (asyncClient != null) {
+                    asyncClient.close(CloseMode.GRACEFUL);
+                }
+                if (callbackExecutor != null) {
+                    callbackExecutor.shutdown();
+                }
+                if (delayScheduler != null) {
+                    delayScheduler.shutdown();
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
             LogWriter.write("[ERROR] HTTPクライアントクローズ時にエラー発生: " + e);
@@ -159,29 +902,54 @@ public class ConnectionUtil {
         }
     }
 
+    /// ヘッダーの値を取得する（ヘッダーがなければnull）
+    private static String headerValue(Header header) {
+        return header != null ? header.getValue() : null;
+    }
+
+    /// Cookieストアを取得する（セッションの保存・復元用）
+    public BasicCookieStore getCookieStore() {
+        return cookieStore;
+    }
+
+    /// 変化検知キャッシュを取得する
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
     /**
-     * 文字列から空行を削除するメソッド
+     * レスポンスボディを展開・復号して文字列として取得する。
      *
-     * @param input 対象の文字列
-     * @return 空行が削除された文字列
+     * @param response レスポンス
+     * @param fallback Content-Typeに文字コード指定がない場合の文字コード
+     * @return 空行を除去したレスポンスボディ（ボディがなければ空文字）
      */
-    private String removeEmptyLines(String input) {
-        if (input == null || input.isEmpty()) {
-            return input; // 入力が空の場合はそのまま返す
+    private String readBody(CloseableHttpResponse response, Charset fallback) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return "";
         }
-
-        StringBuilder result = new StringBuilder();
-        String[] lines = input.split("\n"); // 行単位で分割
-
-        for (String line : lines) {
-            if (!line.trim().isEmpty()) { // 空行（空白のみ含む行）をスキップ
-                result.append(line.trim()).append("\n"); // 各行をトリムして追加
-            }
+        try (InputStream content = entity.getContent()) {
+            return ResponseBodyDecoder.decode(content, entity.getContentType(), entity.getContentEncoding(), fallback);
         }
+    }
 
-        result.append("\n");
-
-        return result.toString(); // 最後の余分な改行もトリム
+    /**
+     * レスポンスボディを展開しながら目印を走査する（復号は本文が必要になるまで行わない）。
+     *
+     * @param response レスポンス
+     * @param fallback   Content-Typeに文字コード指定がない場合の文字コード
+     * @param stripLines 各行をトリムして空行を除いた本文として扱うか
+     * @return 展開済みのボディと走査結果
+     */
+    private ResponseBodyDecoder.Scanned scanBody(CloseableHttpResponse response, Charset fallback, boolean stripLines) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return ResponseBodyDecoder.scan(new ByteArrayInputStream(new byte[0]), null, null, fallback, stripLines);
+        }
+        try (InputStream content = entity.getContent()) {
+            return ResponseBodyDecoder.scan(content, entity.getContentType(), entity.getContentEncoding(), fallback, stripLines);
+        }
     }
 
     /**
@@ -191,17 +959,23 @@ public class ConnectionUtil {
      * @return エラーが含まれている場合は true、それ以外は false
      */
     public boolean isErrorResponse(String responseBody) {
-        if (responseBody == null || responseBody.isEmpty()) {
+        return isErrorResponse(responseBody == null ? null : new HtmlPage(responseBody));
+    }
+
+    /**
+     * 取得したページがエラーかを判定するメソッド（判定はページ作成時の結果を使う）
+     *
+     * @param page 取得したページ（通信に失敗した場合はnull）
+     * @return エラーの場合は true
+     */
+    public boolean isErrorResponse(HtmlPage page) {
+        if (page == null || page.isEmpty()) {
             System.out.println("    ・レスポンスが空です。");
             return true; // 空のレスポンスはエラーとして扱う
         }
 
-        // エラー判定の条件
-        boolean containsErrorScript = responseBody.contains("   ・dspErr()");
-        boolean containsErrorMessage = responseBody.contains("  ・無効なパラメータを受信しました");
-
         // 条件のいずれかを満たしている場合はエラー
-        if (containsErrorScript || containsErrorMessage) {
+        if (page.isErrorPage()) {
             System.out.println("    ・エラー検出！");
             return true;
         }
@@ -210,4 +984,40 @@ public class ConnectionUtil {
         return false;
     }
 
+    /**
+     * レスポンスボディにエラー画面の目印が含まれるかを判定するメソッド（ログ出力なし）
+     *
+     * @param responseBody レスポンスボディ（HTML文字列）
+     * @return エラー画面の目印が含まれている場合は true
+     */
+    public static boolean containsErrorMarker(String responseBody) {
+        if (responseBody == null) {
+            return false;
+        }
+        // エラー判定の条件
+        boolean containsErrorScript = PageMarker.ERROR_SCRIPT.isIn(responseBody);
+        boolean containsErrorMessage = PageMarker.INVALID_PARAMETER.isIn(responseBody);
+        return containsErrorScript || containsErrorMessage;
+    }
+
+    /// リクエスト数の予算を取得する
+    public RequestBudget getRequestBudget() {
+        return requestBudget;
+    }
+
+    /// 流量制御を取得する
+    public AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /// 再試行・重複リクエストの集計を出力する
+    public void reportRetryStats() {
+        long scanP95 = latencyTrackers.get(RequestClass.SCAN).percentileNanos(CommonConst.HEDGE_PERCENTILE);
+        String msg = "再試行: " + (retryCount.get() + asyncRetry.getRetryCount()) + "回 / 重複リクエスト: " + asyncRetry.getHedgeCount()
+                + "回（先着 " + asyncRetry.getHedgeWinCount() + "回）"
+                + (scanP95 > 0 ? " / 日付ページ応答p" + (int) CommonConst.HEDGE_PERCENTILE + ": " + TimeUnit.NANOSECONDS.toMillis(scanP95) + "ms" : "");
+        System.out.println("\n    ・" + msg);
+        LogWriter.write("[INFO] " + msg);
+    }
+
 }
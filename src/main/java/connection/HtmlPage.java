@@ -0,0 +1,111 @@
+package connection;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+/// 取得したページ
+///
+/// 本文と、本文から1度だけ求めた判定結果（エラー画面の目印・応答の分類）を持つ。
+/// DOM（Jsoupのドキュメント）は最初に必要になった時に1度だけ作り、以後の抽出処理（iframe・フォーム・リンク）で使い回す。
+/// 受信バイト列を走査して作ったページは、本文が必要になるまで復号しない（目印だけで済む画面遷移では復号しない）。
+public class HtmlPage {
+    /// レスポンスボディ（応答がなければnull。未復号の間もnull）
+    private String body;
+    /// 未復号のボディ（復号後・文字列から作った場合はnull）
+    private ResponseBodyDecoder.Scanned scanned;
+    /// 本文に含まれる目印
+    private final PageFacts facts;
+    /// 解析済みのドキュメント（未解析ならnull）
+    private Document document;
+    /// 最初のiframeのsrcを求めたか
+    private boolean iframeSrcResolved;
+    /// 最初のiframeのsrc（iframeがなければnull）
+    private String iframeSrc;
+    /// ページ内のフォーム（未取得ならnull）
+    private Elements forms;
+
+    public HtmlPage(String body) {
+        this.body = body;
+        this.facts = PageFacts.fromText(body);
+    }
+
+    /// 受信バイト列を走査した結果から作る（走査に対応しない文字コードなら、ここで復号して判定する）
+    HtmlPage(ResponseBodyDecoder.Scanned scanned) {
+        if (scanned.getFacts() != null) {
+            this.scanned = scanned;
+            this.facts = scanned.getFacts();
+        } else {
+            this.body = scanned.decode();
+            this.facts = PageFacts.fromText(body);
+        }
+    }
+
+    /// レスポンスボディ（未復号なら初回のみ復号する）
+    public synchronized String getBody() {
+        if (scanned != null) {
+            body = scanned.decode();
+            scanned = null;
+        }
+        return body;
+    }
+
+    /// 本文が空（応答なしを含む）か
+    public boolean isEmpty() {
+        return facts.isEmpty();
+    }
+
+    /// エラー画面の目印（dspErr・無効なパラメータ）を含むか
+    public boolean isErrorPage() {
+        return facts.isErrorPage();
+    }
+
+    /// 本文のみから判定した応答の分類
+    public ResponseClass getResponseClass() {
+        return facts.getResponseClass();
+    }
+
+    /// 本文に含まれる目印
+    PageFacts getFacts() {
+        return facts;
+    }
+
+    /// 解析済みのドキュメントを取得する（初回のみ解析する）
+    public synchronized Document getDocument() {
+        if (document == null) {
+            String html = getBody();
+            document = Jsoup.parse(html == null ? "" : html);
+        }
+        return document;
+    }
+
+    /// 最初のiframeのsrc属性（iframeがなければnull）
+    public synchronized String getIframeSrc() {
+        if (!iframeSrcResolved) {
+            // iframeタグがなければ解析しない
+            Element iframe = facts.has(PageMarker.IFRAME) ? getDocument().selectFirst("iframe") : null;
+            iframeSrc = iframe != null ? iframe.attr("src") : null;
+            iframeSrcResolved = true;
+        }
+        return iframeSrc;
+    }
+
+    /// 指定したname属性のフォーム（form[name=...] と同じく大文字小文字は区別しない）
+    public synchronized Elements getForms(String name) {
+        if (name.equalsIgnoreCase(PageMarker.FORM_NM.getText()) && !facts.has(PageMarker.FORM_NM)) {
+            // 予約フォーム名が本文になければ解析しない
+            return new Elements();
+        }
+        if (forms == null) {
+            forms = getDocument().select("form");
+        }
+        Elements matched = new Elements();
+        for (Element form : forms) {
+            if (form.attr("name").trim().equalsIgnoreCase(name)) {
+                matched.add(form);
+            }
+        }
+        return matched;
+    }
+}
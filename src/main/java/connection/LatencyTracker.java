@@ -0,0 +1,41 @@
+package connection;
+
+import java.util.Arrays;
+
+/// 直近の応答時間を保持し、パーセンタイルを求めるクラス
+public class LatencyTracker {
+    /// 保持する件数
+    private final long[] samples;
+    /// パーセンタイルを出すのに必要な最小件数
+    private final int minSamples;
+    private int count = 0;
+    private int next = 0;
+
+    public LatencyTracker(int capacity, int minSamples) {
+        this.samples = new long[capacity];
+        this.minSamples = minSamples;
+    }
+
+    /// 応答時間を記録する
+    public synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * 直近の応答時間のパーセンタイルを返す。
+     *
+     * @param percentile 0〜100
+     * @return パーセンタイル値（ナノ秒）。記録が少なければ0
+     */
+    public synchronized long percentileNanos(double percentile) {
+        if (count < minSamples) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+}
@@ -0,0 +1,88 @@
+package connection;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/// ページに含まれる目印と、そこから判定した結果
+///
+/// 受信したバイト列を復号前に走査して作る場合（BytePatternMatcher）と、復号済みの文字列から作る場合がある。
+/// どちらも、空行除去後の本文に対する contains と同じ判定になる。
+final class PageFacts {
+    /// 含まれていた目印
+    private final Set<PageMarker> found;
+    /// 本文が空か
+    private final boolean empty;
+    /// 最初の g_sessionid= の直後の値（値が確定していなければnull）
+    private final String sessionId;
+    /// sessionIdが確定しているか（falseなら文字列から取り出し直す）
+    private final boolean sessionIdResolved;
+
+    PageFacts(Set<PageMarker> found, boolean empty, String sessionId, boolean sessionIdResolved) {
+        this.found = found;
+        this.empty = empty;
+        this.sessionId = sessionId;
+        this.sessionIdResolved = sessionIdResolved;
+    }
+
+    /// 復号済みの本文から作る（g_sessionidの値は取り出さない）
+    static PageFacts fromText(String body) {
+        Set<PageMarker> found = EnumSet.noneOf(PageMarker.class);
+        if (body != null) {
+            for (PageMarker marker : PageMarker.values()) {
+                if (marker.isIn(body)) {
+                    found.add(marker);
+                }
+            }
+        }
+        return new PageFacts(found, body == null || body.isEmpty(), null, false);
+    }
+
+    boolean has(PageMarker marker) {
+        return found.contains(marker);
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /// エラー画面の目印（dspErr・無効なパラメータ）を含むか
+    boolean isErrorPage() {
+        return has(PageMarker.ERROR_SCRIPT) || has(PageMarker.INVALID_PARAMETER);
+    }
+
+    /// 本文のみから応答を分類する（ResponseClass.classify(String) と同じ順で判定する）
+    ResponseClass getResponseClass() {
+        if (empty) {
+            return ResponseClass.TRANSIENT;
+        }
+        boolean maintenance = false;
+        for (PageMarker marker : found) {
+            maintenance |= marker.getResponseClass() == ResponseClass.MAINTENANCE;
+        }
+        if (maintenance && !hasContent()) {
+            return ResponseClass.MAINTENANCE;
+        }
+        for (ResponseClass candidate : new ResponseClass[]{ResponseClass.INVALID_PARAMETER, ResponseClass.SESSION_EXPIRED}) {
+            for (PageMarker marker : found) {
+                if (marker.getResponseClass() == candidate) {
+                    return candidate;
+                }
+            }
+        }
+        // トップページの「システムメンテナンスのお知らせ」などは、画面が使えていてもメンテナンスとは限らない
+        return maintenance ? ResponseClass.MAINTENANCE_NOTICE : ResponseClass.OK;
+    }
+
+    /// コート表・フォーム・iframeなど、メンテナンス専用の画面にはない中身を含むか
+    private boolean hasContent() {
+        return has(PageMarker.LINK_TABLE) || has(PageMarker.FORM) || has(PageMarker.FORM_NM) || has(PageMarker.IFRAME);
+    }
+
+    String getSessionId() {
+        return sessionId;
+    }
+
+    boolean isSessionIdResolved() {
+        return sessionIdResolved;
+    }
+}
@@ -0,0 +1,77 @@
+package connection;
+
+/// ページから探す目印（応答の分類・エラー判定・画面遷移で必要になる文字列）
+///
+/// 大文字小文字を区別しない目印は、ASCII英字のみを同一視する。
+enum PageMarker {
+    /// g_sessionid（直後の値を取り出す）
+    SESSION_ID("g_sessionid=", false, null),
+    /// エラー画面のスクリプト
+    ERROR_SCRIPT("   ・dspErr()", false, ResponseClass.SESSION_EXPIRED),
+    /// 無効なパラメータのメッセージ
+    INVALID_PARAMETER("  ・無効なパラメータを受信しました", false, ResponseClass.INVALID_PARAMETER),
+    /// タイムアウトのメッセージ
+    TIMEOUT("タイムアウトしました", false, ResponseClass.SESSION_EXPIRED),
+    /// メンテナンスの目印（通常の画面にお知らせとして表示されることもある）
+    MAINTENANCE("メンテナンス中", false, ResponseClass.MAINTENANCE),
+    SYSTEM_MAINTENANCE("システムメンテナンス", false, ResponseClass.MAINTENANCE),
+    SERVICE_STOPPED("サービスを停止", false, ResponseClass.MAINTENANCE),
+    /// iframeタグ
+    IFRAME("<iframe", true, null),
+    /// 予約フォーム名
+    FORM_NM("form_nm", true, null),
+    /// formタグ
+    FORM("<form", true, null),
+    /// コート表のclass
+    LINK_TABLE("link-table", false, null);
+
+    private final String text;
+    private final boolean ignoreCase;
+    /// この目印があるときの応答の分類（分類に関係しなければnull）
+    private final ResponseClass responseClass;
+
+    PageMarker(String text, boolean ignoreCase, ResponseClass responseClass) {
+        this.text = text;
+        this.ignoreCase = ignoreCase;
+        this.responseClass = responseClass;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    ResponseClass getResponseClass() {
+        return responseClass;
+    }
+
+    /// 文字列に目印が含まれるか
+    boolean isIn(String body) {
+        if (!ignoreCase) {
+            return body.contains(text);
+        }
+        int last = body.length() - text.length();
+        for (int i = 0; i <= last; i++) {
+            if (regionMatchesAsciiIgnoreCase(body, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean regionMatchesAsciiIgnoreCase(String body, int offset) {
+        for (int j = 0; j < text.length(); j++) {
+            if (toLowerAscii(body.charAt(offset + j)) != toLowerAscii(text.charAt(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int toLowerAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
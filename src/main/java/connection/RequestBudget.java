@@ -0,0 +1,132 @@
+package connection;
+
+import com.google.gson.Gson;
+import log.LogWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+/// サイトへのリクエスト数の予算（1分あたり・1時間あたり）
+///
+/// 2つのトークンバケツで管理し、使わなかった分は上限まで持ち越す（1分あたりは carryMinutes 分まで、1時間あたりは1時間分まで）。
+/// 実際に送信したリクエストはすべて消費として記録し、再試行などで超過した分は次回以降の予算から差し引く。
+/// launchd の起動ごとにJVMが変わっても予算を引き継げるよう、残高をファイルに保存する。
+public class RequestBudget {
+    private final Path path;
+    private final double perMinute;
+    private final double perHour;
+    private final double minuteCapacity;
+    private final Gson gson = new Gson();
+
+    private double minuteTokens;
+    private double hourTokens;
+    private long lastRefillMillis;
+    /// 今回のサイクルで消費したリクエスト数（リクエスト種別ごと）
+    private final Map<RequestClass, Integer> cycleSpend = new EnumMap<>(RequestClass.class);
+    /// 累計の消費リクエスト数
+    private long totalSpend;
+
+    /// 保存形式
+    private static class BudgetData {
+        double minuteTokens;
+        double hourTokens;
+        long lastRefillMillis;
+        long totalSpend;
+    }
+
+    public RequestBudget(String path, int perMinute, int perHour, int carryMinutes) {
+        this.path = Paths.get(path);
+        this.perMinute = perMinute;
+        this.perHour = perHour;
+        this.minuteCapacity = (double) perMinute * Math.max(1, carryMinutes);
+        this.minuteTokens = minuteCapacity;
+        this.hourTokens = perHour;
+        this.lastRefillMillis = System.currentTimeMillis();
+        load();
+    }
+
+    /// 経過時間に応じてトークンを補充する
+    private void refill() {
+        long now = System.currentTimeMillis();
+        double elapsedMinutes = Math.max(0, now - lastRefillMillis) / 60_000.0;
+        minuteTokens = Math.min(minuteCapacity, minuteTokens + elapsedMinutes * perMinute);
+        hourTokens = Math.min(perHour, hourTokens + elapsedMinutes * perHour / 60.0);
+        lastRefillMillis = now;
+    }
+
+    /// 今使えるリクエスト数（1分あたり・1時間あたりの残りの小さい方。超過分の借りがあれば0）
+    public synchronized int available() {
+        refill();
+        return (int) Math.max(0, Math.floor(Math.min(minuteTokens, hourTokens)));
+    }
+
+    /// 送信したリクエスト1件を消費として記録する（予算を超えても送信は止めない）
+    public synchronized void spend(RequestClass requestClass) {
+        refill();
+        minuteTokens -= 1;
+        hourTokens -= 1;
+        cycleSpend.merge(requestClass, 1, Integer::sum);
+        totalSpend++;
+    }
+
+    /// 今回のサイクルで消費したリクエスト数
+    public synchronized int getCycleSpend() {
+        int sum = 0;
+        for (int count : cycleSpend.values()) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /// 消費の集計を出力し、残高を保存して今回のサイクルの集計をリセットする
+    public synchronized void report() {
+        String msg = "リクエスト予算: 今回の消費 " + getCycleSpend() + "件 " + cycleSpend
+                + " / 残り " + available() + "件（1分あたり" + (int) perMinute + "・1時間あたり" + (int) perHour + "） / 累計 " + totalSpend + "件";
+        System.out.println("\n    ・" + msg);
+        LogWriter.write("[INFO] " + msg);
+        save();
+        cycleSpend.clear();
+    }
+
+    /// 前回のJVMが保存した残高を読み込む
+    private void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            BudgetData data = gson.fromJson(Files.readString(path, StandardCharsets.UTF_8), BudgetData.class);
+            if (data == null) {
+                return;
+            }
+            minuteTokens = Math.min(minuteCapacity, data.minuteTokens);
+            hourTokens = Math.min(perHour, data.hourTokens);
+            lastRefillMillis = data.lastRefillMillis;
+            totalSpend = data.totalSpend;
+            refill();
+        } catch (Exception e) {
+            LogWriter.write("[WARN] リクエスト予算の保存ファイルの読み込みに失敗: " + e.getMessage());
+        }
+    }
+
+    /// 残高を保存する
+    private void save() {
+        BudgetData data = new BudgetData();
+        data.minuteTokens = minuteTokens;
+        data.hourTokens = hourTokens;
+        data.lastRefillMillis = lastRefillMillis;
+        data.totalSpend = totalSpend;
+        try {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(path, gson.toJson(data), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            LogWriter.write("[WARN] リクエスト予算の保存ファイルの保存に失敗: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package connection;
+
+import constpk.CommonConst;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/// リクエストの種類ごとの再試行方針・タイムアウト
+public enum RequestClass {
+    /// ログイン後の画面遷移（分類画面・第一選択画面・カレンダーなど）のGET
+    NAVIGATION(3, 300, 3000, false, CommonConst.NAVIGATION_RESPONSE_TIMEOUT_SECONDS),
+    /// 日付ごとのページ取得のGET（冪等なので遅延時は重複送信も行う）
+    SCAN(3, 200, 2000, true, CommonConst.SCAN_RESPONSE_TIMEOUT_SECONDS),
+    /// ログイン・予約などのPOST（自動再試行はせず、呼び出し側で判断する）
+    POST(1, 0, 0, false, CommonConst.POST_RESPONSE_TIMEOUT_SECONDS);
+
+    /// 最大試行回数（初回を含む）
+    private final int maxAttempts;
+    /// 再試行待ち時間の基準（ミリ秒）
+    private final long baseDelayMillis;
+    /// 再試行待ち時間の上限（ミリ秒）
+    private final long maxDelayMillis;
+    /// 応答が遅いときに重複リクエスト（ヘッジ）を送るか
+    private final boolean hedged;
+    /// リクエストごとのタイムアウト設定
+    private final RequestConfig requestConfig;
+
+    RequestClass(int maxAttempts, long baseDelayMillis, long maxDelayMillis, boolean hedged, int responseTimeoutSeconds) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.hedged = hedged;
+        this.requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofSeconds(CommonConst.CONNECTION_REQUEST_TIMEOUT_SECONDS))
+                .setResponseTimeout(Timeout.ofSeconds(responseTimeoutSeconds))
+                .build();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public boolean isHedged() {
+        return hedged;
+    }
+
+    public RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+
+    /// 失敗した試行回数から、次の試行までの待ち時間を決める（指数バックオフ＋フルジッター）
+    public long backoffMillis(int failedAttempts) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(failedAttempts - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
@@ -0,0 +1,287 @@
+package connection;
+
+import org.apache.hc.core5.http.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/// レスポンスボディをストリームのまま展開・復号するユーティリティ
+///
+/// 受信バイト → gzip/deflate展開 → CharsetDecoderで逐次復号 → 空行除去 を1パスで行い、
+/// 従来の readAllBytes → new String → removeEmptyLines のような中間コピーを作らない。
+public class ResponseBodyDecoder {
+    /// リクエスト時に送るAccept-Encoding
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    /// 読み込みバッファサイズ
+    private static final int BUFFER_SIZE = 8192;
+    /// スレッドごとに使い回すCharsetDecoder（CharsetDecoderはスレッドセーフではないため）
+    private static final ThreadLocal<Map<Charset, CharsetDecoder>> DECODERS = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * レスポンスボディを展開・復号し、空行を除去した文字列として返す。
+     *
+     * @param wireStream      受信したままのボディ
+     * @param contentType     Content-Typeヘッダーの値（null可）
+     * @param contentEncoding Content-Encodingヘッダーの値（null可）
+     * @param fallback        Content-Typeに文字コード指定がない場合の文字コード
+     * @return 各行をトリムし空行を除いたボディ（ボディが空なら空文字）
+     */
+    public static String decode(InputStream wireStream, String contentType, String contentEncoding, Charset fallback) throws IOException {
+        CountingInputStream counted = new CountingInputStream(wireStream);
+        CountingInputStream inflated = new CountingInputStream(decompress(counted, contentEncoding));
+        LineStripper stripper = decodeLines(inflated, resolveCharset(contentType, fallback), true);
+
+        String body = stripper.finish();
+        TransferStatTracker.record(counted.count, inflated.count, stripper.decodedChars, body.length(),
+                contentEncoding != null && !contentEncoding.isBlank());
+        return body;
+    }
+
+    /**
+     * レスポンスボディを展開しながら目印（PageMarker）を走査し、復号は行わずにバイト列のまま返す。
+     * 目印だけで判定できるページ（ログイン・分類選択などの画面遷移）は、復号・空行除去・解析を省略できる。
+     *
+     * @param wireStream      受信したままのボディ
+     * @param contentType     Content-Typeヘッダーの値（null可）
+     * @param contentEncoding Content-Encodingヘッダーの値（null可）
+     * @param fallback        Content-Typeに文字コード指定がない場合の文字コード
+     * @param stripLines      復号時に各行をトリムして空行を除くか（falseなら受信したままの本文として判定・復号する）
+     * @return 展開済みのボディと走査結果（文字コードがバイト単位の走査に対応しなければ走査結果はnull）
+     */
+    static Scanned scan(InputStream wireStream, String contentType, String contentEncoding, Charset fallback,
+                        boolean stripLines) throws IOException {
+        CountingInputStream counted = new CountingInputStream(wireStream);
+        InputStream inflated = decompress(counted, contentEncoding);
+        Charset charset = resolveCharset(contentType, fallback);
+        BytePatternMatcher matcher = BytePatternMatcher.forCharset(charset);
+        BytePatternMatcher.Scan scan = matcher != null ? matcher.newScan(stripLines) : null;
+
+        byte[] bytes = new byte[BUFFER_SIZE];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int read = inflated.read(bytes, length, bytes.length - length);
+            if (read < 0) {
+                break;
+            }
+            if (scan != null) {
+                scan.feed(bytes, length, read);
+            }
+            length += read;
+        }
+        TransferStatTracker.recordScanned(counted.count, length, contentEncoding != null && !contentEncoding.isBlank());
+        return new Scanned(bytes, length, charset, stripLines, scan != null ? scan.finish(charset) : null);
+    }
+
+    /// 展開済みのバイト列を逐次復号し、stripLinesなら空行を除去しながら組み立てる
+    private static LineStripper decodeLines(InputStream inflated, Charset charset, boolean stripLines) throws IOException {
+        CharsetDecoder decoder = decoderFor(charset);
+        ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer charBuffer = CharBuffer.allocate(BUFFER_SIZE);
+        LineStripper stripper = new LineStripper(stripLines);
+
+        boolean eof = false;
+        while (!eof) {
+            int read = inflated.read(byteBuffer.array(), byteBuffer.position(), byteBuffer.remaining());
+            if (read < 0) {
+                eof = true;
+            } else {
+                byteBuffer.position(byteBuffer.position() + read);
+            }
+            byteBuffer.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(byteBuffer, charBuffer, eof);
+                stripper.drain(charBuffer);
+            } while (result.isOverflow());
+            byteBuffer.compact();
+        }
+        CoderResult result;
+        do {
+            result = decoder.flush(charBuffer);
+            stripper.drain(charBuffer);
+        } while (result.isOverflow());
+        return stripper;
+    }
+
+    /// 展開済み・未復号のボディと、その走査結果
+    static final class Scanned {
+        private final byte[] bytes;
+        private final int length;
+        private final Charset charset;
+        /// 復号時に空行除去するか
+        private final boolean stripLines;
+        /// 走査結果（バイト単位の走査に対応しない文字コードならnull）
+        private final PageFacts facts;
+
+        private Scanned(byte[] bytes, int length, Charset charset, boolean stripLines, PageFacts facts) {
+            this.bytes = bytes;
+            this.length = length;
+            this.charset = charset;
+            this.stripLines = stripLines;
+            this.facts = facts;
+        }
+
+        PageFacts getFacts() {
+            return facts;
+        }
+
+        /// 復号して文字列にする（stripLinesなら decode と同じ結果）
+        String decode() {
+            LineStripper stripper;
+            try {
+                stripper = decodeLines(new ByteArrayInputStream(bytes, 0, length), charset, stripLines);
+            } catch (IOException e) {
+                // メモリ上のバイト列からの読み込みでは発生しない
+                throw new UncheckedIOException(e);
+            }
+            String body = stripper.finish();
+            TransferStatTracker.recordDeferredDecode(stripper.decodedChars, body.length());
+            return body;
+        }
+    }
+
+    /// Content-Typeから文字コードを判定する（判定できなければfallback）
+    static Charset resolveCharset(String contentType, Charset fallback) {
+        if (contentType == null || contentType.isBlank()) {
+            return fallback;
+        }
+        try {
+            ContentType parsed = ContentType.parseLenient(contentType);
+            if (parsed != null && parsed.getCharset() != null) {
+                return parsed.getCharset();
+            }
+        } catch (Exception e) {
+            // 未知の文字コード指定などはフォールバックで処理を続ける
+        }
+        return fallback;
+    }
+
+    /// Content-Encodingに応じて展開ストリームを被せる
+    private static InputStream decompress(InputStream in, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return in;
+        }
+        String encoding = contentEncoding.trim().toLowerCase();
+        if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        if (encoding.equals("deflate")) {
+            // zlibヘッダー付き・生deflateのどちらも送ってくるサーバーがあるため先頭2バイトで判定
+            PushbackInputStream pushback = new PushbackInputStream(in, 2);
+            int b0 = pushback.read();
+            int b1 = pushback.read();
+            if (b1 >= 0) pushback.unread(b1);
+            if (b0 >= 0) pushback.unread(b0);
+            boolean zlibWrapped = b0 >= 0 && b1 >= 0 && (b0 & 0x0F) == 8 && ((b0 << 8) | b1) % 31 == 0;
+            return new InflaterInputStream(pushback, new Inflater(!zlibWrapped), BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /// スレッドごとにキャッシュしたCharsetDecoderを初期化して返す
+    private static CharsetDecoder decoderFor(Charset charset) {
+        CharsetDecoder decoder = DECODERS.get().computeIfAbsent(charset, c -> c.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+        decoder.reset();
+        return decoder;
+    }
+
+    /// 復号済み文字を受け取り、各行をトリムして空行を除去しながら組み立てる（stripLinesでなければそのまま組み立てる）
+    private static class LineStripper {
+        private final StringBuilder out = new StringBuilder(BUFFER_SIZE);
+        private final boolean stripLines;
+        /// 現在行の開始位置
+        private int lineStart = 0;
+        /// 復号した文字数（空行除去前）
+        private long decodedChars = 0;
+
+        LineStripper(boolean stripLines) {
+            this.stripLines = stripLines;
+        }
+
+        void drain(CharBuffer charBuffer) {
+            charBuffer.flip();
+            while (charBuffer.hasRemaining()) {
+                accept(charBuffer.get());
+            }
+            charBuffer.clear();
+        }
+
+        private void accept(char c) {
+            decodedChars++;
+            if (!stripLines) {
+                out.append(c);
+            } else if (c == '\n') {
+                endLine();
+            } else if (c > ' ' || out.length() > lineStart) {
+                // 行頭の空白は読み飛ばす（String#trim と同じく ' ' 以下を空白とみなす）
+                out.append(c);
+            }
+        }
+
+        /// 行末の空白を落とし、中身があれば改行を付ける
+        private void endLine() {
+            int end = out.length();
+            while (end > lineStart && out.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            out.setLength(end);
+            if (end > lineStart) {
+                out.append('\n');
+            }
+            lineStart = out.length();
+        }
+
+        String finish() {
+            if (decodedChars == 0 || !stripLines) {
+                return out.toString(); // 入力が空の場合・空行除去しない場合はそのまま返す
+            }
+            endLine();
+            out.append('\n');
+            return out.toString();
+        }
+    }
+
+    /// 読み込んだバイト数を数えるストリーム
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package connection;
+
+import log.LogWriter;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// ページの変化検知キャッシュ
+///
+/// URL（g_sessionidを除く）をキーに、ETag/Last-Modifiedと内容ハッシュを保持する。
+/// サーバーが条件付きGETに対応していれば304で本文の再取得を省き、
+/// 対応していなくても内容ハッシュが「処理済み」時点と一致すれば解析・照合を省略できる。
+/// 処理済みハッシュはファイルに保存し、次回の起動でも利用する。
+/// 一定期間使われなかったハッシュ（過去日のページなど）と上限を超えた分は、保存時に捨てる。
+public class ResponseCache {
+    /// FNV-1a 64bit のオフセット基底
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    /// FNV-1a 64bit の素数
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /// 処理済みハッシュの保存先
+    private final String path;
+    /// この期間使われなかった処理済みハッシュは捨てる（ミリ秒）
+    private final long maxAgeMillis;
+    /// 保存する処理済みハッシュの上限
+    private final int maxEntries;
+    /// キーごとのキャッシュ
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    /// 変化ありのページの解析・照合に要した累計時間
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicInteger parseCount = new AtomicInteger();
+
+    /// キャッシュ1件分
+    private static class Entry {
+        volatile String etag;
+        volatile String lastModified;
+        volatile String body;
+        volatile long bodyHash;
+        volatile boolean settled;
+        volatile long settledHash;
+        /// 処理済みハッシュを最後に記録・利用した時刻（エポックミリ秒）
+        volatile long usedAt;
+    }
+
+    public ResponseCache(String path, int maxAgeDays, int maxEntries) {
+        this.path = path;
+        this.maxAgeMillis = maxAgeDays * 24L * 60 * 60 * 1000;
+        this.maxEntries = maxEntries;
+        load();
+    }
+
+    /// URLからg_sessionidを除いてキャッシュキーにする
+    public static String toCacheKey(String url) {
+        if (url == null) {
+            return "";
+        }
+        int q = url.indexOf('?');
+        if (q < 0) {
+            return url;
+        }
+        StringBuilder key = new StringBuilder(url.length()).append(url, 0, q);
+        char sep = '?';
+        for (String param : url.substring(q + 1).split("&")) {
+            if (param.isEmpty() || param.startsWith(constpk.ConConst.G_SESSION_ID_KEY + "=")) {
+                continue;
+            }
+            key.append(sep).append(param);
+            sep = '&';
+        }
+        return key.toString();
+    }
+
+    /// 文字列の64bitハッシュ（FNV-1a）
+    public static long hash64(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /// 本文ハッシュと判定条件のハッシュを合成する
+    private static long combine(long bodyHash, long contextSignature) {
+        long hash = bodyHash ^ (contextSignature + 0x9e3779b97f4a7c15L + (bodyHash << 6) + (bodyHash >>> 2));
+        return hash * FNV_PRIME;
+    }
+
+    /// 前回の本文を保持していれば条件付きGET用ヘッダーを付与する
+    public void applyConditionalHeaders(HttpRequest request, String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.body == null) {
+            return;
+        }
+        if (entry.etag != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+        }
+        if (entry.lastModified != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+        }
+    }
+
+    /// 304 Not Modifiedを受けた場合のページを作る
+    public CachedPage onNotModified(String key, long contextSignature) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.body == null) {
+            throw new IOException("304を受信しましたがキャッシュ済みの本文がありません: " + key);
+        }
+        notModifiedCount.incrementAndGet();
+        return toPage(key, entry, entry.body, combine(entry.bodyHash, contextSignature), true);
+    }
+
+    /// 通常のレスポンスを受けた場合にキャッシュを更新し、ページを作る
+    public CachedPage onResponse(String key, String body, String etag, String lastModified, long contextSignature) {
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        long bodyHash = hash64(body);
+        entry.etag = etag;
+        entry.lastModified = lastModified;
+        // 条件付きGETに使えるヘッダーがある場合のみ本文を保持する
+        entry.body = (etag != null || lastModified != null) ? body : null;
+        entry.bodyHash = bodyHash;
+        return toPage(key, entry, body, combine(bodyHash, contextSignature), false);
+    }
+
+    private CachedPage toPage(String key, Entry entry, String body, long hash, boolean notModified) {
+        boolean unchanged = entry.settled && entry.settledHash == hash;
+        if (unchanged) {
+            entry.usedAt = System.currentTimeMillis();
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return new CachedPage(key, body, hash, unchanged, notModified);
+    }
+
+    /// ページを「処理済み（予約対象なし）」として記録する。次回同じ内容なら解析・照合を省略する
+    public void markSettled(CachedPage page) {
+        Entry entry = entries.computeIfAbsent(page.getKey(), k -> new Entry());
+        entry.settledHash = page.getHash();
+        entry.settled = true;
+        entry.usedAt = System.currentTimeMillis();
+    }
+
+    /// ページの内容が変わったなどで解析・照合を実施した時間を記録する
+    public void recordParseTime(long nanos) {
+        parseNanos.addAndGet(nanos);
+        parseCount.incrementAndGet();
+    }
+
+    /// 今回の処理のヒット率などをログに出力する
+    public void report() {
+        int hits = hitCount.get();
+        int misses = missCount.get();
+        int parses = parseCount.get();
+        double avgParseMs = parses == 0 ? 0 : parseNanos.get() / 1_000_000.0 / parses;
+        LogWriter.write(String.format(
+                "[INFO] 変化検知キャッシュ: ヒット%d件 / ミス%d件（うち304: %d件） 解析・照合平均%.1fms → 推定節約%.1fms",
+                hits, misses, notModifiedCount.get(), avgParseMs, avgParseMs * hits));
+    }
+
+    /// 処理済みハッシュをファイルから読み込む
+    private void load() {
+        File file = new File(path);
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            long now = System.currentTimeMillis();
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 2 && parts.length != 3) {
+                    continue;
+                }
+                Entry entry = new Entry();
+                entry.settled = true;
+                entry.settledHash = Long.parseUnsignedLong(parts[1], 16);
+                // 時刻のない行（以前の形式）は読み込んだ時点から数える
+                entry.usedAt = parts.length == 3 ? Long.parseLong(parts[2]) : now;
+                entries.put(parts[0], entry);
+            }
+        } catch (Exception e) {
+            LogWriter.write("[WARN] 変化検知キャッシュの読み込みに失敗: " + e.getMessage());
+        }
+    }
+
+    /// 処理済みハッシュをファイルに保存する（期限切れ・上限超過の分は捨てる）
+    public void save() {
+        File file = new File(path);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        List<Map.Entry<String, Entry>> settled = prune();
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (Map.Entry<String, Entry> e : settled) {
+                writer.println(e.getKey() + "\t" + Long.toHexString(e.getValue().settledHash) + "\t" + e.getValue().usedAt);
+            }
+        } catch (IOException e) {
+            LogWriter.write("[ERROR] 変化検知キャッシュの保存に失敗: " + e.getMessage());
+        }
+    }
+
+    /// 一定期間使われなかった処理済みハッシュと、上限を超えた古い分を捨て、残りを新しい順に返す
+    private List<Map.Entry<String, Entry>> prune() {
+        long expireBefore = System.currentTimeMillis() - maxAgeMillis;
+        List<Map.Entry<String, Entry>> settled = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (!e.getValue().settled) {
+                continue;
+            }
+            if (e.getValue().usedAt < expireBefore) {
+                e.getValue().settled = false;
+                continue;
+            }
+            settled.add(e);
+        }
+        settled.sort(Comparator.comparingLong((Map.Entry<String, Entry> e) -> e.getValue().usedAt).reversed());
+        if (settled.size() > maxEntries) {
+            for (Map.Entry<String, Entry> e : settled.subList(maxEntries, settled.size())) {
+                e.getValue().settled = false;
+            }
+            settled = new ArrayList<>(settled.subList(0, maxEntries));
+        }
+        // 本文も保持していないキャッシュは残す必要がない
+        entries.values().removeIf(entry -> !entry.settled && entry.body == null);
+        return settled;
+    }
+}
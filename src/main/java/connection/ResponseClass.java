@@ -0,0 +1,60 @@
+package connection;
+
+/// サイトからの応答の分類
+public enum ResponseClass {
+    /// 正常
+    OK,
+    /// メンテナンス中（503またはメンテナンス専用の画面。サイト全体が使えない）
+    MAINTENANCE,
+    /// メンテナンスのお知らせ（通常の画面にメンテナンスの文言が含まれていた）
+    MAINTENANCE_NOTICE,
+    /// セッション切れ（エラー画面へリダイレクトされた）
+    SESSION_EXPIRED,
+    /// 無効なパラメータ（URLが古いなど、そのページ固有の失敗）
+    INVALID_PARAMETER,
+    /// 一時的な失敗（通信エラー・5xx・空の応答）
+    TRANSIENT;
+
+    /**
+     * ステータスコードとレスポンスボディから応答を分類する。
+     *
+     * @param status       ステータスコード（通信エラーで応答がない場合は0）
+     * @param responseBody レスポンスボディ（なければnull）
+     * @return 応答の分類
+     */
+    public static ResponseClass classify(int status, String responseBody) {
+        return classify(status, PageFacts.fromText(responseBody));
+    }
+
+    /// ステータスコードと取得済みのページから応答を分類する（本文の判定はページ作成時のものを使う）
+    public static ResponseClass classify(int status, HtmlPage page) {
+        return classify(status, page.getFacts());
+    }
+
+    /// ステータスコードと本文の目印から応答を分類する
+    static ResponseClass classify(int status, PageFacts facts) {
+        ResponseClass bodyClass = facts.getResponseClass();
+        if (status == 503 && (bodyClass == MAINTENANCE || bodyClass == MAINTENANCE_NOTICE)) {
+            return MAINTENANCE;
+        }
+        if (status == 0 || status == 429 || status >= 500) {
+            return TRANSIENT;
+        }
+        return bodyClass;
+    }
+
+    /// レスポンスボディのみから応答を分類する（目印は PageMarker を参照）
+    public static ResponseClass classify(String responseBody) {
+        return PageFacts.fromText(responseBody).getResponseClass();
+    }
+
+    /// サイト側の障害として遮断器の失敗回数に数えるか（無効なパラメータはページ固有の失敗なので数えない）
+    public boolean isSiteFailure() {
+        return this == MAINTENANCE || this == MAINTENANCE_NOTICE || this == SESSION_EXPIRED || this == TRANSIENT;
+    }
+
+    /// 1回で遮断を確定させるか（お知らせの文言だけのページは、他の失敗と同じく連続回数で判断する）
+    public boolean isConfirmedOutage() {
+        return this == MAINTENANCE;
+    }
+}
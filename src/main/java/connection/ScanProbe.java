@@ -0,0 +1,175 @@
+package connection;
+
+import log.LogWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/// 月ページの日付セルの内容から、日付ごとの取得（4段階の取得チェーン）が必要かを判定するクラス
+///
+/// 月ページは毎回取得するが、日付セル（リンク・表示）の内容が前回「予約対象なし」と確認したときと同じで、
+/// 判定条件（希望日・予約済みなど）も変わっていなければ、その日付のページは取得しない。
+/// セルに表れない変化を取りこぼさないよう、一定時間ごとにすべての日付を取得する。
+public class ScanProbe {
+    /// 全日付を取得したことを表す行のキー
+    private static final String LAST_FULL_SCAN_KEY = "#lastFullScan";
+    /// セル中のセッションIDを除去するためのパターン
+    private static final Pattern SESSION_ID_PATTERN = Pattern.compile("g_sessionid=[^&\"'\\s]*");
+
+    /// 確認済みの日付の情報
+    private static class Settled {
+        final long cellHash;
+        final long contextSignature;
+
+        Settled(long cellHash, long contextSignature) {
+            this.cellHash = cellHash;
+            this.contextSignature = contextSignature;
+        }
+    }
+
+    private final String path;
+    private final Duration fullScanInterval;
+    /// 今回のサイクルで観測した日付セルのハッシュ
+    private final Map<String, Long> currentCellHashes = new ConcurrentHashMap<>();
+    /// 前回までに「予約対象なし」と確認した日付
+    private final Map<String, Settled> settled = new ConcurrentHashMap<>();
+    private long lastFullScanMillis = 0L;
+    /// 今回のサイクルで全日付を取得するか
+    private boolean fullScan = true;
+
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicInteger scannedCount = new AtomicInteger();
+
+    public ScanProbe(String path, Duration fullScanInterval) {
+        this.path = path;
+        this.fullScanInterval = fullScanInterval;
+        load();
+    }
+
+    /**
+     * サイクルの開始時に呼び出し、今回すべての日付を取得するかを決める。
+     *
+     * @param forceFull 呼び出し側の都合で全日付を取得する場合はtrue
+     * @return 全日付を取得するならtrue
+     */
+    public boolean beginCycle(boolean forceFull) {
+        currentCellHashes.clear();
+        skippedCount.set(0);
+        scannedCount.set(0);
+        fullScan = forceFull || System.currentTimeMillis() - lastFullScanMillis >= fullScanInterval.toMillis();
+        return fullScan;
+    }
+
+    /// 全日付を取得し終えたことを記録する
+    public void endFullScan() {
+        if (fullScan) {
+            lastFullScanMillis = System.currentTimeMillis();
+        }
+    }
+
+    /// 月ページの日付セルを観測する
+    public void observeDayCell(String ymd, String cellHtml) {
+        if (ymd == null || cellHtml == null) {
+            return;
+        }
+        String normalized = SESSION_ID_PATTERN.matcher(cellHtml).replaceAll("g_sessionid=");
+        currentCellHashes.put(ymd, ResponseCache.hash64(normalized));
+    }
+
+    /**
+     * 日付のページを取得する必要があるかを判定する。
+     *
+     * @param ymd              日付（yyyyMMdd）
+     * @param contextSignature 判定条件のハッシュ
+     * @return 取得が必要ならtrue
+     */
+    public boolean needsScan(String ymd, long contextSignature) {
+        boolean needed = fullScan || isChanged(ymd, contextSignature);
+        (needed ? scannedCount : skippedCount).incrementAndGet();
+        return needed;
+    }
+
+    private boolean isChanged(String ymd, long contextSignature) {
+        Long current = ymd == null ? null : currentCellHashes.get(ymd);
+        Settled previous = ymd == null ? null : settled.get(ymd);
+        return current == null || previous == null
+                || previous.cellHash != current || previous.contextSignature != contextSignature;
+    }
+
+    /// 日付のページを取得し、予約対象がなかったことを記録する（次回セルが同じなら取得を省略する）
+    public void markSettled(String ymd, long contextSignature) {
+        Long current = ymd == null ? null : currentCellHashes.get(ymd);
+        if (current != null) {
+            settled.put(ymd, new Settled(current, contextSignature));
+        }
+    }
+
+    /// 予約対象があった（または予約を試みた）日付は次回も必ず取得する
+    public void markPending(String ymd) {
+        if (ymd != null) {
+            settled.remove(ymd);
+        }
+    }
+
+    /// 判定結果の集計を出力する
+    public void report() {
+        LogWriter.write("[INFO] 月ページによる事前判定: " + (fullScan ? "全日付取得" : "変化のあった日付のみ取得")
+                + " / 取得 " + scannedCount.get() + "件 / 省略 " + skippedCount.get() + "件");
+    }
+
+    /// 前回までの確認結果をファイルから読み込む
+    private void load() {
+        File file = new File(path);
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length == 2 && LAST_FULL_SCAN_KEY.equals(parts[0])) {
+                    lastFullScanMillis = Long.parseLong(parts[1]);
+                } else if (parts.length == 3) {
+                    settled.put(parts[0], new Settled(Long.parseUnsignedLong(parts[1], 16), Long.parseUnsignedLong(parts[2], 16)));
+                }
+            }
+        } catch (Exception e) {
+            LogWriter.write("[WARN] 月ページ判定の記録の読み込みに失敗: " + e.getMessage());
+        }
+        prunePastDates();
+    }
+
+    /// 過去の日付の確認結果を捨てる（二度と取得しないため、残しておくとファイルが増え続ける）
+    private void prunePastDates() {
+        String today = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        settled.keySet().removeIf(ymd -> ymd.compareTo(today) < 0);
+    }
+
+    /// 確認結果をファイルに保存する（過去の日付は捨てる）
+    public void save() {
+        prunePastDates();
+        File file = new File(path);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println(LAST_FULL_SCAN_KEY + "\t" + lastFullScanMillis);
+            for (Map.Entry<String, Settled> e : settled.entrySet()) {
+                writer.println(e.getKey() + "\t" + Long.toHexString(e.getValue().cellHash)
+                        + "\t" + Long.toHexString(e.getValue().contextSignature));
+            }
+        } catch (IOException e) {
+            LogWriter.write("[ERROR] 月ページ判定の記録の保存に失敗: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package connection;
+
+import log.LogWriter;
+
+import java.time.Instant;
+import java.util.concurrent.locks.LockSupport;
+
+/// レスポンスのDateヘッダーからサーバー時計とローカル時計のずれを推定するクラス
+///
+/// Dateヘッダーは秒単位だが、サーバーが刻印した時刻 D は送信〜受信の間のどこかで
+/// 「D <= ローカル時刻 + ずれ < D + 1秒」を満たす。観測ごとにずれの取りうる範囲を狭め、その中央を推定値とする。
+/// 送信タイミングを秒の中でずらしながら観測すると、範囲は往復時間程度まで狭まる。
+public class ServerClock {
+    /// ずれ（サーバー − ローカル、ミリ秒）の下限・上限
+    private long lowerMillis = Long.MIN_VALUE;
+    private long upperMillis = Long.MAX_VALUE;
+    private int sampleCount = 0;
+    /// 矛盾した観測（時計の調整など）でやり直した回数
+    private int resetCount = 0;
+
+    /**
+     * 1回分の観測を反映する。
+     *
+     * @param sentAtMillis     送信直前のローカル時刻
+     * @param receivedAtMillis 受信直後のローカル時刻
+     * @param serverDate       レスポンスのDateヘッダー（なければnull）
+     */
+    public synchronized void record(long sentAtMillis, long receivedAtMillis, Instant serverDate) {
+        if (serverDate == null) {
+            return;
+        }
+        long stamped = serverDate.toEpochMilli();
+        long lower = stamped - receivedAtMillis;
+        long upper = stamped + 1000 - sentAtMillis;
+        long newLower = Math.max(lowerMillis, lower);
+        long newUpper = Math.min(upperMillis, upper);
+        if (newLower > newUpper) {
+            // 範囲が交わらない場合は時計が調整されたとみなし、今回の観測からやり直す
+            newLower = lower;
+            newUpper = upper;
+            resetCount++;
+        }
+        lowerMillis = newLower;
+        upperMillis = newUpper;
+        sampleCount++;
+    }
+
+    public synchronized boolean hasEstimate() {
+        return sampleCount > 0;
+    }
+
+    /// ずれの推定値（サーバー − ローカル、ミリ秒）。観測がなければ0
+    public synchronized long offsetMillis() {
+        return sampleCount == 0 ? 0 : lowerMillis + (upperMillis - lowerMillis) / 2;
+    }
+
+    /// 推定値の誤差（±ミリ秒）。観測がなければ-1
+    public synchronized long uncertaintyMillis() {
+        return sampleCount == 0 ? -1 : (upperMillis - lowerMillis) / 2;
+    }
+
+    /// サーバー時刻に対応するローカル時刻を返す
+    public Instant toLocal(Instant serverInstant) {
+        return serverInstant.minusMillis(offsetMillis());
+    }
+
+    /**
+     * 指定したローカル時刻まで待つ。
+     * 直前まではスリープし、最後の数ミリ秒はスピンしてミリ秒単位で合わせる。
+     */
+    public static void sleepUntil(Instant localTarget) throws InterruptedException {
+        while (true) {
+            long remainingMillis = localTarget.toEpochMilli() - System.currentTimeMillis();
+            if (remainingMillis <= 0) {
+                return;
+            }
+            if (remainingMillis > 20) {
+                Thread.sleep(remainingMillis - 15);
+            } else if (remainingMillis > 2) {
+                LockSupport.parkNanos(500_000L);
+            } else {
+                Thread.onSpinWait();
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /// 推定結果を出力する
+    public synchronized void report() {
+        String msg = sampleCount == 0
+                ? "サーバー時計: 観測なし"
+                : "サーバー時計: ずれ " + offsetMillis() + "ms（±" + uncertaintyMillis() + "ms） / 観測 " + sampleCount + "件"
+                + (resetCount > 0 ? "（やり直し " + resetCount + "回）" : "");
+        System.out.println("\n    ・" + msg);
+        LogWriter.write("[INFO] " + msg);
+    }
+}
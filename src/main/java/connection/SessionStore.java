@@ -0,0 +1,138 @@
+package connection;
+
+import com.google.gson.Gson;
+import log.LogWriter;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.impl.cookie.BasicClientCookie;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// ログインセッション（Cookieとg_sessionid）をファイルに保存・復元するクラス
+///
+/// 次回の起動時に復元できれば、初期画面接続（gin_init2）とログイン（gin_login）を省略できる。
+/// 有効かどうかは呼び出し側で安価なページを取得して確認する。
+public class SessionStore {
+    /// 保存先
+    private final Path path;
+    /// この時間より古いセッションは復元しない
+    private final Duration maxAge;
+    private final Gson gson = new Gson();
+
+    /// 保存形式
+    private static class SessionData {
+        String gSessionId;
+        long savedAtMillis;
+        List<StoredCookie> cookies = new ArrayList<>();
+        /// 日付ごとのテニスiframeのURL（同じセッションでのみ有効）
+        Map<String, String> tennisIframeUrls = new HashMap<>();
+    }
+
+    /// Cookie1件分の保存形式
+    private static class StoredCookie {
+        String name;
+        String value;
+        String domain;
+        String path;
+        Long expiryMillis;
+        boolean secure;
+    }
+
+    public SessionStore(String path, Duration maxAge) {
+        this.path = Paths.get(path);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * 保存済みセッションをCookieストアに復元する。
+     *
+     * @param cookieStore 復元先のCookieストア
+     * @param resolver    日付ごとのテニスiframeのURLの復元先
+     * @return 復元したg_sessionid（保存がない・期限切れ・読み込み失敗の場合はnull）
+     */
+    public String restore(BasicCookieStore cookieStore, TennisUrlResolver resolver) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            SessionData data = gson.fromJson(Files.readString(path, StandardCharsets.UTF_8), SessionData.class);
+            if (data == null || data.gSessionId == null || data.gSessionId.isEmpty()) {
+                return null;
+            }
+            Instant savedAt = Instant.ofEpochMilli(data.savedAtMillis);
+            if (savedAt.plus(maxAge).isBefore(Instant.now())) {
+                LogWriter.write("[INFO] 保存済みセッションが古いため破棄します（保存: " + savedAt + "）");
+                return null;
+            }
+            for (StoredCookie stored : data.cookies) {
+                BasicClientCookie cookie = new BasicClientCookie(stored.name, stored.value);
+                cookie.setDomain(stored.domain);
+                cookie.setPath(stored.path);
+                cookie.setSecure(stored.secure);
+                if (stored.expiryMillis != null) {
+                    cookie.setExpiryDate(Instant.ofEpochMilli(stored.expiryMillis));
+                }
+                cookieStore.addCookie(cookie);
+            }
+            cookieStore.clearExpired(Instant.now());
+            resolver.restore(data.tennisIframeUrls);
+            return data.gSessionId;
+        } catch (Exception e) {
+            LogWriter.write("[WARN] セッションファイルの読み込みに失敗: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /// 現在のCookieとg_sessionid、学習済みのテニスiframeのURLを保存する
+    public void save(BasicCookieStore cookieStore, String gSessionId, TennisUrlResolver resolver) {
+        if (gSessionId == null || gSessionId.isEmpty()) {
+            return;
+        }
+        SessionData data = new SessionData();
+        data.gSessionId = gSessionId;
+        data.savedAtMillis = System.currentTimeMillis();
+        data.tennisIframeUrls = resolver.snapshot();
+        for (Cookie cookie : cookieStore.getCookies()) {
+            StoredCookie stored = new StoredCookie();
+            stored.name = cookie.getName();
+            stored.value = cookie.getValue();
+            stored.domain = cookie.getDomain();
+            stored.path = cookie.getPath();
+            stored.secure = cookie.isSecure();
+            stored.expiryMillis = cookie.getExpiryInstant() != null ? cookie.getExpiryInstant().toEpochMilli() : null;
+            data.cookies.add(stored);
+        }
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, gson.toJson(data), StandardCharsets.UTF_8);
+            // 認証Cookieを含むため所有者のみ読み書き可能にする（POSIX以外では無視）
+            try {
+                Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ignored) {
+            }
+        } catch (Exception e) {
+            LogWriter.write("[WARN] セッションファイルの保存に失敗: " + e.getMessage());
+        }
+    }
+
+    /// 保存済みセッションを削除する
+    public void clear() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (Exception e) {
+            LogWriter.write("[WARN] セッションファイルの削除に失敗: " + e.getMessage());
+        }
+    }
+}
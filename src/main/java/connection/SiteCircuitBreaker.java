@@ -0,0 +1,196 @@
+package connection;
+
+import com.google.gson.Gson;
+import log.LogWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+
+/// サイト全体に対する遮断器（サーキットブレーカー）
+///
+/// メンテナンス画面（503またはメンテナンス専用の画面）を受け取るか、障害とみなす応答が連続すると「開」になり、以後のリクエストは送らずに失敗させる。
+/// 待機時間が過ぎたら安価なリクエスト1件だけで様子を見て（半開）、正常なら「閉」に戻す。
+/// 失敗すれば待機時間を倍にして再び「開」にする。
+/// 状態はファイルに保存し、次回起動したJVMでも障害中は無駄なリクエストを送らない。
+public class SiteCircuitBreaker {
+    /// 状態
+    public enum State {
+        /// 通常（リクエストを送る）
+        CLOSED,
+        /// 遮断中（リクエストを送らない）
+        OPEN,
+        /// 試行中（確認用のリクエスト1件だけを送る）
+        HALF_OPEN
+    }
+
+    private final Path path;
+    private final int failureThreshold;
+    private final Duration initialCooldown;
+    private final Duration maxCooldown;
+    private final Gson gson = new Gson();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private Duration cooldown;
+    private Instant openUntil = Instant.EPOCH;
+    /// 遮断した原因
+    private ResponseClass openReason;
+    /// 遮断した回数・送らずに失敗させたリクエスト数
+    private int openCount = 0;
+    private long rejectedCount = 0;
+
+    /// 保存形式
+    private static class BreakerData {
+        String state;
+        long openUntilMillis;
+        long cooldownMillis;
+        String openReason;
+    }
+
+    public SiteCircuitBreaker(String path, int failureThreshold, Duration initialCooldown, Duration maxCooldown) {
+        this.path = Paths.get(path);
+        this.failureThreshold = failureThreshold;
+        this.initialCooldown = initialCooldown;
+        this.maxCooldown = maxCooldown;
+        this.cooldown = initialCooldown;
+        load();
+    }
+
+    /// 遮断中でなければtrue（半開で確認中のときはfalse）
+    public synchronized boolean allowRequest() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * 待機時間が過ぎていれば半開に移り、確認用のリクエストを送る役目を引き受ける。
+     *
+     * @return 呼び出し元が確認用のリクエストを送るべきならtrue（同時に1件だけ）
+     */
+    public synchronized boolean tryStartProbe() {
+        if (state != State.OPEN || Instant.now().isBefore(openUntil)) {
+            return false;
+        }
+        state = State.HALF_OPEN;
+        return true;
+    }
+
+    /// 確認用のリクエストの結果を反映する（お知らせの文言があっても通常の画面が返れば復旧とみなす）
+    public synchronized void onProbeResult(ResponseClass result) {
+        if (result == ResponseClass.OK || result == ResponseClass.MAINTENANCE_NOTICE) {
+            LogWriter.write("[INFO] サイトの復旧を確認しました。リクエストを再開します");
+            close();
+        } else {
+            cooldown = min(cooldown.multipliedBy(2), maxCooldown);
+            open(result);
+        }
+    }
+
+    /// 通常のリクエストの応答を反映する
+    public synchronized void record(ResponseClass result) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (result == ResponseClass.OK) {
+            consecutiveFailures = 0;
+            return;
+        }
+        if (!result.isSiteFailure()) {
+            return;
+        }
+        consecutiveFailures++;
+        // メンテナンス画面は1回で確定、それ以外（お知らせの文言だけのページを含む）は連続回数で判断する
+        if (result.isConfirmedOutage() || consecutiveFailures >= failureThreshold) {
+            open(result);
+        }
+    }
+
+    /// 送らずに失敗させたリクエストを数える
+    public synchronized void recordRejected() {
+        rejectedCount++;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /// 遮断した原因（遮断中でなければnull）
+    public synchronized ResponseClass getOpenReason() {
+        return state == State.CLOSED ? null : openReason;
+    }
+
+    /// 遮断が解除される予定時刻
+    public synchronized Instant getOpenUntil() {
+        return openUntil;
+    }
+
+    private void open(ResponseClass reason) {
+        state = State.OPEN;
+        openReason = reason;
+        openUntil = Instant.now().plus(cooldown);
+        openCount++;
+        LogWriter.write("[WARN] サイト障害（" + reason + "）を検知したためリクエストを停止します（再確認: " + openUntil + "）");
+        save();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        openReason = null;
+        consecutiveFailures = 0;
+        cooldown = initialCooldown;
+        save();
+    }
+
+    /// 遮断の集計を出力する
+    public synchronized void report() {
+        String msg = "遮断器: " + state + (openReason != null && state != State.CLOSED ? "（" + openReason + "）" : "")
+                + " / 遮断 " + openCount + "回 / 送信省略 " + rejectedCount + "件";
+        System.out.println("\n    ・" + msg);
+        LogWriter.write("[INFO] " + msg);
+    }
+
+    /// 前回のJVMが保存した遮断状態を読み込む（半開のまま終了していた場合は開として扱う）
+    private void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            BreakerData data = gson.fromJson(Files.readString(path, StandardCharsets.UTF_8), BreakerData.class);
+            if (data == null || State.CLOSED.name().equals(data.state)) {
+                return;
+            }
+            state = State.OPEN;
+            openUntil = Instant.ofEpochMilli(data.openUntilMillis);
+            cooldown = min(Duration.ofMillis(Math.max(data.cooldownMillis, initialCooldown.toMillis())), maxCooldown);
+            openReason = data.openReason != null ? ResponseClass.valueOf(data.openReason) : ResponseClass.TRANSIENT;
+        } catch (Exception e) {
+            LogWriter.write("[WARN] 遮断器の状態ファイルの読み込みに失敗: " + e.getMessage());
+        }
+    }
+
+    /// 遮断状態を保存する。セッション切れによる遮断は再ログインで解消するため保存しない
+    private void save() {
+        BreakerData data = new BreakerData();
+        boolean persistOpen = state != State.CLOSED && openReason != ResponseClass.SESSION_EXPIRED;
+        data.state = persistOpen ? state.name() : State.CLOSED.name();
+        data.openUntilMillis = openUntil.toEpochMilli();
+        data.cooldownMillis = cooldown.toMillis();
+        data.openReason = openReason != null ? openReason.name() : null;
+        try {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(path, gson.toJson(data), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            LogWriter.write("[WARN] 遮断器の状態ファイルの保存に失敗: " + e.getMessage());
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
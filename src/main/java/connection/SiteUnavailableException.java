@@ -0,0 +1,12 @@
+package connection;
+
+import java.io.IOException;
+
+/// 遮断器が開いているため、サイトへのリクエストを送らずに失敗させたことを表す例外
+public class SiteUnavailableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public SiteUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,206 @@
+package connection;
+
+import constpk.ConConst;
+import log.LogWriter;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// 日付ごとのテニスiframeのURLを覚えておき、日付ページからの探索を省略するためのクラス
+///
+/// 通常は 日付ページ → 日付iframe → テニスページ → テニスiframe の4回のGETで最終URLを探すが、
+/// 一度たどり着いたURLを日付ごとに保持し、以降は最終ページを直接取得する。
+/// 2つ以上の日付で同じ形（ymdとg_sessionid以外が同一）のURLを観測したらテンプレートとして採用し、
+/// まだ探索していない日付にも使う。セッションが変わったら破棄する。
+public class TennisUrlResolver {
+    /// テンプレート中の日付の置換文字列
+    private static final String YMD_PLACEHOLDER = "{ymd}";
+    /// 枠のリンクの日付パラメータ
+    private static final String YMD_KEY = "ymd=";
+    /// コート表のclass
+    private static final String TABLE_CLASS = "link-table";
+
+    /// 日付ごとのテニスiframeのURL（ルートURLからの相対パス）
+    private final Map<String, String> urlByYmd = new ConcurrentHashMap<>();
+    /// 観測したテンプレート候補
+    private volatile String candidateTemplate;
+    /// 2つ以上の日付で確認できたテンプレート
+    private volatile String confirmedTemplate;
+
+    private final AtomicInteger shortcutHitCount = new AtomicInteger();
+    private final AtomicInteger fallbackCount = new AtomicInteger();
+
+    /**
+     * 日付に対応するテニスiframeのURLを返す。
+     *
+     * @param ymd        日付（yyyyMMdd）
+     * @param gSessionId 現在のg_sessionid
+     * @return 直接取得に使えるURL（未学習ならnull）
+     */
+    public String resolve(String ymd, String gSessionId) {
+        if (ymd == null) {
+            return null;
+        }
+        String url = urlByYmd.get(ymd);
+        if (url == null && confirmedTemplate != null) {
+            url = confirmedTemplate.replace(YMD_PLACEHOLDER, ymd);
+        }
+        return url == null ? null : replaceSessionId(url, gSessionId);
+    }
+
+    /// 4段階の探索でたどり着いたURLを記録する
+    public void learn(String ymd, String tennisIframeUrl) {
+        if (ymd == null || tennisIframeUrl == null || tennisIframeUrl.isEmpty()) {
+            return;
+        }
+        urlByYmd.put(ymd, tennisIframeUrl);
+
+        // URL中に日付がちょうど1回現れる場合のみテンプレート化できる
+        int first = tennisIframeUrl.indexOf(ymd);
+        if (first < 0 || tennisIframeUrl.indexOf(ymd, first + 1) >= 0) {
+            return;
+        }
+        String template = replaceSessionId(tennisIframeUrl.replace(ymd, YMD_PLACEHOLDER), "");
+        synchronized (this) {
+            if (template.equals(confirmedTemplate)) {
+                return;
+            }
+            if (template.equals(candidateTemplate)) {
+                confirmedTemplate = template;
+            } else {
+                candidateTemplate = template;
+            }
+        }
+    }
+
+    /**
+     * 取得したテニスiframeが指定した日付のページかを確かめる。
+     * コート表の枠のリンク（ymd=）があればそのすべてが日付と一致すること、リンクがなければ見出しに日付（M月d日）があることを条件とする。
+     * 学習済みURLがサーバー側のセッション状態に依存して別の日付のページを返すと、その日付の枠を予約してしまうため、
+     * 確かめられないページは直接取得に使わない。
+     *
+     * @param body テニスiframeのHTML
+     * @param ymd  取得したい日付（yyyyMMdd）
+     * @return 指定した日付のページならtrue
+     */
+    public static boolean isPageFor(String body, String ymd) {
+        if (body == null || ymd == null || ymd.length() != 8) {
+            return false;
+        }
+        // 前日・翌日などへのリンクを拾わないよう、コート表の中の枠のリンクだけを見る
+        int tableStart = body.indexOf(TABLE_CLASS);
+        int tableEnd = tableStart < 0 ? -1 : body.toLowerCase(Locale.ROOT).indexOf("</table", tableStart);
+        if (tableEnd < 0) {
+            tableEnd = body.length();
+        }
+        boolean linked = false;
+        int index = tableStart < 0 ? -1 : body.indexOf(YMD_KEY, tableStart);
+        while (index >= 0 && index < tableEnd) {
+            int start = index + YMD_KEY.length();
+            // 他のパラメータ名の末尾（uhyojiymd= 等）や8桁でない値は日付とみなさない
+            boolean isParameter = index == 0 || !Character.isLetterOrDigit(body.charAt(index - 1));
+            if (isParameter && isDigits(body, start, 8) && !isDigits(body, start + 8, 1)) {
+                if (!body.startsWith(ymd, start)) {
+                    return false;
+                }
+                linked = true;
+            }
+            index = body.indexOf(YMD_KEY, start);
+        }
+        if (linked) {
+            return true;
+        }
+        // 空きがなくリンクのないページは、見出しの日付で確かめる
+        int month = Integer.parseInt(ymd.substring(4, 6));
+        int day = Integer.parseInt(ymd.substring(6, 8));
+        return containsDate(body, month + "月" + day + "日") || containsDate(body, ymd.substring(4, 6) + "月" + ymd.substring(6, 8) + "日");
+    }
+
+    /// 数字が続かない位置から始まる日付の文字列を含むか（"11月1日" を "1月1日" と誤認しない）
+    private static boolean containsDate(String body, String date) {
+        int index = body.indexOf(date);
+        while (index >= 0) {
+            if (index == 0 || !Character.isDigit(body.charAt(index - 1))) {
+                return true;
+            }
+            index = body.indexOf(date, index + 1);
+        }
+        return false;
+    }
+
+    private static boolean isDigits(String text, int start, int length) {
+        if (start + length > text.length()) {
+            return false;
+        }
+        for (int i = start; i < start + length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /// 直接取得が成功したことを記録する
+    public void recordShortcutHit() {
+        shortcutHitCount.incrementAndGet();
+    }
+
+    /// 直接取得がエラー画面・別の日付のページだった日付を破棄する（テンプレート由来ならテンプレートも破棄）
+    public void invalidate(String ymd) {
+        fallbackCount.incrementAndGet();
+        if (urlByYmd.remove(ymd) == null) {
+            synchronized (this) {
+                confirmedTemplate = null;
+                candidateTemplate = null;
+            }
+        }
+    }
+
+    /// セッションが変わったときにすべて破棄する
+    public void clear() {
+        urlByYmd.clear();
+        synchronized (this) {
+            confirmedTemplate = null;
+            candidateTemplate = null;
+        }
+    }
+
+    /// 保存用に日付ごとのURLを取り出す
+    public Map<String, String> snapshot() {
+        return new HashMap<>(urlByYmd);
+    }
+
+    /// 保存済みの日付ごとのURLを読み込む（テンプレートも再学習する）
+    public void restore(Map<String, String> urls) {
+        if (urls == null) {
+            return;
+        }
+        urls.forEach(this::learn);
+    }
+
+    /// 今回の処理の直接取得の状況をログに出力する
+    public void report() {
+        LogWriter.write("[INFO] テニスiframe直接取得: 成功" + shortcutHitCount.get() + "件 / 探索し直し"
+                + fallbackCount.get() + "件 / 学習済み日付" + urlByYmd.size() + "件 / テンプレート"
+                + (confirmedTemplate != null ? "あり" : "なし"));
+    }
+
+    /// URL中のg_sessionidの値を差し替える
+    private static String replaceSessionId(String url, String gSessionId) {
+        String key = ConConst.G_SESSION_ID_KEY + "=";
+        int start = url.indexOf(key);
+        if (start < 0) {
+            return url;
+        }
+        int valueStart = start + key.length();
+        int end = url.indexOf('&', valueStart);
+        if (end < 0) {
+            end = url.length();
+        }
+        return url.substring(0, valueStart) + (gSessionId == null ? "" : gSessionId) + url.substring(end);
+    }
+}
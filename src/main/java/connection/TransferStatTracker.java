@@ -0,0 +1,69 @@
+package connection;
+
+import log.LogWriter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 受信バイト数（通信路上）と復号後のサイズを集計するユーティリティ
+ */
+class TransferStatTracker {
+    private static final AtomicLong responseCount = new AtomicLong();
+    private static final AtomicLong compressedCount = new AtomicLong();
+    private static final AtomicLong wireBytes = new AtomicLong();
+    private static final AtomicLong inflatedBytes = new AtomicLong();
+    private static final AtomicLong decodedChars = new AtomicLong();
+    private static final AtomicLong outputChars = new AtomicLong();
+    /// 目印の走査のみで済み、復号しなかったレスポンス数
+    private static final AtomicLong undecodedCount = new AtomicLong();
+
+    /// 1レスポンス分を記録し、1行で出力する
+    public static void record(long wire, long inflated, long decoded, long output, boolean compressed) {
+        responseCount.incrementAndGet();
+        if (compressed) {
+            compressedCount.incrementAndGet();
+        }
+        wireBytes.addAndGet(wire);
+        inflatedBytes.addAndGet(inflated);
+        decodedChars.addAndGet(decoded);
+        outputChars.addAndGet(output);
+        System.out.print(" / 受信" + wire + "B→展開" + inflated + "B→" + output + "文字");
+    }
+
+    /// 復号せずに目印を走査した1レスポンス分を記録し、1行で出力する（復号した場合は recordDeferredDecode で加算する）
+    public static void recordScanned(long wire, long inflated, boolean compressed) {
+        responseCount.incrementAndGet();
+        if (compressed) {
+            compressedCount.incrementAndGet();
+        }
+        wireBytes.addAndGet(wire);
+        inflatedBytes.addAndGet(inflated);
+        undecodedCount.incrementAndGet();
+        System.out.print(" / 受信" + wire + "B→展開" + inflated + "B");
+    }
+
+    /// 走査済みのレスポンスを後から復号した分を記録する
+    public static void recordDeferredDecode(long decoded, long output) {
+        undecodedCount.updateAndGet(count -> Math.max(0, count - 1));
+        decodedChars.addAndGet(decoded);
+        outputChars.addAndGet(output);
+    }
+
+    /// 今回の処理の累計をログに出力する
+    public static void report() {
+        LogWriter.write(String.format(
+                "[INFO] 転送量: レスポンス%d件（圧縮%d件・復号省略%d件） 受信%,dB / 展開後%,dB / 復号%,d文字 / 空行除去後%,d文字",
+                responseCount.get(), compressedCount.get(), undecodedCount.get(), wireBytes.get(), inflatedBytes.get(),
+                decodedChars.get(), outputChars.get()));
+    }
+
+    public static void clear() {
+        responseCount.set(0);
+        compressedCount.set(0);
+        wireBytes.set(0);
+        inflatedBytes.set(0);
+        decodedChars.set(0);
+        outputChars.set(0);
+        undecodedCount.set(0);
+    }
+}
@@ -3,8 +3,134 @@ package constpk;
 public class CommonConst {
     /// 希望日のコートを取得する
     public static final String EXPECTED_DATE_PATH = "expectedDate.csv";
+    /// 除外日ファイル
+    public static final String JOGAIBI_PATH = "jogaibi.csv";
+    /// 他の人が予約したコートのファイル
+    public static final String RESERVED_COURT_PATH = "reservedCourt.csv";
+    /// 設定ファイルの更新を検知してから読み込み直すまで待つ時間（ミリ秒。保存中の書きかけを読まないため）
+    public static final long CONFIG_RELOAD_DEBOUNCE_MILLIS = 500;
     /// ログイン情報JSON
     public static final String CREDENTIAL_HEAD = "chigasakitennis";
     /// ログイン情報ファイル名
     public static final String CREDENTIAL_FILE_NAME = "credentials.json";
+    /// 日付ごとの取得処理を非同期で並行実行する（falseなら従来どおり逐次実行）
+    public static final boolean ASYNC_SCAN_ENABLED = true;
+    /// 非同期モードで同時に送信中にできるリクエスト数の上限
+    public static final int ASYNC_MAX_IN_FLIGHT = 6;
+    /// 流量制御：1秒あたりの最大リクエスト数
+    public static final double RATE_LIMIT_PER_SECOND = 4.0;
+    /// 流量制御：瞬間的に連続送信できるリクエスト数
+    public static final double RATE_LIMIT_BURST = 4.0;
+    /// 流量制御：同時実行数の初期値（応答が順調ならASYNC_MAX_IN_FLIGHTまで増やす）
+    public static final int RATE_LIMIT_INITIAL_CONCURRENCY = 2;
+    /// 流量制御：基準遅延の何倍を超えたら混雑とみなして同時実行数を減らすか
+    public static final double RATE_LIMIT_LATENCY_TOLERANCE = 3.0;
+    /// 流量制御：基準遅延（リクエストの種類ごとの最小応答時間）を求める直近の応答数
+    public static final int RATE_LIMIT_BASELINE_WINDOW = 32;
+    /// タイムアウト：接続確立（秒）
+    public static final int CONNECT_TIMEOUT_SECONDS = 5;
+    /// タイムアウト：コネクションプールから接続を借りるまでの待ち時間（秒）
+    public static final int CONNECTION_REQUEST_TIMEOUT_SECONDS = 10;
+    /// タイムアウト：受信中のデータが途切れたとみなす時間（秒）
+    public static final int SOCKET_TIMEOUT_SECONDS = 30;
+    /// タイムアウト：画面遷移（分類画面・カレンダーなど）の応答待ち（秒）
+    public static final int NAVIGATION_RESPONSE_TIMEOUT_SECONDS = 15;
+    /// タイムアウト：日付ごとのページ取得の応答待ち（秒）
+    public static final int SCAN_RESPONSE_TIMEOUT_SECONDS = 10;
+    /// タイムアウト：ログイン・予約などのPOSTの応答待ち（秒）。予約の成否を取りこぼさないよう長めにする
+    public static final int POST_RESPONSE_TIMEOUT_SECONDS = 30;
+    /// 予約送信の応答がない場合に、予約済み一覧で成立を確認する回数（すべて未成立なら再送する）
+    public static final int RESERVATION_CONFIRM_ATTEMPTS = 2;
+    /// 予約送信の応答がない場合に、予約済み一覧を確認するまで待つ時間（ミリ秒。応答のない送信が遅れて成立する分を待つ）
+    public static final long RESERVATION_CONFIRM_DELAY_MILLIS = 3000;
+    /// 日付ごとの探索全体の締め切り（秒）。過ぎたら未完了の取得を打ち切る
+    public static final int SCAN_DEADLINE_SECONDS = 240;
+    /// ヘッジ：この応答時間パーセンタイルを超えても応答がなければ重複リクエストを送る
+    public static final double HEDGE_PERCENTILE = 95.0;
+    /// ヘッジ：パーセンタイルを算出するのに必要な応答時間の記録数
+    public static final int HEDGE_MIN_SAMPLES = 20;
+    /// 空きコートが解放される時刻（HH:mm）。この直前に起動した場合は接続を温めてから解放時刻を待つ
+    public static final java.util.List<String> RELEASE_TIMES = java.util.List.of("09:00");
+    /// 解放時刻の何秒前以内なら接続の準備（ウォームアップ）を行うか
+    public static final int WARMUP_LEAD_SECONDS = 60;
+    /// ウォームアップで事前に開いておく接続数
+    public static final int WARMUP_CONNECTIONS = 4;
+    /// ウォームアップ中に接続を維持するための軽いリクエストの間隔（秒）
+    public static final int WARMUP_KEEPALIVE_SECONDS = 5;
+    /// 遮断器：障害とみなす応答がこの回数連続したらリクエストを停止する
+    public static final int BREAKER_FAILURE_THRESHOLD = 5;
+    /// 遮断器：停止してから確認用のリクエストを送るまでの時間（秒）。確認に失敗するたびに倍にする
+    public static final int BREAKER_COOLDOWN_SECONDS = 60;
+    /// 遮断器：停止時間の上限（秒）
+    public static final int BREAKER_MAX_COOLDOWN_SECONDS = 900;
+    /// 遮断器の状態の保存先（次回起動時も障害中ならリクエストを送らない）
+    public static final String BREAKER_STATE_PATH = "log/circuit_breaker.json";
+    /// サイトの時間帯（解放時刻の解釈に使う）
+    public static final java.time.ZoneId SITE_ZONE = java.time.ZoneId.of("Asia/Tokyo");
+    /// 狙い撃ちモード：サーバー時計のずれを推定するための観測リクエスト数
+    public static final int SNIPER_CALIBRATION_PROBES = 8;
+    /// 狙い撃ちモード：解放時刻から送信をずらす時間（ミリ秒。正なら遅らせる）
+    public static final int SNIPER_FIRE_OFFSET_MILLIS = 0;
+    /// 狙い撃ちモード：接続の維持を止めて送信待ちに入る、解放時刻の何ミリ秒前か
+    public static final int SNIPER_WARMUP_MARGIN_MILLIS = 300;
+    /// 常駐モード：探索サイクルの間隔（秒）
+    public static final int DAEMON_INTERVAL_SECONDS = 180;
+    /// 常駐モード：探索を休む時間帯の開始時（この時から）
+    public static final int DAEMON_QUIET_START_HOUR = 0;
+    /// 常駐モード：探索を休む時間帯の終了時（この時まで。開始と同じなら休まない）
+    public static final int DAEMON_QUIET_END_HOUR = 6;
+    /// 常駐モード：このファイルが置かれたら間隔・休止時間帯に関係なくすぐに探索する（探索時に削除）
+    public static final String DAEMON_TRIGGER_PATH = "scan.trigger";
+    /// 常駐モード：トリガーファイルを確認する間隔（秒）
+    public static final int DAEMON_TICK_SECONDS = 2;
+    /// 変化検知キャッシュ（処理済みページのハッシュ）の保存先
+    public static final String RESPONSE_CACHE_PATH = "log/response_cache.tsv";
+    /// 変化検知キャッシュ：この日数のあいだ使われなかった処理済みハッシュは保存しない
+    public static final int RESPONSE_CACHE_MAX_AGE_DAYS = 14;
+    /// 変化検知キャッシュ：保存する処理済みハッシュの上限（超えた分は使われていない順に捨てる）
+    public static final int RESPONSE_CACHE_MAX_ENTRIES = 2000;
+    /// 月ページの日付セルで変化を判定し、変化のあった日付だけを取得する（falseなら毎回全日付を取得）
+    public static final boolean PROBE_ENABLED = true;
+    /// 月ページによる判定：セルに表れない変化を取りこぼさないよう、全日付を取得する間隔（分）
+    public static final int PROBE_FULL_SCAN_INTERVAL_MINUTES = 30;
+    /// 月ページによる判定：確認済みの日付セルの保存先
+    public static final String SCAN_PROBE_PATH = "log/scan_probe.tsv";
+    /// 月カレンダーのセルが満（×の記号）・休（リンクなし）を示す日付を取得対象から外すか（記号のないセルは常に取得する）
+    public static final boolean DAY_AVAILABILITY_FILTER_ENABLED = true;
+    /// 希望日（expectedDate.csv）のある月・日付だけを探索するか（falseなら全日付を探索する）
+    public static final boolean SCAN_PLANNER_ENABLED = true;
+    /// コート表・予約一覧の解析にDOMを作らない読み取り（HtmlTableTokenizer）を使うか（falseなら常にJsoupで解析する）
+    public static final boolean STREAMING_PARSER_ENABLED = true;
+    /// 1サイクルで取得する希望日の上限（超える場合は空きの出やすさで重み付けして選ぶ。0なら上限なし）
+    public static final int POLL_DATE_BUDGET = 12;
+    /// 空き出現の記録の保存先
+    public static final String CANCELLATION_STATS_PATH = "log/cancellation_stats.tsv";
+    /// 支払期限の前後1日の日付の取得の重みの倍率
+    public static final double CANCELLATION_DEADLINE_BOOST = 4.0;
+    /// 空きが現れたことのない区分の日付の取得の重みの下限
+    public static final double CANCELLATION_MIN_WEIGHT = 0.05;
+    /// 集中監視：監視する日付の上限
+    public static final int FOCUS_MAX_TARGETS = 3;
+    /// 集中監視：テニスiframeを取得する最短の間隔（秒。±20%の揺らぎを加える。対象が多ければ FOCUS_BUDGET_SHARE に収まるまで延ばす）
+    public static final int FOCUS_INTERVAL_SECONDS = 5;
+    /// 集中監視：1時間あたりのリクエスト予算のうち集中監視に使う割合（対象数に応じて、この割合に収まるまで取得の間隔を延ばす）
+    public static final double FOCUS_BUDGET_SHARE = 0.5;
+    /// 集中監視：既定の監視時間（分）
+    public static final int FOCUS_DURATION_MINUTES = 60;
+    /// 集中監視：ページが取得できなくなった場合に再ログインする回数の上限
+    public static final int FOCUS_MAX_RECOVERIES = 3;
+    /// リクエスト予算：1分あたりのリクエスト数
+    public static final int REQUEST_BUDGET_PER_MINUTE = 30;
+    /// リクエスト予算：1時間あたりのリクエスト数
+    public static final int REQUEST_BUDGET_PER_HOUR = 600;
+    /// リクエスト予算：使わなかった1分あたりの予算を持ち越せる上限（分）
+    public static final int REQUEST_BUDGET_CARRY_MINUTES = 5;
+    /// リクエスト予算：ログイン〜カレンダーまでの画面遷移に見込むリクエスト数
+    public static final int REQUEST_BUDGET_NAVIGATION_COST = 8;
+    /// リクエスト予算：残高の保存先
+    public static final String REQUEST_BUDGET_PATH = "log/request_budget.json";
+    /// ログインセッション（Cookie・g_sessionid）の保存先（認証情報を含むためリポジトリ管理外の log 配下に置く）
+    public static final String SESSION_PATH = "log/session.json";
+    /// 保存済みセッションを再利用する最大経過時間（分）
+    public static final int SESSION_MAX_AGE_MINUTES = 60;
 }
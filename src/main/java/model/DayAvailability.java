@@ -0,0 +1,47 @@
+package model;
+
+/// 月カレンダーの日付セルが示す空き状況を表すEnum（宣言順がそのまま日付の取得順）
+public enum DayAvailability {
+    AVAILABLE("空き"),
+    FEW_LEFT("残りわずか"),
+    UNKNOWN("不明"),
+    FULL("満"),
+    CLOSED("休");
+
+    /// ログ表示用ラベル
+    private final String label;
+
+    /// コンストラクタ
+    DayAvailability(String label) {
+        this.label = label;
+    }
+
+    /// ラベル取得
+    public String getLabel() {
+        return label;
+    }
+
+    /// ○の枠が出る可能性があるか（判定できないセルは取りこぼさないよう取得対象に含める）
+    public boolean canHaveSlot() {
+        return this != FULL && this != CLOSED;
+    }
+
+    /// 空き状況を表す記号（○・△・×）から空き状況を判定する（記号そのもの以外は判定せずUNKNOWN）
+    ///
+    /// 土日・祝日を示すclass（holiday）や「休日」のtitleなど、記号以外の手掛かりでは判定しない。
+    /// 満と誤判定した日付は取得されなくなるため、確実に判定できるものだけを満とする。
+    public static DayAvailability fromGlyph(String glyph) {
+        switch (glyph) {
+            case "×":
+            case "✕":
+                return FULL;
+            case "△":
+                return FEW_LEFT;
+            case "○":
+            case "◯":
+                return AVAILABLE;
+            default:
+                return UNKNOWN;
+        }
+    }
+}
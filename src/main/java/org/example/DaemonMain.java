@@ -0,0 +1,128 @@
+package org.example;
+
+import connection.ConnectionService;
+import constpk.CommonConst;
+import log.LogWriter;
+import util.DateUtil;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/// 常駐モードのエントリーポイント
+///
+/// JVMを起動したまま、一定間隔で探索サイクル（ConnectionService.reservationParent）を実行する。
+/// HTTPクライアント・ログインセッション・ログイン情報はサイクルをまたいで使い回すため、
+/// 起動とログインのコストは起動時（とセッション切れ時）にだけかかる。
+/// 休止時間帯は探索しない。トリガーファイル（DAEMON_TRIGGER_PATH）を置くとすぐに探索する。
+public class DaemonMain {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /// サイクル間で使い回すサービス
+    private final ConnectionService service = new ConnectionService();
+    private final Path triggerPath = Paths.get(CommonConst.DAEMON_TRIGGER_PATH);
+    /// 次に定期探索を行う時刻（System.nanoTime基準）
+    private long nextRunNanos = System.nanoTime();
+    /// 最後にLINE通知の判定を行った時（同じ時間帯に何度も通知しない）
+    private int lastNotifiedHour = -1;
+    /// 最後にウォームアップ付きで探索した解放時刻
+    private ZonedDateTime lastReleaseRun;
+
+    public static void main(String[] args) throws InterruptedException {
+        LogWriter.write("");
+        LogWriter.write("▼▼▼ 常駐モード開始: " + LocalDateTime.now().format(FORMATTER) + " ▼▼▼");
+
+        DaemonMain daemon = new DaemonMain();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // 実行中のサイクルが終わるのを待ってから閉じる
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(CommonConst.SCAN_DEADLINE_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            daemon.service.close();
+            LogWriter.write("▲▲▲ 常駐モード終了: " + LocalDateTime.now().format(FORMATTER) + " ▲▲▲");
+            stopped.countDown();
+        }));
+
+        // 1つのスレッドで順に実行するため、サイクルが重なることはない
+        scheduler.scheduleWithFixedDelay(daemon::tick, 0, CommonConst.DAEMON_TICK_SECONDS, TimeUnit.SECONDS);
+        stopped.await();
+    }
+
+    /// トリガーファイルと次回実行時刻を確認し、必要なら探索サイクルを実行する
+    private void tick() {
+        try {
+            boolean triggered = consumeTrigger();
+            boolean due = System.nanoTime() - nextRunNanos >= 0;
+            // 解放時刻の直前は間隔に関係なく探索を始める（接続の準備と解放時刻までの待機はサービス側で行う）
+            ZonedDateTime release = upcomingRelease();
+            boolean releaseWindow = release != null && !release.equals(lastReleaseRun);
+            if (!triggered && !releaseWindow && (!due || isQuietHour(LocalDateTime.now().getHour()))) {
+                return;
+            }
+            if (releaseWindow) {
+                lastReleaseRun = release;
+            }
+            runCycle(triggered);
+            nextRunNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(CommonConst.DAEMON_INTERVAL_SECONDS);
+        } catch (Throwable t) {
+            // 例外でスケジュールが止まらないよう、ここで握りつぶす
+            LogWriter.write("[ERROR] 常駐モードのサイクル中に例外が発生しました: " + t);
+            for (StackTraceElement element : t.getStackTrace()) {
+                LogWriter.write("    at " + element.toString());
+            }
+        }
+    }
+
+    /// 探索サイクルを1回実行する
+    private void runCycle(boolean triggered) {
+        String now = LocalDateTime.now().format(FORMATTER);
+        LogWriter.write("▼▼▼ サイクル開始: " + now + (triggered ? "（トリガー）" : "") + " ▼▼▼");
+        List<Exception> errors = service.reservationParent();
+        int hour = LocalDateTime.now().getHour();
+        Main.notifyResult(errors, hour != lastNotifiedHour);
+        lastNotifiedHour = hour;
+        LogWriter.write("▲▲▲ サイクル完了: " + now + " ▲▲▲");
+    }
+
+    /// WARMUP_LEAD_SECONDS以内に迫っている解放時刻（サイトの時間帯。なければnull）
+    private static ZonedDateTime upcomingRelease() {
+        return DateUtil.upcomingRelease(CommonConst.RELEASE_TIMES, CommonConst.SITE_ZONE, CommonConst.WARMUP_LEAD_SECONDS);
+    }
+
+    /// トリガーファイルがあれば削除してtrueを返す
+    private boolean consumeTrigger() {
+        try {
+            return Files.deleteIfExists(triggerPath);
+        } catch (Exception e) {
+            LogWriter.write("[WARN] トリガーファイルの削除に失敗: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /// 休止時間帯か（開始時 <= 現在 < 終了時。日付をまたぐ指定にも対応）
+    static boolean isQuietHour(int hour) {
+        int start = CommonConst.DAEMON_QUIET_START_HOUR;
+        int end = CommonConst.DAEMON_QUIET_END_HOUR;
+        if (start == end) {
+            return false;
+        }
+        return start < end ? (hour >= start && hour < end) : (hour >= start || hour < end);
+    }
+}
@@ -2,6 +2,7 @@ package org.example;
 
 import api.LineNotify;
 import connection.ConnectionService;
+import constpk.CommonConst;
 import log.LogWriter;
 import log.LoggerUtil;
 import log.TeeOutputStream;
@@ -10,22 +11,104 @@ import java.util.List;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.Map;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import model.Credential;
+import util.ParserUtil;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 
 //TIP コードを<b>実行</b>するには、<shortcut actionId="Run"/> を押すか
 // ガターの <icon src="AllIcons.Actions.Execute"/> アイコンをクリックします。
 public class Main {
     public static void main(String[] args) {
+        Instant mainAt = Instant.now();
+        if (args.length > 0 && "--cds-training".equals(args[0])) {
+            // AppCDSアーカイブ作成用の学習実行（通信・ファイル出力なしで主要なクラスを読み込むだけ）
+            trainForCds();
+            return;
+        }
         // 現在時刻を取得してフォーマットする
         String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         // ログファイルに実行開始時刻を出力
         LogWriter.write("");
         LogWriter.write("▼▼▼ 実行開始: " + now + " ▼▼▼");
 
-        //予約Service親処理実行
+        //予約Service親処理実行（--snipe [HH:mm] なら解放時刻の狙い撃ち、--focus [yyyyMMdd,...] [分] なら集中監視）
         ConnectionService service = new ConnectionService();
-        List<Exception> errors = service.reservationParent();
+        List<Exception> errors;
+        if (args.length > 0 && "--startup-timing".equals(args[0])) {
+            // 起動方法ごとの、起動から最初のHTTPリクエストまでの時間を計測する
+            service.measureStartup(ProcessHandle.current().info().startInstant().orElse(null), mainAt, Instant.now(), detectVariant());
+            service.close();
+            return;
+        } else if (args.length > 0 && "--snipe".equals(args[0])) {
+            errors = service.sniperParent(resolveReleaseAt(args.length > 1 ? args[1] : null));
+        } else if (args.length > 0 && "--focus".equals(args[0])) {
+            // 日付の指定がなければ直前OKの希望日を監視する（"-" で日付を省略して監視時間だけ指定できる）
+            List<String> focusYmds = args.length > 1 && !"-".equals(args[1]) ? List.of(args[1].split(",")) : List.of();
+            int minutes = args.length > 2 ? Integer.parseInt(args[2]) : CommonConst.FOCUS_DURATION_MINUTES;
+            errors = service.focusParent(focusYmds, Duration.ofMinutes(minutes));
+        } else {
+            errors = service.reservationParent();
+        }
+        service.close();
+        notifyResult(errors, true);
+        LogWriter.write("▲▲▲ 実行完了: " + now + " ▲▲▲");
+
+
+    }
+
+    /// 起動方法を判定する（ネイティブイメージ / AppCDSアーカイブ使用のJVM / 通常のJVM）
+    static String detectVariant() {
+        if (System.getProperty("org.graalvm.nativeimage.imagecode") != null) {
+            return "native";
+        }
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-XX:SharedArchiveFile")) {
+                return "appcds";
+            }
+        }
+        return "jvm";
+    }
+
+    /// AppCDSの学習実行：起動直後に読み込まれるクラス（Gson・Jsoup・HttpClient・Lombok生成クラス）を一通り使う（作業ディレクトリに状態ファイルが作られる）
+    static void trainForCds() {
+        Type type = new TypeToken<Map<String, List<Credential>>>() {}.getType();
+        Map<String, List<Credential>> credentials = new Gson().fromJson("{\"" + CommonConst.CREDENTIAL_HEAD + "\":[{\"name\":\"n\",\"id\":\"i\",\"pass\":\"p\"}]}", type);
+        credentials.get(CommonConst.CREDENTIAL_HEAD).get(0).getId();
+        ParserUtil.parseTennisCourtsFromHtml("<table class=\"link-table\"><tr><th>コート</th><th>9:00</th></tr>"
+                + "<tr><td>コート</td><td>○</td></tr></table>", "20250101");
+        // HTTPクライアント・キャッシュ・遮断器等の初期化（通信はしない）
+        new ConnectionService().close();
+    }
+
+    /// 狙い撃ちする解放時刻を決める（指定がなければRELEASE_TIMESのうち次に来るもの。サイトの時間帯で解釈）
+    static LocalDateTime resolveReleaseAt(String time) {
+        LocalDateTime now = LocalDateTime.now(CommonConst.SITE_ZONE);
+        List<String> candidates = time != null ? List.of(time) : CommonConst.RELEASE_TIMES;
+        LocalDateTime next = null;
+        for (String candidate : candidates) {
+            LocalDateTime releaseAt = LocalDate.now(CommonConst.SITE_ZONE).atTime(LocalTime.parse(candidate));
+            if (releaseAt.isBefore(now.minusMinutes(1))) {
+                releaseAt = releaseAt.plusDays(1);
+            }
+            if (next == null || releaseAt.isBefore(next)) {
+                next = releaseAt;
+            }
+        }
+        return next;
+    }
+
+    /// 処理結果をログに出力し、決まった時間帯のみLINEに通知する（常駐モードと共通。sendLineがfalseならログのみ）
+    static void notifyResult(List<Exception> errors, boolean sendLine) {
         // 時間取得
         int hour = LocalDateTime.now().getHour();
         if (!errors.isEmpty()) {
@@ -49,16 +132,13 @@ public class Main {
                 }
             }
             // LINE通知送信
-            if (hour == 10 || hour == 12 || hour == 15 || hour == 18)
+            if (sendLine && (hour == 10 || hour == 12 || hour == 15 || hour == 18))
             LineNotify.sendNotification(sb.toString());
         }else{
             // 正常動作確認用LINE通知
-            if (hour == 12) {
+            if (sendLine && hour == 12) {
                 LineNotify.sendNotification("正常動作👌");
             }
         }
-        LogWriter.write("▲▲▲ 実行完了: " + now + " ▲▲▲");
-
-
     }
 }
\ No newline at end of file
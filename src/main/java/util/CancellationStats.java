@@ -0,0 +1,196 @@
+package util;
+
+import log.LogWriter;
+import model.CourtAreaType;
+import model.ExpectedYmdTimeRange;
+import model.TennisCourt;
+import model.TimeSlot;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// 希望の枠に○（空き）が現れた記録から、日付ごとの取得の重みを求めるクラス
+///
+/// (コートエリア, 曜日, 時間帯, 利用日までの日数帯) ごとに「確認した回数」と「×から○に変わった回数」を数え、
+/// ○が現れやすい区分の日付ほど頻繁に取得する。支払期限（PaymentDeadlineUtil）の前後は
+/// 未払いの予約が解放されやすいため、記録に関わらず重みを上げる。
+public class CancellationStats {
+    private static final DateTimeFormatter YMD_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    /// 区分ごとの記録を表す行の種別
+    private static final String BUCKET_KEY = "B";
+    /// 希望ごとの前回の空き状況を表す行の種別
+    private static final String STATE_KEY = "S";
+
+    private final String path;
+    /// 区分ごとの [確認した回数, ○が現れた回数]
+    private final Map<String, int[]> counts = new HashMap<>();
+    /// 希望（日付|エリア|時間帯）ごとの前回の空き状況
+    private final Map<String, Boolean> lastAvailable = new HashMap<>();
+
+    public CancellationStats(String path) {
+        this.path = path;
+        load();
+    }
+
+    /**
+     * 日付ページの解析結果から、その日付の希望ごとに○が現れたかを記録する。
+     *
+     * @param ymd 日付（yyyyMMdd）
+     * @param courtList 日付ページから解析したコートのリスト（空き状況を含む）
+     * @param expectedList 希望日のリスト
+     * @param today 当日日付
+     */
+    public synchronized void record(String ymd, List<TennisCourt> courtList, List<ExpectedYmdTimeRange> expectedList, LocalDate today) {
+        for (ExpectedYmdTimeRange expected : expectedList) {
+            if (!ymd.equals(expected.getYmd())) continue;
+            CourtAreaType area = FilterUtill.resolveExpectedArea(expected.getCourtAreaName());
+            boolean available = false;
+            for (TennisCourt court : courtList) {
+                if (CourtAreaType.fromCourtName(court.getCourtName()) != area) continue;
+                for (TimeSlot slot : court.getTimeSlotList()) {
+                    if (slot.isAvailable() && slot.getTimeRange() == expected.getTimeRange()) {
+                        available = true;
+                    }
+                }
+            }
+            Boolean previous = lastAvailable.put(stateKeyOf(ymd, area, expected), available);
+            if (previous == null) {
+                // 初めて確認した希望は、以降の変化を判定する基準にするだけで数えない（最初から○の枠は新たに現れた枠ではない）
+                continue;
+            }
+            int[] bucket = counts.computeIfAbsent(bucketOf(expected, today), k -> new int[2]);
+            bucket[0]++;
+            // 前回から○のままの枠は数えない（新たに現れた枠だけを数える）
+            if (available && !previous) {
+                bucket[1]++;
+            }
+        }
+    }
+
+    /// 前回から内容に変化のなかった日付ページを、○が新たに現れなかった確認として記録する
+    public synchronized void recordUnchanged(String ymd, List<ExpectedYmdTimeRange> expectedList, LocalDate today) {
+        for (ExpectedYmdTimeRange expected : expectedList) {
+            if (!ymd.equals(expected.getYmd())) continue;
+            // 基準となる前回の空き状況がない希望は数えない
+            if (!lastAvailable.containsKey(stateKeyOf(ymd, FilterUtill.resolveExpectedArea(expected.getCourtAreaName()), expected))) continue;
+            counts.computeIfAbsent(bucketOf(expected, today), k -> new int[2])[0]++;
+        }
+    }
+
+    /// 希望ごとの前回の空き状況のキー（日付|エリア|時間帯）
+    private static String stateKeyOf(String ymd, CourtAreaType area, ExpectedYmdTimeRange expected) {
+        return ymd + "|" + area + "|" + expected.getTimeRange();
+    }
+
+    /**
+     * 日付の取得の重みを求める（その日付の希望のうち最大のもの）。
+     * 記録の少ない区分は事前の見込み（1/2）に寄せ、○が現れたことのない区分も最低限の重みで取得する。
+     *
+     * @param ymd 日付（yyyyMMdd）
+     * @param expectedList 希望日のリスト
+     * @param today 当日日付
+     * @param deadlineBoost 支払期限の前後1日の重みの倍率
+     * @param minWeight 重みの下限
+     * @return 取得の重み
+     */
+    public synchronized double weightOf(String ymd, List<ExpectedYmdTimeRange> expectedList, LocalDate today,
+                                        double deadlineBoost, double minWeight) {
+        double weight = minWeight;
+        for (ExpectedYmdTimeRange expected : expectedList) {
+            if (!ymd.equals(expected.getYmd())) continue;
+            int[] bucket = counts.getOrDefault(bucketOf(expected, today), new int[2]);
+            double rate = (bucket[1] + 1.0) / (bucket[0] + 2.0);
+            weight = Math.max(weight, rate);
+        }
+        LocalDate date = LocalDate.parse(ymd, YMD_FORMAT);
+        LocalDate paymentDeadline = PaymentDeadlineUtil.calculatePaymentDeadline(today, date);
+        if (paymentDeadline != null && Math.abs(ChronoUnit.DAYS.between(today, paymentDeadline)) <= 1) {
+            weight *= deadlineBoost;
+        }
+        return weight;
+    }
+
+    /// 区分のキー（エリア/曜日/時間帯/利用日までの日数帯）
+    private static String bucketOf(ExpectedYmdTimeRange expected, LocalDate today) {
+        LocalDate date = LocalDate.parse(expected.getYmd(), YMD_FORMAT);
+        return FilterUtill.resolveExpectedArea(expected.getCourtAreaName()) + "/" + date.getDayOfWeek()
+                + "/" + expected.getTimeRange() + "/" + daysBand(ChronoUnit.DAYS.between(today, date));
+    }
+
+    /// 利用日までの日数を、記録が分散しすぎないよう日数帯にまとめる
+    private static String daysBand(long daysBefore) {
+        if (daysBefore <= 2) return "0-2";
+        if (daysBefore <= 5) return "3-5";
+        if (daysBefore <= 8) return "6-8";
+        if (daysBefore <= 14) return "9-14";
+        if (daysBefore <= 30) return "15-30";
+        return "31-";
+    }
+
+    /// 区分ごとの記録をログに出力する（○が現れた回数の多い順に上位のみ）
+    public synchronized void report() {
+        StringBuilder sb = new StringBuilder();
+        counts.entrySet().stream()
+                .filter(e -> e.getValue()[1] > 0)
+                .sorted((a, b) -> Integer.compare(b.getValue()[1], a.getValue()[1]))
+                .limit(5)
+                .forEach(e -> sb.append(e.getKey()).append("=").append(e.getValue()[1]).append("/").append(e.getValue()[0]).append(" "));
+        LogWriter.write("[INFO] 空き出現の記録: 区分 " + counts.size() + "件" + (sb.length() == 0 ? "" : " / 上位 " + sb));
+    }
+
+    /// 前回までの記録をファイルから読み込む（過去日の空き状況は読み捨てる）
+    private void load() {
+        File file = new File(path);
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length == 4 && BUCKET_KEY.equals(parts[0])) {
+                    counts.put(parts[1], new int[]{Integer.parseInt(parts[2]), Integer.parseInt(parts[3])});
+                } else if (parts.length == 3 && STATE_KEY.equals(parts[0])) {
+                    lastAvailable.put(parts[1], Boolean.parseBoolean(parts[2]));
+                }
+            }
+        } catch (Exception e) {
+            LogWriter.write("[WARN] 空き出現の記録の読み込みに失敗: " + e.getMessage());
+        }
+        prunePastStates();
+    }
+
+    /// 過去日の空き状況を捨てる（二度と確認しないため、残しておくとファイルが増え続ける）
+    private void prunePastStates() {
+        String today = LocalDate.now().format(YMD_FORMAT);
+        lastAvailable.keySet().removeIf(key -> key.length() < 8 || key.substring(0, 8).compareTo(today) < 0);
+    }
+
+    /// 記録をファイルに保存する（過去日の空き状況は捨てる）
+    public synchronized void save() {
+        prunePastStates();
+        File file = new File(path);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (Map.Entry<String, int[]> e : counts.entrySet()) {
+                writer.println(BUCKET_KEY + "\t" + e.getKey() + "\t" + e.getValue()[0] + "\t" + e.getValue()[1]);
+            }
+            for (Map.Entry<String, Boolean> e : lastAvailable.entrySet()) {
+                writer.println(STATE_KEY + "\t" + e.getKey() + "\t" + e.getValue());
+            }
+        } catch (IOException e) {
+            LogWriter.write("[ERROR] 空き出現の記録の保存に失敗: " + e.getMessage());
+        }
+    }
+}
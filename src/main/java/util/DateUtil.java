@@ -1,8 +1,12 @@
 package util;
 
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
@@ -157,4 +161,27 @@ public class DateUtil {
         }
         return matchedDays;
     }
+
+    /**
+     * 指定秒数以内に迫っている解放時刻を求める（解放時刻はサイトの時間帯で解釈し、日付の変わり目をまたぐ場合は翌日とする）。
+     *
+     * @param releaseTimes 解放時刻（HH:mm、サイトの時間帯）
+     * @param zone         サイトの時間帯
+     * @param leadSeconds  何秒前から迫っているとみなすか
+     * @return 迫っている解放時刻（なければnull）
+     */
+    public static ZonedDateTime upcomingRelease(List<String> releaseTimes, ZoneId zone, long leadSeconds) {
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        for (String releaseTime : releaseTimes) {
+            ZonedDateTime releaseAt = now.toLocalDate().atTime(LocalTime.parse(releaseTime)).atZone(zone);
+            if (releaseAt.isBefore(now)) {
+                releaseAt = now.toLocalDate().plusDays(1).atTime(LocalTime.parse(releaseTime)).atZone(zone);
+            }
+            long lead = Duration.between(now, releaseAt).getSeconds();
+            if (lead >= 0 && lead <= leadSeconds) {
+                return releaseAt;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,51 @@
+package util;
+
+import model.ExpectedYmdTimeRange;
+
+/// 希望日（expectedDate.csv）の各行について、残りの予約希望数（maxCount − 予約済み数）を求めるクラス
+///
+/// 予約済み数は、希望の照合（FilterUtill.getExpectedCourts）と同じく ReservedSlotCounter で数えた
+/// 同じ日付・同じ施設・同じ時間帯の予約済みの枠数。予約に成功した枠は ReservedSlotCounter に加算されるため、
+/// 呼び出すたびに最新の残数になる。
+public class DemandTracker {
+    private final WishlistIndex wishlist;
+
+    public DemandTracker(WishlistIndex wishlist) {
+        this.wishlist = wishlist;
+    }
+
+    /// 希望1件の残り予約希望数（施設名が決まらない「その他」の希望は、照合と同じくコートごとに数えるため減らない）
+    public static int remaining(ExpectedYmdTimeRange expected, ReservedSlotCounter reserved) {
+        String areaName = FilterUtill.resolveExpectedArea(expected.getCourtAreaName()).getKeyword();
+        return Math.max(0, expected.getMaxCount() - reserved.countOf(expected.getYmd(), areaName, expected.getTimeRange()));
+    }
+
+    /// 指定日付（yyyyMMdd）に残りの予約希望があるか
+    public boolean hasDemand(String ymd, ReservedSlotCounter reserved) {
+        for (ExpectedYmdTimeRange expected : wishlist.entriesFor(ymd)) {
+            if (remaining(expected, reserved) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// 指定月（yyyyMM）に残りの予約希望があるか
+    public boolean hasDemandInMonth(String yyyymm, ReservedSlotCounter reserved) {
+        for (ExpectedYmdTimeRange expected : wishlist.getEntries()) {
+            if (expected.getYmd().startsWith(yyyymm) && remaining(expected, reserved) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// 全希望の残り予約希望数の合計
+    public int totalDemand(ReservedSlotCounter reserved) {
+        int total = 0;
+        for (ExpectedYmdTimeRange expected : wishlist.getEntries()) {
+            total += remaining(expected, reserved);
+        }
+        return total;
+    }
+}
@@ -86,117 +86,131 @@ public class FilterUtill {
         return daysBetween >= 0 && daysBetween <= 2;
     }
 
-    /// 希望の日時とコート名のキーワードに一致するコートがあれば抽出する
+    /// 希望の日時とコート名のキーワードに一致するコートがあれば抽出する（希望1件分）
     public static List<TennisCourt> getExpectedCourt(List<TennisCourt> tennisCourtList, ExpectedYmdTimeRange expectedData,String ymd, TimeRange timeRange, String courtNameKeyword, int maxCount,List<TennisCourt> yykCourtList) {
-        List<TennisCourt> extractedCourtList = new ArrayList<>();
+        ExpectedYmdTimeRange expected = new ExpectedYmdTimeRange(ymd, timeRange, courtNameKeyword, maxCount, expectedData.isChokkinOk());
+        return getExpectedCourts(tennisCourtList, new WishlistIndex(List.of(expected)), ReservedSlotCounter.of(yykCourtList));
+    }
 
+    /**
+     * 日付ページのコートから、希望（日時・コートエリア）に一致する枠を抽出する。
+     * 空きのある枠ごとに索引から該当する希望を引くため、希望の件数が増えても1日付あたりの処理量は変わらない。
+     * 結果は希望のファイル順 → ページ内のコート順に並べる（希望ごとに getExpectedCourt を呼んだ場合と同じ）。
+     *
+     * @param tennisCourtList 日付ページから解析したコートのリスト
+     * @param wishlist        希望日の索引
+     * @param reserved        予約済みの枠数
+     * @return 予約対象のコート（希望・コートごとに、予約済み数を除いた maxCount 件までの枠）
+     */
+    public static List<TennisCourt> getExpectedCourts(List<TennisCourt> tennisCourtList, WishlistIndex wishlist, ReservedSlotCounter reserved) {
         // 予約不可コートを除外
-        tennisCourtList = FilterUtill.filterAvailableCourts(tennisCourtList);
-
-        // courtNameKeyword が空または null の場合はスキップ（理由をコメント）
-        if (courtNameKeyword == null || courtNameKeyword.isBlank()) {
-            LogWriter.write("[除外理由] コート名キーワード未指定のため抽出処理をスキップ");
-            return extractedCourtList;
-        }
-        // ymd が空または null の場合はスキップ（理由をコメント）
-        if (ymd == null || ymd.isBlank()) {
-            LogWriter.write("[除外理由] 希望日(ymd)未指定のため抽出処理をスキップ");
-            return extractedCourtList;
-        }
-
-        boolean chokkinOk = expectedData.isChokkinOk();
-        if (!chokkinOk) {
-            LocalDate today = LocalDate.now();
-            tennisCourtList.removeIf(court -> {
-                String ymdStr = court.getYmd(); // YYYYMMDD
-                try {
-                    if (ymdStr == null || ymdStr.length() != 8) {
-                        LogWriter.write("[WARN] ymd形式不正のため対象外扱いにしない: court=" + court.getCourtName() + ", ymd=" + ymdStr);
-                        return false; // 不正値は除外対象にしない
-                    }
-                    LocalDate ymdDate = LocalDate.parse(ymdStr, DateTimeFormatter.ofPattern("yyyyMMdd"));
-                    return FilterUtill.isLessThanSpecifiedExtensionDate(today, ymdDate);
-                } catch (Exception e) {
-                    LogWriter.write("[ERROR] ymd日付パースに失敗: court=" + court.getCourtName() + ", ymd=" + ymdStr + ", err=" + e);
-                    return false; // パース失敗時は念のため残す
-                }
-            });
-        }
-
-
-        // YMD・時間帯・コート名キーワードでフィルター
-        for (TennisCourt court : tennisCourtList) {
-            // 希望日と不一致
-            if (!ymd.equals(court.getYmd())) {
-//                LogWriter.writeSlotExclusionReason("希望日と不一致", court, new TimeSlot());
-                continue;
-            }
-            // コートエリアタイプで比較（Enum基準）。期待エリアと実コートの推定エリアが一致しない場合は除外
-            CourtAreaType expectedArea = resolveExpectedArea(courtNameKeyword);
-            CourtAreaType actualArea   = CourtAreaType.fromCourtName(court.getCourtName());
-            if (expectedArea != actualArea) {
-//                LogWriter.writeSlotExclusionReason(
-//                        "[除外理由] コートエリア不一致: expected=" + expectedArea + " / actual=" + actualArea,
-//                        court,
-//                        new TimeSlot()
-//                );
+        List<TennisCourt> availableCourts = FilterUtill.filterAvailableCourts(tennisCourtList);
+
+        // ▼空きのある枠から希望を引き、（希望, コート）の組を集める
+        List<ExpectedMatch> matches = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int courtIndex = 0; courtIndex < availableCourts.size(); courtIndex++) {
+            TennisCourt court = availableCourts.get(courtIndex);
+            // コートエリアタイプで比較（Enum基準）
+            Map<TimeRange, List<WishlistIndex.Entry>> byTimeRange =
+                    wishlist.lookup(court.getYmd(), CourtAreaType.fromCourtName(court.getCourtName()));
+            if (byTimeRange == null) {
                 continue;
             }
-
-            List<TimeSlot> matchingSlots = new ArrayList<>();
+            // 時間帯処理: 取得スロットのTimeRangeが希望と厳密一致するものだけ残す
+            Map<TimeRange, List<TimeSlot>> slotsByTimeRange = new EnumMap<>(TimeRange.class);
             for (TimeSlot slot : court.getTimeSlotList()) {
-// 時間帯処理: 取得スロットのTimeRangeが希望と厳密一致するものだけ残す
-                    if (TimeRange.timeRangeMatches(slot.getTimeRange(), timeRange)) {
-                        matchingSlots.add(slot);
-                    }
+                if (slot.getTimeRange() != null && byTimeRange.containsKey(slot.getTimeRange())) {
+                    slotsByTimeRange.computeIfAbsent(slot.getTimeRange(), k -> new ArrayList<>()).add(slot);
+                }
             }
-            if (!matchingSlots.isEmpty()) {
-                // 既存予約数をカウント（同じ日付・同じコート・同じ時間帯）
-                int existingCount = 0;
-// 件数処理: 同一時間帯のみ既存件数としてカウント
-                for (TennisCourt yyk : yykCourtList) {
-                    if (!ymd.equals(yyk.getYmd())) continue;
-                    if (!TennisCourtCompareUtil.isSameCourt(yyk, court)) continue;
-                    for (TimeSlot ys : yyk.getTimeSlotList()) {
-                        if (ys.getTimeRange() == timeRange) {
-                            existingCount++;
+            Boolean tooClose = null;
+            for (Map.Entry<TimeRange, List<TimeSlot>> slots : slotsByTimeRange.entrySet()) {
+                for (WishlistIndex.Entry entry : byTimeRange.get(slots.getKey())) {
+                    if (!entry.getExpected().isChokkinOk()) {
+                        if (tooClose == null) {
+                            tooClose = isTooCloseToReserve(today, court);
+                        }
+                        if (tooClose) {
+                            continue;
                         }
                     }
+                    matches.add(new ExpectedMatch(entry, courtIndex, court, slots.getValue()));
                 }
-                int remain = Math.max(0, maxCount - existingCount);
+            }
+        }
+        matches.sort(Comparator.comparingInt((ExpectedMatch m) -> m.entry.getOrder()).thenComparingInt(m -> m.courtIndex));
 
-                if (remain <= 0) {
-                    // 既存予約で上限に達しているため除外
-                    for (TimeSlot slot : matchingSlots) {
-                        LogWriter.writeSlotExclusionReason("[除外理由] 既存予約によりmaxCount超過（追加0件）", court, slot);
-                    }
-                } else {
-                    // 追加可能分だけ詰め替えて追加（通常は1件想定）
-                    List<TimeSlot> toAdd = matchingSlots.size() > remain ? matchingSlots.subList(0, remain) : matchingSlots;
-                    TennisCourt filteredCourt = new TennisCourt(court.getCourtName());
-                    filteredCourt.setYmd(court.getYmd());
-                    filteredCourt.setTimeSlotList(new ArrayList<>(toAdd));
-                    extractedCourtList.add(filteredCourt);
-
-                    // もし余剰があるならログ（任意）
-                    if (matchingSlots.size() > remain) {
-                        for (int i = remain; i < matchingSlots.size(); i++) {
-                            LogWriter.writeSlotExclusionReason("[除外理由] maxCount制限により追加見送り", court, matchingSlots.get(i));
-                        }
-                    }
+        // ▼希望ごとに、予約済み数を除いた件数まで詰める
+        List<TennisCourt> extractedCourtList = new ArrayList<>();
+        for (ExpectedMatch match : matches) {
+            TennisCourt court = match.court;
+            List<TimeSlot> matchingSlots = match.slots;
+            ExpectedYmdTimeRange expected = match.entry.getExpected();
+            // 件数処理: 同一時間帯のみ既存件数としてカウント（同じ日付・同じコート・同じ時間帯）
+            int existingCount = reserved.countOf(expected.getYmd(), court.getCourtName(), expected.getTimeRange());
+            int remain = Math.max(0, expected.getMaxCount() - existingCount);
+
+            if (remain <= 0) {
+                // 既存予約で上限に達しているため除外
+                for (TimeSlot slot : matchingSlots) {
+                    LogWriter.writeSlotExclusionReason("[除外理由] 既存予約によりmaxCount超過（追加0件）", court, slot);
                 }
             } else {
-                // 指定時間帯が存在しない場合の除外理由をコメント
-//                LogWriter.writeSlotExclusionReason("[除外理由] 指定時間帯(" + timeRange + ")が存在しない", court, new TimeSlot());
+                // 追加可能分だけ詰め替えて追加（通常は1件想定）
+                List<TimeSlot> toAdd = matchingSlots.size() > remain ? matchingSlots.subList(0, remain) : matchingSlots;
+                TennisCourt filteredCourt = new TennisCourt(court.getCourtName());
+                filteredCourt.setYmd(court.getYmd());
+                filteredCourt.setTimeSlotList(new ArrayList<>(toAdd));
+                extractedCourtList.add(filteredCourt);
+
+                // もし余剰があるならログ（任意）
+                if (matchingSlots.size() > remain) {
+                    for (int i = remain; i < matchingSlots.size(); i++) {
+                        LogWriter.writeSlotExclusionReason("[除外理由] maxCount制限により追加見送り", court, matchingSlots.get(i));
+                    }
+                }
             }
         }
 
         return extractedCourtList;
     }
 
+    /// 希望とコートの組（希望のファイル順 → コート順に並べ替えてから件数を詰める）
+    private static class ExpectedMatch {
+        private final WishlistIndex.Entry entry;
+        private final int courtIndex;
+        private final TennisCourt court;
+        /// 希望の時間帯に一致する空き枠（ページ内の順）
+        private final List<TimeSlot> slots;
+
+        private ExpectedMatch(WishlistIndex.Entry entry, int courtIndex, TennisCourt court, List<TimeSlot> slots) {
+            this.entry = entry;
+            this.courtIndex = courtIndex;
+            this.court = court;
+            this.slots = slots;
+        }
+    }
+
+    /// 直前（今日から2日以内）のため、直前OKでない希望では対象外とするコートか
+    private static boolean isTooCloseToReserve(LocalDate today, TennisCourt court) {
+        String ymdStr = court.getYmd(); // YYYYMMDD
+        try {
+            if (ymdStr == null || ymdStr.length() != 8) {
+                LogWriter.write("[WARN] ymd形式不正のため対象外扱いにしない: court=" + court.getCourtName() + ", ymd=" + ymdStr);
+                return false; // 不正値は除外対象にしない
+            }
+            LocalDate ymdDate = LocalDate.parse(ymdStr, DateTimeFormatter.ofPattern("yyyyMMdd"));
+            return FilterUtill.isLessThanSpecifiedExtensionDate(today, ymdDate);
+        } catch (Exception e) {
+            LogWriter.write("[ERROR] ymd日付パースに失敗: court=" + court.getCourtName() + ", ymd=" + ymdStr + ", err=" + e);
+            return false; // パース失敗時は念のため残す
+        }
+    }
+
 
     // CourtAreaType をキーワード（日本語）または enum 名から解決する
-    private static CourtAreaType resolveExpectedArea(String keywordOrEnum) {
+    public static CourtAreaType resolveExpectedArea(String keywordOrEnum) {
         if (keywordOrEnum == null || keywordOrEnum.isBlank()) {
             return CourtAreaType.OTHER;
         }
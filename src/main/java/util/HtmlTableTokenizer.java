@@ -0,0 +1,593 @@
+package util;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/// HTML文字列から、最初に条件に合う表（table）の行・セルだけを先頭から順に読み取る軽量トークナイザ
+///
+/// DOMを作らず、コメント・script・styleはその場で読み飛ばす。セルのテキストはJsoupの Element.text() と同じ規則
+/// （空白の連続を1つにまとめる・文字参照を展開する・brで区切る）で組み立てる。
+/// Jsoupと結果が変わりうる構造（入れ子の表、セル内のブロック要素・pre・textarea、表の直下の不明な要素など）を
+/// 見つけた場合は null を返すので、呼び出し元はJsoupでの解析に切り替えること。
+public final class HtmlTableTokenizer {
+
+    /// セル1つ分の内容
+    public static final class Cell {
+        private final boolean header;
+        private final String text;
+        private final String href;
+
+        Cell(boolean header, String text, String href) {
+            this.header = header;
+            this.text = text;
+            this.href = href;
+        }
+
+        /// thセルか
+        public boolean isHeader() {
+            return header;
+        }
+
+        /// セルのテキスト（Jsoupの text().trim() 相当）
+        public String getText() {
+            return text;
+        }
+
+        /// セル内の最初のリンク（a）のhref（リンクがなければnull、href属性がなければ空文字）
+        public String getHref() {
+            return href;
+        }
+
+        /// セル内にリンク（a）があるか
+        public boolean hasLink() {
+            return href != null;
+        }
+    }
+
+    /// 読み取り結果
+    public static final class Table {
+        private final boolean found;
+        private final List<List<Cell>> rows;
+
+        Table(boolean found, List<List<Cell>> rows) {
+            this.found = found;
+            this.rows = rows;
+        }
+
+        /// 条件に合う表が見つかったか
+        public boolean isFound() {
+            return found;
+        }
+
+        /// 表の行（セルのリスト。セルのない行も含む）
+        public List<List<Cell>> getRows() {
+            return rows;
+        }
+    }
+
+    /// セル内でテキストの区切りにならない（Jsoupでブロック扱いされない）要素
+    private static final Set<String> INLINE_TAGS = Set.of(
+            "a", "abbr", "b", "big", "br", "code", "em", "font", "i", "img", "input", "label", "mark",
+            "nobr", "s", "small", "span", "strike", "strong", "sub", "sup", "tt", "u", "wbr");
+    /// 行のまとまりを表す要素（セルの外に現れてもよい）
+    private static final Set<String> TABLE_SECTION_TAGS = Set.of("tbody", "thead", "tfoot");
+    /// 文字列を作らずに判定するタグ名
+    private static final String[] KNOWN_TAGS = {
+            "a", "td", "tr", "th", "br", "span", "img", "font", "b", "table", "tbody", "thead", "tfoot",
+            "div", "p", "input", "script", "style", "form", "label", "nobr", "li", "ul", "option", "select"};
+    /// 中身が要素として解釈されない要素（内容ごと読み飛ばす）
+    private static final Set<String> RAW_TEXT_TAGS = Set.of("script", "style", "iframe", "noembed", "noframes", "xmp", "textarea", "title");
+
+    private final String html;
+    private final int length;
+    private int pos;
+    /// 直前に読んだ開始タグのclass属性・href属性（読み取り中のみ使用）
+    private String lastClass;
+    private String lastHref;
+    private boolean lastHasHref;
+    /// 直前に読んだ '<' がタグではなく文字だったか
+    private boolean literalLt;
+    /// Jsoupと結果が変わりうる書き方を見つけたか
+    private boolean unsupported;
+
+    private HtmlTableTokenizer(String html) {
+        this.html = html;
+        this.length = html.length();
+    }
+
+    /**
+     * 最初に条件に合う表を読み取る。
+     *
+     * @param html HTML文字列
+     * @param requiredClass 表に必要なclass（nullなら最初の表）
+     * @return 読み取り結果（Jsoupと結果が変わりうる構造ならnull）
+     */
+    public static Table readFirstTable(String html, String requiredClass) {
+        return new HtmlTableTokenizer(html).read(requiredClass);
+    }
+
+    /// Jsoupで解析済みの表を同じ形に変換する（読み取りできなかった場合の代替。行・セルの選び方は select("tr") / select("td, th") のまま）
+    public static Table fromElement(Element table) {
+        if (table == null) {
+            return new Table(false, List.of());
+        }
+        List<List<Cell>> rows = new ArrayList<>();
+        for (Element tr : table.select("tr")) {
+            List<Cell> row = new ArrayList<>();
+            for (Element cell : tr.select("td, th")) {
+                Element link = cell.selectFirst("a");
+                row.add(new Cell("th".equals(cell.normalName()), cell.text().trim(), link != null ? link.attr("href") : null));
+            }
+            rows.add(row);
+        }
+        return new Table(true, rows);
+    }
+
+    private Table read(String requiredClass) {
+        // ▼表の開始タグを探す
+        boolean found = false;
+        while (pos < length && !found) {
+            int lt = html.indexOf('<', pos);
+            if (lt < 0) {
+                break;
+            }
+            pos = lt;
+            boolean endTag = lt + 1 < length && html.charAt(lt + 1) == '/';
+            String name = readMarkup();
+            if (unsupported || (!endTag && "plaintext".equals(name))) {
+                return null;
+            }
+            if (endTag || name == null) {
+                continue;
+            }
+            if ("table".equals(name) && (requiredClass == null || hasClass(lastClass, requiredClass))) {
+                found = true;
+            } else if (RAW_TEXT_TAGS.contains(name)) {
+                // 中に表のタグが書かれていても表ではない
+                if (!skipRawText(name)) {
+                    return null;
+                }
+            }
+        }
+        if (!found) {
+            return new Table(false, List.of());
+        }
+
+        // ▼表の中身を読む
+        List<List<Cell>> rows = new ArrayList<>();
+        List<Cell> row = null;
+        // 開いているセルのテキスト（セルの外ではnull。バッファはセル間で使い回す）
+        StringBuilder text = null;
+        StringBuilder cellText = new StringBuilder();
+        boolean header = false;
+        String href = null;
+        // 開いている行のまとまり（tbody・thead・tfoot。trだけの表ではJsoupと同様にtbodyとみなす）
+        String section = null;
+        while (pos < length) {
+            int lt = html.indexOf('<', pos);
+            int textEnd = lt < 0 ? length : lt;
+            // セルの外の文字はJsoupでは表の前に移されるため、行・セルには影響しない
+            if (textEnd > pos && text != null) {
+                appendNormalised(text, html, pos, textEnd);
+            }
+            pos = textEnd;
+            if (lt < 0) {
+                break;
+            }
+            boolean endTag = lt + 1 < length && html.charAt(lt + 1) == '/';
+            String name = readMarkup();
+            if (unsupported) {
+                return null;
+            }
+            if (name == null) {
+                if (literalLt && text != null) {
+                    appendNormalised(text, html, lt, lt + 1);
+                }
+                continue;
+            }
+            if (!endTag && ("script".equals(name) || "style".equals(name))) {
+                // 表の中でも許される要素（中身は文字にならないが、Jsoupではブロック扱いで前後が区切られる）
+                if (!skipRawText(name)) {
+                    return null;
+                }
+                appendSeparator(text);
+                continue;
+            }
+            switch (name) {
+                case "table":
+                    if (endTag) {
+                        if (text != null) {
+                            row.add(new Cell(header, text.toString().trim(), href));
+                        }
+                        return new Table(true, rows);
+                    }
+                    // 入れ子の表はJsoupで解析する
+                    return null;
+                case "tr":
+                    if (text != null) {
+                        row.add(new Cell(header, text.toString().trim(), href));
+                        text = null;
+                    }
+                    row = null;
+                    if (!endTag) {
+                        row = new ArrayList<>();
+                        rows.add(row);
+                        if (section == null) {
+                            section = "tbody";
+                        }
+                    }
+                    break;
+                case "td":
+                case "th":
+                    if (endTag && (text == null || header != "th".equals(name))) {
+                        // 開いていないセルの閉じタグはJsoupでも無視される
+                        break;
+                    }
+                    if (text != null) {
+                        row.add(new Cell(header, text.toString().trim(), href));
+                        text = null;
+                    }
+                    if (!endTag) {
+                        if (row == null) {
+                            // trなしで始まるセルは暗黙の行に入る
+                            row = new ArrayList<>();
+                            rows.add(row);
+                            if (section == null) {
+                                section = "tbody";
+                            }
+                        }
+                        cellText.setLength(0);
+                        text = cellText;
+                        header = "th".equals(name);
+                        href = null;
+                    }
+                    break;
+                default:
+                    if (TABLE_SECTION_TAGS.contains(name)) {
+                        if (endTag && !name.equals(section)) {
+                            // 開いていないまとまりの閉じタグはJsoupでも無視される
+                            break;
+                        }
+                        if (text != null) {
+                            row.add(new Cell(header, text.toString().trim(), href));
+                            text = null;
+                        }
+                        row = null;
+                        section = endTag ? null : name;
+                    } else if (text != null && INLINE_TAGS.contains(name)) {
+                        if (!endTag && "a".equals(name) && href == null) {
+                            href = lastHasHref ? lastHref : "";
+                        } else if ("br".equals(name)) {
+                            appendSeparator(text);
+                        }
+                    } else {
+                        // セル内のブロック要素・セルの外の要素はJsoupと扱いが変わりうる
+                        return null;
+                    }
+            }
+        }
+        // 閉じタグのないまま終わった表
+        if (text != null) {
+            row.add(new Cell(header, text.toString().trim(), href));
+        }
+        return new Table(true, rows);
+    }
+
+    /**
+     * pos（'<' の位置）からタグ・コメント等を1つ読み進める。
+     *
+     * @return 開始・終了タグなら小文字のタグ名（開始タグならclass・href属性も記録）。コメント・文字としての '<' 等ならnull
+     */
+    private String readMarkup() {
+        int start = pos;
+        literalLt = false;
+        if (html.startsWith("<!-->", start) || html.startsWith("<!--->", start)) {
+            // 空のコメントはJsoupと事前のコメント削除とで解釈が異なる
+            unsupported = true;
+            return null;
+        }
+        if (html.startsWith("<!--", start)) {
+            int end = html.indexOf("-->", start + 4);
+            pos = end < 0 ? length : end + 3;
+            return null;
+        }
+        if (start + 1 >= length) {
+            literalLt = true;
+            pos = length;
+            return null;
+        }
+        char next = html.charAt(start + 1);
+        if (next == '!' || next == '?') {
+            // DOCTYPE等
+            int end = html.indexOf('>', start);
+            pos = end < 0 ? length : end + 1;
+            return null;
+        }
+        boolean endTag = next == '/';
+        int nameStart = endTag ? start + 2 : start + 1;
+        if (nameStart >= length || !isAsciiLetter(html.charAt(nameStart))) {
+            if (endTag) {
+                // 不正な終了タグはJsoupでもコメント扱い
+                int end = html.indexOf('>', start);
+                pos = end < 0 ? length : end + 1;
+            } else {
+                // 文字としての '<'
+                literalLt = true;
+                pos = start + 1;
+            }
+            return null;
+        }
+        int i = nameStart;
+        while (i < length && !isTagNameEnd(html.charAt(i))) {
+            i++;
+        }
+        String name = tagName(nameStart, i);
+        lastClass = null;
+        lastHref = null;
+        lastHasHref = false;
+        // 属性（必要なclass・hrefの値だけ文字列にする）
+        boolean closed = false;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '>') {
+                i++;
+                closed = true;
+                break;
+            }
+            if (isWhitespace(c) || c == '/') {
+                i++;
+                continue;
+            }
+            if (c == '<' || c == '"' || c == '\'' || c == '=') {
+                // 崩れたタグはJsoupの解釈に任せる
+                unsupported = true;
+                break;
+            }
+            int attrStart = i;
+            while (i < length && !isWhitespace(html.charAt(i)) && html.charAt(i) != '=' && html.charAt(i) != '>'
+                    && !(html.charAt(i) == '/' && i > attrStart)) {
+                i++;
+            }
+            int attrEnd = i;
+            while (i < length && isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            int valueStart = i;
+            int valueEnd = i;
+            if (i < length && html.charAt(i) == '=') {
+                i++;
+                while (i < length && isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                if (i < length && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                    char quote = html.charAt(i);
+                    int end = html.indexOf(quote, i + 1);
+                    if (end < 0) {
+                        unsupported = true;
+                        break;
+                    }
+                    valueStart = i + 1;
+                    valueEnd = end;
+                    // 属性値の中のコメント（事前にコメントを削除する呼び出し元と結果が変わる）
+                    int comment = html.indexOf("<!--", valueStart);
+                    if (comment >= 0 && comment < valueEnd) {
+                        unsupported = true;
+                        break;
+                    }
+                    i = end + 1;
+                } else {
+                    valueStart = i;
+                    while (i < length && !isWhitespace(html.charAt(i)) && html.charAt(i) != '>') {
+                        char v = html.charAt(i);
+                        if (v == '<' || v == '"' || v == '\'') {
+                            unsupported = true;
+                            break;
+                        }
+                        i++;
+                    }
+                    if (unsupported) {
+                        break;
+                    }
+                    valueEnd = i;
+                }
+            }
+            if (endTag) {
+                continue;
+            }
+            // 同名の属性は最初のものが有効
+            if (lastClass == null && isName(attrStart, attrEnd, "class")) {
+                lastClass = html.substring(valueStart, valueEnd);
+            } else if (!lastHasHref && isName(attrStart, attrEnd, "href")) {
+                lastHref = decodeEntities(html.substring(valueStart, valueEnd), true);
+                lastHasHref = true;
+            }
+        }
+        if (!closed) {
+            // 閉じていないタグ
+            unsupported = true;
+        }
+        pos = i;
+        return name;
+    }
+
+    /// script等の中身を終了タグまで読み飛ばす（中にコメントの書き方があるなど、Jsoupと解釈が変わりうるならfalse）
+    private boolean skipRawText(String name) {
+        String close = "</" + name;
+        int i = pos;
+        while (true) {
+            int end = html.indexOf("</", i);
+            if (end < 0) {
+                return false;
+            }
+            if (html.regionMatches(true, end, close, 0, close.length())
+                    && (end + close.length() >= length || isTagNameEnd(html.charAt(end + close.length())))) {
+                int comment = html.indexOf("<!--", pos);
+                if (comment >= 0 && comment < end) {
+                    return false;
+                }
+                pos = end;
+                readMarkup();
+                return !unsupported;
+            }
+            i = end + 2;
+        }
+    }
+
+    /// テキストをJsoupと同じ規則で追加する（空白の連続を1つにまとめ、不可視文字を除き、文字参照を展開する）
+    private static void appendNormalised(StringBuilder accum, String html, int start, int end) {
+        CharSequence text = html;
+        int amp = html.indexOf('&', start);
+        if (amp >= 0 && amp < end) {
+            text = decodeEntities(html.substring(start, end), false);
+            start = 0;
+            end = text.length();
+        }
+        boolean lastWasWhite = accum.length() > 0 && accum.charAt(accum.length() - 1) == ' ';
+        boolean stripLeading = lastWasWhite;
+        boolean reachedNonWhite = false;
+        for (int i = start; i < end; ) {
+            int c = Character.codePointAt(text, i);
+            i += Character.charCount(c);
+            if (isWhitespace(c) || c == 160) {
+                if ((stripLeading && !reachedNonWhite) || lastWasWhite) {
+                    continue;
+                }
+                accum.append(' ');
+                lastWasWhite = true;
+            } else if (c != 8203 && c != 173) {
+                accum.appendCodePoint(c);
+                lastWasWhite = false;
+                reachedNonWhite = true;
+            }
+        }
+    }
+
+    /**
+     * 文字参照を展開する。
+     * よく使われる書き方（&amp;amp; &amp;lt; &amp;gt; &amp;quot; &amp;apos; &amp;nbsp; と、セミコロンで終わる数値参照）はその場で展開し、
+     * それ以外を含む場合はJsoupの展開処理に任せる（Jsoupの展開処理は呼び出しごとに大きなバッファを確保するため）。
+     */
+    static String decodeEntities(String value, boolean inAttribute) {
+        int amp = value.indexOf('&');
+        if (amp < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        sb.append(value, 0, amp);
+        int i = amp;
+        int len = value.length();
+        while (i < len) {
+            char c = value.charAt(i);
+            if (c != '&') {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            int semi = value.indexOf(';', i + 1);
+            if (semi < 0 || semi - i > 10) {
+                return Parser.unescapeEntities(value, inAttribute);
+            }
+            int decoded = decodeReference(value, i + 1, semi);
+            if (decoded < 0) {
+                return Parser.unescapeEntities(value, inAttribute);
+            }
+            sb.appendCodePoint(decoded);
+            i = semi + 1;
+        }
+        return sb.toString();
+    }
+
+    /// &amp; と ; の間の参照を文字に変換する（その場で扱わない書き方なら-1）
+    private static int decodeReference(String value, int start, int end) {
+        if (start < end && value.charAt(start) == '#') {
+            boolean hex = start + 1 < end && (value.charAt(start + 1) == 'x' || value.charAt(start + 1) == 'X');
+            int digitsStart = hex ? start + 2 : start + 1;
+            if (digitsStart >= end || end - digitsStart > 7) {
+                return -1;
+            }
+            int codePoint = 0;
+            for (int i = digitsStart; i < end; i++) {
+                int digit = Character.digit(value.charAt(i), hex ? 16 : 10);
+                if (digit < 0) {
+                    return -1;
+                }
+                codePoint = codePoint * (hex ? 16 : 10) + digit;
+            }
+            // 0・制御文字の置き換え（0x80〜0x9F）・サロゲート・範囲外はJsoupの規則に任せる
+            if (codePoint == 0 || (codePoint >= 0x80 && codePoint <= 0x9F)
+                    || (codePoint >= 0xD800 && codePoint <= 0xDFFF) || codePoint > 0x10FFFF) {
+                return -1;
+            }
+            return codePoint;
+        }
+        switch (value.substring(start, end)) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            case "nbsp":
+                return 160;
+            default:
+                return -1;
+        }
+    }
+
+    /// セル内の区切り（br・ブロック要素）として空白を1つ追加する（先頭・空白の直後には追加しない）
+    private static void appendSeparator(StringBuilder accum) {
+        if (accum != null && accum.length() > 0 && accum.charAt(accum.length() - 1) != ' ') {
+            accum.append(' ');
+        }
+    }
+
+    /// タグ名を小文字で返す（よく使うタグは文字列を作らずに定数を返す）
+    private String tagName(int start, int end) {
+        int nameLength = end - start;
+        for (String known : KNOWN_TAGS) {
+            if (known.length() == nameLength && html.regionMatches(true, start, known, 0, nameLength)) {
+                return known;
+            }
+        }
+        return html.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    /// 属性名が指定の名前か（大文字小文字は区別しない）
+    private boolean isName(int start, int end, String name) {
+        return end - start == name.length() && html.regionMatches(true, start, name, 0, name.length());
+    }
+
+    /// class属性に指定のclassが含まれるか（大文字小文字は区別しない）
+    private static boolean hasClass(String classAttr, String className) {
+        if (classAttr == null) {
+            return false;
+        }
+        for (String token : classAttr.trim().split("[ \\t\\n\\f\\r]+")) {
+            if (token.equalsIgnoreCase(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isTagNameEnd(char c) {
+        return isWhitespace(c) || c == '/' || c == '>';
+    }
+}
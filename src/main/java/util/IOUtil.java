@@ -8,16 +8,14 @@ import java.lang.reflect.Type;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class IOUtil {
-    /// 指定パスから除外日リストを取得する
-    public static List<String> loadJogaiDates(String filePath) {
+    /// 指定パスから除外日リストを取得する（4桁の日付には指定した年を頭につける。読み込めなければ例外）
+    public static List<String> readJogaiDates(String filePath, int currentYear) throws IOException {
         List<String> jogaiDates = new ArrayList<>();
-        int currentYear = LocalDate.now().getYear(); // 現在の年
 
         try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
             String line;
@@ -34,16 +32,14 @@ public class IOUtil {
                     }
                 }
             }
-        } catch (Exception e) {
-            System.out.println("[ERROR] 除外日ファイル読み込みエラー: " + e.getMessage());
         }
 
         return jogaiDates;
     }
 
 
-    /// ファイルパスを受け取り、TennisCourtリストを返す
-    public static List<TennisCourt> loadReservedCourtsFromCsv(String filePath) {
+    /// ファイルパスを受け取り、TennisCourtリストを返す（読み込めなければ例外）
+    public static List<TennisCourt> readReservedCourtsFromCsv(String filePath) throws IOException {
         List<TennisCourt> courtList = new ArrayList<>();
 
         try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
@@ -76,10 +72,6 @@ public class IOUtil {
 
                 courtList.add(court);
             }
-
-        } catch (Exception e) {
-            System.out.println("[ERROR] CSVファイル読み込み中に例外発生: " + e.getMessage());
-            e.printStackTrace();
         }
 
         return courtList;
@@ -1,51 +1,53 @@
 package util;
 
+import constpk.CommonConst;
+import model.DayAvailability;
 import model.TennisCourt;
 import model.TimeRange;
 import model.TimeSlot;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import java.util.ArrayList;
 import java.util.List;
 
 /// HTMLからTennisCourtリストを作成するユーティリティ
 public class ParserUtil {
 
-    /// HTMLと日付を受け取り、TennisCourtリストを作成する
+    /// HTMLと日付を受け取り、TennisCourtリストを作成する（同じ内容の行が繰り返されている場合は1件にまとめる）
     public static List<TennisCourt> parseTennisCourtsFromHtml(String html, String ymd) {
+        return parseTennisCourtsFromHtml(html, ymd, CommonConst.STREAMING_PARSER_ENABLED);
+    }
+
+    /// HTMLと日付を受け取り、TennisCourtリストを作成する（streamingがfalseなら常にJsoupで解析する）
+    public static List<TennisCourt> parseTennisCourtsFromHtml(String html, String ymd, boolean streaming) {
         List<TennisCourt> tennisCourtList = new ArrayList<>();
 
         try {
-            // コメントアウトを削除してパース
-            html = html.replaceAll("(?s)<!--.*?-->", "").trim();
-            Document document = Jsoup.parse(html);
-
-            // テーブル取得
-            Element table = document.selectFirst("table.link-table");
+            // DOMを作らずに表だけを読み取る（Jsoupと結果が変わりうる書き方ならnullが返るのでJsoupで解析する）
+            HtmlTableTokenizer.Table table = streaming ? HtmlTableTokenizer.readFirstTable(html, "link-table") : null;
             if (table == null) {
+                table = parseLinkTableWithJsoup(html);
+            }
+            if (!table.isFound()) {
                 System.out.println("テーブルが見つかりませんでした");
                 return tennisCourtList;
             }
 
-            Elements rows = table.select("tr");
             List<String> currentHeaders = new ArrayList<>();
 
-            for (Element row : rows) {
-                Elements cells = row.select("td, th");
-
+            for (List<HtmlTableTokenizer.Cell> cells : table.getRows()) {
                 if (cells.isEmpty()) {
                     continue;
                 }
 
-                String firstCellText = cells.get(0).text().trim();
+                String firstCellText = cells.get(0).getText();
 
                 // 時間帯ヘッダー行（"施設"）なら
                 if (firstCellText.equals("施設")) {
                     currentHeaders.clear();
                     for (int i = 1; i < cells.size(); i++) {
-                        currentHeaders.add(cells.get(i).text().trim());
+                        currentHeaders.add(cells.get(i).getText());
                     }
                     continue;
                 }
@@ -59,8 +61,8 @@ public class ParserUtil {
                     String timeStr = currentHeaders.get(i - 1);
                     TimeRange timeRange = TimeRange.from(timeStr);
 
-                    Element slotCell = cells.get(i);
-                    boolean available = slotCell.selectFirst("a") != null || "○".equals(slotCell.text().trim());
+                    HtmlTableTokenizer.Cell slotCell = cells.get(i);
+                    boolean available = slotCell.hasLink() || "○".equals(slotCell.getText());
 
                     TimeSlot timeSlot = new TimeSlot();
                     timeSlot.setTime(timeStr);
@@ -68,9 +70,8 @@ public class ParserUtil {
                     timeSlot.setAvailable(available);
 
                     // 「○」かつリンクが存在するならURLをセット
-                    Element link = slotCell.selectFirst("a");
-                    if (link != null) {
-                        String url = link.attr("href").trim();
+                    if (slotCell.hasLink()) {
+                        String url = slotCell.getHref().trim();
                         if (!url.isEmpty()) {
                             // フルパスにしておきたければここでドメイン結合
                             timeSlot.setUrl("https://yoyaku.city.chigasaki.kanagawa.jp" + url);
@@ -80,7 +81,10 @@ public class ParserUtil {
                     court.addTimeSlot(timeSlot);
                 }
 
-                tennisCourtList.add(court);
+                // HTML上で同じコートの行が繰り返されるため、内容まで同じ行は読み取り時点で除く
+                if (!containsSameCourt(tennisCourtList, court)) {
+                    tennisCourtList.add(court);
+                }
             }
 
         } catch (Exception e) {
@@ -90,4 +94,40 @@ public class ParserUtil {
 
         return tennisCourtList;
     }
-}
\ No newline at end of file
+
+    /// Jsoupでlink-tableを解析する（コメントアウトを削除してからパース）
+    static HtmlTableTokenizer.Table parseLinkTableWithJsoup(String html) {
+        html = html.replaceAll("(?s)<!--.*?-->", "").trim();
+        Document document = Jsoup.parse(html);
+        return HtmlTableTokenizer.fromElement(document.selectFirst("table.link-table"));
+    }
+
+    /// コート名・時間枠（時間・空き・URL）がすべて同じコートがリストにあるか
+    private static boolean containsSameCourt(List<TennisCourt> courtList, TennisCourt court) {
+        for (TennisCourt other : courtList) {
+            if (other.getCourtName().equals(court.getCourtName()) && other.getTimeSlotList().equals(court.getTimeSlotList())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// 月カレンダーの日付セルから空き状況を判定する（日付に添えた記号か、画像のaltの記号だけを手掛かりにする）
+    public static DayAvailability parseDayAvailability(Element cell) {
+        if (cell.selectFirst("a") == null) {
+            return DayAvailability.CLOSED;
+        }
+        // 日付以外の文字がちょうど空き状況の記号であれば、それで判定する
+        DayAvailability availability = DayAvailability.fromGlyph(cell.text().replaceAll("[\\d\\s\\u00a0\\u3000]", ""));
+        if (availability != DayAvailability.UNKNOWN) {
+            return availability;
+        }
+        for (Element image : cell.select("img[alt]")) {
+            availability = DayAvailability.fromGlyph(image.attr("alt").trim());
+            if (availability != DayAvailability.UNKNOWN) {
+                return availability;
+            }
+        }
+        return DayAvailability.UNKNOWN;
+    }
+}
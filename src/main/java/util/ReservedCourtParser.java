@@ -1,12 +1,11 @@
 package util;
 
+import constpk.CommonConst;
 import model.TennisCourt;
 import model.TimeRange;
 import model.TimeSlot;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,34 +13,42 @@ import java.util.List;
 public class ReservedCourtParser {
 
     public static List<TennisCourt> parseReservedTennisCourtsFromHtml(String html) {
+        return parseReservedTennisCourtsFromHtml(html, CommonConst.STREAMING_PARSER_ENABLED);
+    }
+
+    /// 予約一覧のHTMLから予約済みコートを読み取る（streamingがfalseなら常にJsoupで解析する）
+    public static List<TennisCourt> parseReservedTennisCourtsFromHtml(String html, boolean streaming) {
         List<TennisCourt> reservedCourtList = new ArrayList<>();
 
         try {
-            Document document = Jsoup.parse(html);
-            Element table = document.selectFirst("table");
-
+            // DOMを作らずに表だけを読み取る（Jsoupと結果が変わりうる書き方ならnullが返るのでJsoupで解析する）
+            HtmlTableTokenizer.Table table = streaming ? HtmlTableTokenizer.readFirstTable(html, null) : null;
             if (table == null) {
+                Document document = Jsoup.parse(html);
+                table = HtmlTableTokenizer.fromElement(document.selectFirst("table"));
+            }
+
+            if (!table.isFound()) {
                 System.out.println("テーブルが見つかりませんでした");
                 return reservedCourtList;
             }
 
-            Elements rows = table.select("tr");
+            List<List<HtmlTableTokenizer.Cell>> rows = table.getRows();
 
             for (int i = 1; i < rows.size(); i++) { // ヘッダーはスキップ
-                Element row = rows.get(i);
-                Elements cells = row.select("td");
+                List<HtmlTableTokenizer.Cell> cells = dataCells(rows.get(i));
 
                 if (cells.size() < 2) {
                     continue;
                 }
 
                 // 利用日時
-                String dateTimeText = cells.get(0).text().trim();
+                String dateTimeText = cells.get(0).getText();
                 String ymd = extractYmdFromCell(cells.get(0));
                 String timeStr = extractTimeFromDateTime(dateTimeText);
 
                 // 施設名
-                String courtName = cells.get(1).text().trim();
+                String courtName = cells.get(1).getText();
 
                 // TimeRangeを取得
                 TimeRange timeRange = TimeRange.from(timeStr);
@@ -69,11 +76,21 @@ public class ReservedCourtParser {
         return reservedCourtList;
     }
 
-    private static String extractYmdFromCell(Element cell) {
+    /// 行のうちtdセルだけを返す
+    private static List<HtmlTableTokenizer.Cell> dataCells(List<HtmlTableTokenizer.Cell> row) {
+        List<HtmlTableTokenizer.Cell> cells = new ArrayList<>(row.size());
+        for (HtmlTableTokenizer.Cell cell : row) {
+            if (!cell.isHeader()) {
+                cells.add(cell);
+            }
+        }
+        return cells;
+    }
+
+    private static String extractYmdFromCell(HtmlTableTokenizer.Cell cell) {
         try {
-            Element link = cell.selectFirst("a");
-            if (link != null) {
-                String href = link.attr("href");
+            if (cell.hasLink()) {
+                String href = cell.getHref();
                 int ymdIndex = href.indexOf("ymd=");
                 if (ymdIndex != -1) {
                     int start = ymdIndex + 4;
@@ -0,0 +1,43 @@
+package util;
+
+import model.TennisCourt;
+import model.TimeRange;
+import model.TimeSlot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// 予約済みの枠数を（日付・施設・時間帯）ごとに数えておくクラス
+///
+/// 希望ごとに予約済みリスト全体を数え直す代わりに、作成時に1度だけ数え、予約に成功した枠は add で加算する。
+/// 施設の比較は TennisCourtCompareUtil.isSameCourt と同じ（コート名から抽出した施設名）。
+public class ReservedSlotCounter {
+    /// 日付|施設名|時間帯 → 予約済みの枠数
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    /// 予約済みコートのリストから作成する
+    public static ReservedSlotCounter of(List<TennisCourt> yykCourtList) {
+        ReservedSlotCounter counter = new ReservedSlotCounter();
+        for (TennisCourt yyk : yykCourtList) {
+            for (TimeSlot slot : yyk.getTimeSlotList()) {
+                counter.add(yyk, slot);
+            }
+        }
+        return counter;
+    }
+
+    /// 予約済みの枠を1件加算する
+    public void add(TennisCourt court, TimeSlot slot) {
+        counts.merge(keyOf(court.getYmd(), court.getCourtName(), slot.getTimeRange()), 1, Integer::sum);
+    }
+
+    /// 同じ日付・同じ施設・同じ時間帯の予約済みの枠数
+    public int countOf(String ymd, String courtName, TimeRange timeRange) {
+        return counts.getOrDefault(keyOf(ymd, courtName, timeRange), 0);
+    }
+
+    private static String keyOf(String ymd, String courtName, TimeRange timeRange) {
+        return ymd + "|" + TennisCourtCompareUtil.extractAreaName(courtName) + "|" + timeRange;
+    }
+}
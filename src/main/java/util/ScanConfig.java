@@ -0,0 +1,107 @@
+package util;
+
+import model.ExpectedYmdTimeRange;
+import model.TennisCourt;
+import model.TimeSlot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/// 探索の設定ファイル（希望日・除外日・他の人の予約）を読み込んだ結果
+///
+/// 作成後は変更しない。ファイルが更新されたら ScanConfigStore が新しいインスタンスに差し替えるため、
+/// 探索中は取得したインスタンスを使い続ければ、途中で設定が変わることはない。
+public final class ScanConfig {
+    /// 希望日（expectedDate.csv）の索引
+    private final WishlistIndex wishlist;
+    /// 除外日（jogaibi.csv、ファイル順）
+    private final List<String> jogaiDates;
+    /// 除外日の集合
+    private final Set<String> jogaiDateSet;
+    /// 4桁の除外日に補った年
+    private final int jogaiYear;
+    /// 他の人の予約（reservedCourt.csv）
+    private final List<TennisCourt> reservedCourts;
+
+    ScanConfig(WishlistIndex wishlist, List<String> jogaiDates, int jogaiYear, List<TennisCourt> reservedCourts) {
+        this.wishlist = wishlist;
+        this.jogaiDates = Collections.unmodifiableList(new ArrayList<>(jogaiDates));
+        this.jogaiDateSet = Collections.unmodifiableSet(new HashSet<>(jogaiDates));
+        this.jogaiYear = jogaiYear;
+        List<TennisCourt> courts = new ArrayList<>();
+        for (TennisCourt court : reservedCourts) {
+            courts.add(copyOf(court));
+        }
+        this.reservedCourts = Collections.unmodifiableList(courts);
+    }
+
+    /// 希望日の索引
+    public WishlistIndex getWishlist() {
+        return wishlist;
+    }
+
+    /// 希望日（ファイル順）
+    public List<ExpectedYmdTimeRange> getExpectedList() {
+        return wishlist.getEntries();
+    }
+
+    /// 除外日（ファイル順）
+    public List<String> getJogaiDates() {
+        return jogaiDates;
+    }
+
+    /// 除外日か
+    public boolean isJogaiDate(String ymd) {
+        return jogaiDateSet.contains(ymd);
+    }
+
+    int getJogaiYear() {
+        return jogaiYear;
+    }
+
+    List<TennisCourt> getReservedCourts() {
+        return reservedCourts;
+    }
+
+    /// 他の人の予約（予約済みリストに追加して変更されても設定に影響しないよう、毎回複製して返す）
+    public List<TennisCourt> copyReservedCourts() {
+        List<TennisCourt> courts = new ArrayList<>(reservedCourts.size());
+        for (TennisCourt court : reservedCourts) {
+            courts.add(copyOf(court));
+        }
+        return courts;
+    }
+
+    /// 希望日を差し替えたインスタンスを作る
+    ScanConfig withWishlist(WishlistIndex wishlist) {
+        return new ScanConfig(wishlist, jogaiDates, jogaiYear, reservedCourts);
+    }
+
+    /// 除外日を差し替えたインスタンスを作る
+    ScanConfig withJogaiDates(List<String> jogaiDates, int jogaiYear) {
+        return new ScanConfig(wishlist, jogaiDates, jogaiYear, reservedCourts);
+    }
+
+    /// 他の人の予約を差し替えたインスタンスを作る
+    ScanConfig withReservedCourts(List<TennisCourt> reservedCourts) {
+        return new ScanConfig(wishlist, jogaiDates, jogaiYear, reservedCourts);
+    }
+
+    private static TennisCourt copyOf(TennisCourt court) {
+        TennisCourt copy = new TennisCourt(court.getCourtName());
+        copy.setYmd(court.getYmd());
+        copy.setChokkinOk(court.isChokkinOk());
+        for (TimeSlot slot : court.getTimeSlotList()) {
+            TimeSlot slotCopy = new TimeSlot();
+            slotCopy.setTime(slot.getTime());
+            slotCopy.setTimeRange(slot.getTimeRange());
+            slotCopy.setAvailable(slot.isAvailable());
+            slotCopy.setUrl(slot.getUrl());
+            copy.addTimeSlot(slotCopy);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,272 @@
+package util;
+
+import log.LogWriter;
+import model.TennisCourt;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/// 探索の設定ファイル（希望日・除外日・他の人の予約）を1度だけ読み込み、更新されたら読み込み直して差し替えるクラス
+///
+/// 最初に current を呼んだ時に読み込み、以降は WatchService でファイルの更新を監視する。
+/// 更新を検知したら監視用のスレッドで読み込み直し、成功したファイルの分だけ新しい ScanConfig に差し替える。
+/// 形式が不正なファイルはログに出力して前回の内容を使い続けるため、探索中の処理には影響しない。
+/// 監視を開始できない環境では、current を呼ぶたびにファイルの更新日時とサイズを確認して読み込み直す。
+public class ScanConfigStore {
+    private final Path expectedPath;
+    private final Path jogaiPath;
+    private final Path reservedPath;
+    /// 保存直後の書き込み途中を読まないよう、更新の検知から読み込みまで待つ時間（ミリ秒）
+    private final long debounceMillis;
+    /// 現在の設定（最初の読み込み前はnull）
+    private final AtomicReference<ScanConfig> snapshot = new AtomicReference<>();
+    /// 希望日ファイルの直近の読み込みエラー（1度も読み込めていなければ current で例外にする）
+    private volatile String wishlistError;
+    /// ファイルごとの読み込み時点の更新日時とサイズ（監視できない場合の更新確認用）
+    private final Map<Path, String> stamps = new HashMap<>();
+    private WatchService watchService;
+    private Thread watcher;
+    /// 更新を監視できているか
+    private volatile boolean watching = false;
+    private volatile boolean closed = false;
+
+    public ScanConfigStore(String expectedPath, String jogaiPath, String reservedPath, long debounceMillis) {
+        this.expectedPath = Path.of(expectedPath).toAbsolutePath().normalize();
+        this.jogaiPath = Path.of(jogaiPath).toAbsolutePath().normalize();
+        this.reservedPath = Path.of(reservedPath).toAbsolutePath().normalize();
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * 現在の設定を取得する。
+     * 探索の開始時に1度取得し、探索中は同じインスタンスを使い続けること（途中で更新されても探索の判定が揃う）。
+     *
+     * @return 現在の設定
+     * @throws IOException 希望日ファイルを1度も読み込めていない場合
+     */
+    public ScanConfig current() throws IOException {
+        ScanConfig config = snapshot.get();
+        if (config == null) {
+            config = loadInitial();
+        } else if (!watching) {
+            reloadIfStale();
+        }
+        if (snapshot.get().getJogaiYear() != LocalDate.now().getYear()) {
+            // 4桁の除外日は年が変わったら補う年も変わる
+            reload(Set.of(jogaiPath));
+        }
+        config = snapshot.get();
+        if (config.getWishlist() == null) {
+            throw new IOException("希望日ファイルを読み込めません: " + wishlistError);
+        }
+        return config;
+    }
+
+    /// 監視を終了する
+    public synchronized void close() {
+        closed = true;
+        closeWatchService();
+    }
+
+    private void closeWatchService() {
+        watching = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LogWriter.write("[WARN] 設定ファイルの監視の終了に失敗: " + e.getMessage());
+            }
+        }
+    }
+
+    /// すべてのファイルを読み込み、更新の監視を開始する
+    private synchronized ScanConfig loadInitial() {
+        ScanConfig config = snapshot.get();
+        if (config != null) {
+            return config;
+        }
+        snapshot.set(new ScanConfig(null, List.of(), LocalDate.now().getYear(), List.of()));
+        reload(new LinkedHashSet<>(List.of(expectedPath, jogaiPath, reservedPath)));
+        startWatching();
+        return snapshot.get();
+    }
+
+    /// 指定したファイルを読み込み直し、読み込めた分を差し替える
+    private synchronized void reload(Set<Path> changed) {
+        if (changed.contains(expectedPath)) {
+            reloadWishlist();
+        }
+        if (changed.contains(jogaiPath)) {
+            reloadJogaiDates();
+        }
+        if (changed.contains(reservedPath)) {
+            reloadReservedCourts();
+        }
+    }
+
+    private void reloadWishlist() {
+        String stamp = stampOf(expectedPath);
+        try {
+            WishlistIndex wishlist = new WishlistIndex(IOUtil.loadExpectedYmdAndTimeRanges(expectedPath.toString()));
+            boolean reloaded = stamps.containsKey(expectedPath);
+            snapshot.set(snapshot.get().withWishlist(wishlist));
+            wishlistError = null;
+            if (reloaded) {
+                LogWriter.write("[INFO] 希望日ファイルを読み込み直しました（" + wishlist.getEntries().size() + "件）: " + expectedPath.getFileName());
+            }
+        } catch (IOException | RuntimeException e) {
+            wishlistError = e.getMessage();
+            LogWriter.write("[ERROR] 希望日ファイルの読み込みに失敗"
+                    + (snapshot.get().getWishlist() != null ? "したため前回の内容を使い続けます" : "しました")
+                    + ": " + expectedPath.getFileName() + " " + e.getMessage());
+        }
+        stamps.put(expectedPath, stamp);
+    }
+
+    private void reloadJogaiDates() {
+        String stamp = stampOf(jogaiPath);
+        int year = LocalDate.now().getYear();
+        try {
+            List<String> jogaiDates;
+            if (Files.exists(jogaiPath)) {
+                jogaiDates = IOUtil.readJogaiDates(jogaiPath.toString(), year);
+            } else {
+                LogWriter.write("[WARN] 除外日ファイルがないため除外日なしとします: " + jogaiPath.getFileName());
+                jogaiDates = List.of();
+            }
+            boolean reloaded = stamps.containsKey(jogaiPath);
+            snapshot.set(snapshot.get().withJogaiDates(jogaiDates, year));
+            if (reloaded) {
+                LogWriter.write("[INFO] 除外日ファイルを読み込み直しました（" + jogaiDates.size() + "件）: " + jogaiPath.getFileName());
+            }
+        } catch (IOException | RuntimeException e) {
+            LogWriter.write("[ERROR] 除外日ファイルの読み込みに失敗したため前回の内容を使い続けます: "
+                    + jogaiPath.getFileName() + " " + e.getMessage());
+        }
+        stamps.put(jogaiPath, stamp);
+    }
+
+    private void reloadReservedCourts() {
+        String stamp = stampOf(reservedPath);
+        try {
+            List<TennisCourt> reservedCourts;
+            if (Files.exists(reservedPath)) {
+                reservedCourts = IOUtil.readReservedCourtsFromCsv(reservedPath.toString());
+            } else {
+                LogWriter.write("[WARN] 他の人の予約ファイルがないため追加なしとします: " + reservedPath.getFileName());
+                reservedCourts = List.of();
+            }
+            boolean reloaded = stamps.containsKey(reservedPath);
+            snapshot.set(snapshot.get().withReservedCourts(reservedCourts));
+            if (reloaded) {
+                LogWriter.write("[INFO] 他の人の予約ファイルを読み込み直しました（" + reservedCourts.size() + "件）: " + reservedPath.getFileName());
+            }
+        } catch (IOException | RuntimeException e) {
+            LogWriter.write("[ERROR] 他の人の予約ファイルの読み込みに失敗したため前回の内容を使い続けます: "
+                    + reservedPath.getFileName() + " " + e.getMessage());
+        }
+        stamps.put(reservedPath, stamp);
+    }
+
+    /// 監視できない場合に、更新日時・サイズが変わったファイルを読み込み直す
+    private synchronized void reloadIfStale() {
+        Set<Path> changed = new HashSet<>();
+        for (Path path : List.of(expectedPath, jogaiPath, reservedPath)) {
+            if (!stampOf(path).equals(stamps.get(path))) {
+                changed.add(path);
+            }
+        }
+        if (!changed.isEmpty()) {
+            reload(changed);
+        }
+    }
+
+    /// ファイルの更新日時とサイズ（ファイルがなければ空文字）
+    private static String stampOf(Path path) {
+        try {
+            return Files.getLastModifiedTime(path) + "/" + Files.size(path);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /// ファイルのあるディレクトリの監視を開始する
+    private void startWatching() {
+        Map<WatchKey, Path> dirs = new HashMap<>();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path path : List.of(expectedPath, jogaiPath, reservedPath)) {
+                Path dir = path.getParent();
+                if (!dirs.containsValue(dir)) {
+                    dirs.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                }
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            LogWriter.write("[WARN] 設定ファイルの更新を監視できないため、取得のたびに更新を確認します: " + e.getMessage());
+            closeWatchService();
+            return;
+        }
+        watcher = new Thread(() -> watchLoop(dirs), "scan-config-watcher");
+        watcher.setDaemon(true);
+        watching = true;
+        watcher.start();
+    }
+
+    /// 更新を待ち、落ち着いたら変更されたファイルを読み込み直す
+    private void watchLoop(Map<WatchKey, Path> dirs) {
+        Set<Path> watched = Set.of(expectedPath, jogaiPath, reservedPath);
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new HashSet<>();
+                collectChanges(key, dirs, watched, changed);
+                // エディタの保存は複数のイベント（削除・作成・更新）になるため、続くイベントがなくなるまで待つ
+                while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    collectChanges(key, dirs, watched, changed);
+                }
+                if (!changed.isEmpty() && !closed) {
+                    reload(changed);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // close で終了
+        } catch (RuntimeException e) {
+            LogWriter.write("[ERROR] 設定ファイルの監視が停止したため、取得のたびに更新を確認します: " + e);
+        } finally {
+            watching = false;
+        }
+    }
+
+    private static void collectChanges(WatchKey key, Map<WatchKey, Path> dirs, Set<Path> watched, Set<Path> changed) {
+        Path dir = dirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 取りこぼしたイベントがあるため、すべて読み込み直す
+                changed.addAll(watched);
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (watched.contains(path)) {
+                changed.add(path);
+            }
+        }
+        key.reset();
+    }
+}
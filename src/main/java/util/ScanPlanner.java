@@ -0,0 +1,209 @@
+package util;
+
+import log.LogWriter;
+import model.ExpectedYmdTimeRange;
+import model.TennisCourt;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/// 希望日（expectedDate.csv）・除外日・当日日付から、探索する月と日付を最小限に絞り込むクラス
+///
+/// 希望日以外の日付は取得しても予約対象にならないため、月ページ・日付ページの取得を希望日に限定する。
+/// 予約済み数が maxCount に達した希望も探索しない。
+/// 日付はコートエリアの優先順位 → 日付の近さの順に並べ、月もその順に探索する。
+public class ScanPlanner {
+    private static final DateTimeFormatter YMD_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /// 探索する日付（yyyyMMdd、探索順）
+    private final List<String> plannedYmds;
+    /// 月（yyyyMM）ごとの探索する日（探索順に月を並べる）
+    private final Map<String, List<Integer>> daysByMonth;
+    /// 計画に残した希望（残りの予約希望数の追跡に使う）
+    private final List<ExpectedYmdTimeRange> plannedEntries;
+    /// 計画から外した希望日の件数（理由ごと）
+    private final Map<String, Integer> droppedCounts;
+
+    private ScanPlanner(List<String> plannedYmds, Map<String, List<Integer>> daysByMonth,
+                        List<ExpectedYmdTimeRange> plannedEntries, Map<String, Integer> droppedCounts) {
+        this.plannedYmds = plannedYmds;
+        this.plannedEntries = plannedEntries;
+        this.daysByMonth = daysByMonth;
+        this.droppedCounts = droppedCounts;
+    }
+
+    /**
+     * 希望日のリストから探索計画を作成する。
+     * 過去日・除外日・直前予約不可（直前OKでない2日以内）・予約希望数を満たした希望は探索しない。
+     *
+     * @param expectedList 希望日のリスト
+     * @param jogaiDates 除外日（yyyyMMdd）のリスト
+     * @param today 当日日付
+     * @param yykCourtList 予約済みコートのリスト
+     * @return 探索計画
+     */
+    public static ScanPlanner plan(List<ExpectedYmdTimeRange> expectedList, List<String> jogaiDates, LocalDate today,
+                                   List<TennisCourt> yykCourtList) {
+        // 日付ごとに、最も優先度の高い（値の小さい）コートエリアの優先順位を求める
+        Map<String, Integer> bestPriorityByYmd = new HashMap<>();
+        List<ExpectedYmdTimeRange> plannedEntries = new ArrayList<>();
+        Map<String, Integer> droppedCounts = new LinkedHashMap<>();
+        ReservedSlotCounter reserved = ReservedSlotCounter.of(yykCourtList);
+        for (ExpectedYmdTimeRange expected : expectedList) {
+            String ymd = expected.getYmd();
+            LocalDate date;
+            try {
+                date = LocalDate.parse(ymd, YMD_FORMAT);
+            } catch (DateTimeParseException | NullPointerException e) {
+                LogWriter.write("[WARN] 希望日の形式が不正なため探索対象外: ymd=" + ymd);
+                droppedCounts.merge("形式不正", 1, Integer::sum);
+                continue;
+            }
+            if (date.isBefore(today)) {
+                droppedCounts.merge("過去日", 1, Integer::sum);
+                continue;
+            }
+            if (jogaiDates.contains(ymd)) {
+                droppedCounts.merge("除外日", 1, Integer::sum);
+                continue;
+            }
+            if (!expected.isChokkinOk() && FilterUtill.isLessThanSpecifiedExtensionDate(today, date)) {
+                droppedCounts.merge("直前", 1, Integer::sum);
+                continue;
+            }
+            if (DemandTracker.remaining(expected, reserved) <= 0) {
+                droppedCounts.merge("充足", 1, Integer::sum);
+                continue;
+            }
+            plannedEntries.add(expected);
+            int priority = FilterUtill.resolveExpectedArea(expected.getCourtAreaName()).getPriority();
+            bestPriorityByYmd.merge(ymd, priority, Math::min);
+        }
+
+        List<String> plannedYmds = new ArrayList<>(bestPriorityByYmd.keySet());
+        plannedYmds.sort(Comparator.<String>comparingInt(bestPriorityByYmd::get).thenComparing(ymd -> ymd));
+
+        Map<String, List<Integer>> daysByMonth = new LinkedHashMap<>();
+        for (String ymd : plannedYmds) {
+            daysByMonth.computeIfAbsent(ymd.substring(0, 6), k -> new ArrayList<>())
+                    .add(Integer.parseInt(ymd.substring(6)));
+        }
+        return new ScanPlanner(plannedYmds, daysByMonth, plannedEntries, droppedCounts);
+    }
+
+    /**
+     * 1リクエストあたりの価値（取得の重み ÷ 取得に要するリクエスト数）に応じて、今回のサイクルで取得する日付を選ぶ
+     * （価値に比例した確率での非復元抽出）。価値の高い日付ほど選ばれやすく、低い日付も時々は選ばれる。
+     * 日付数の上限とリクエスト数の予算（新たに月ページが必要になる日付は月ページ分も含める）の両方に収まるまで選ぶ。
+     * 探索順は元の計画のまま。
+     *
+     * @param weightOf 日付（yyyyMMdd）ごとの取得の重み
+     * @param costOf 日付（yyyyMMdd）ごとの取得に要するリクエスト数
+     * @param monthCost 月ページ1件のリクエスト数
+     * @param dateBudget 1サイクルで取得する日付の上限（0以下なら上限なし）
+     * @param requestBudget 日付・月ページの取得に使えるリクエスト数（負なら上限なし）
+     * @param random 乱数
+     * @return 選んだ日付だけの探索計画（すべて収まるならこの計画そのもの）
+     */
+    public ScanPlanner selectWeighted(ToDoubleFunction<String> weightOf, ToIntFunction<String> costOf, int monthCost,
+                                      int dateBudget, int requestBudget, Random random) {
+        int totalCost = daysByMonth.size() * monthCost;
+        for (String ymd : plannedYmds) {
+            totalCost += costOf.applyAsInt(ymd);
+        }
+        boolean withinDates = dateBudget <= 0 || plannedYmds.size() <= dateBudget;
+        boolean withinRequests = requestBudget < 0 || totalCost <= requestBudget;
+        if (withinDates && withinRequests) {
+            return this;
+        }
+        // キー log(u)/v の大きい順に取ると、価値vに比例した確率で非復元抽出したことになる
+        Map<String, Double> keys = new HashMap<>();
+        for (String ymd : plannedYmds) {
+            double value = weightOf.applyAsDouble(ymd) / Math.max(1, costOf.applyAsInt(ymd));
+            keys.put(ymd, Math.log(1.0 - random.nextDouble()) / Math.max(value, 1e-9));
+        }
+        List<String> candidates = new ArrayList<>(plannedYmds);
+        candidates.sort(Comparator.comparingDouble((String ymd) -> keys.get(ymd)).reversed());
+        Set<String> selected = new HashSet<>();
+        Set<String> selectedMonths = new HashSet<>();
+        int spent = 0;
+        for (String ymd : candidates) {
+            if (dateBudget > 0 && selected.size() >= dateBudget) break;
+            int cost = costOf.applyAsInt(ymd) + (selectedMonths.contains(ymd.substring(0, 6)) ? 0 : monthCost);
+            if (requestBudget >= 0 && spent + cost > requestBudget) continue;
+            selected.add(ymd);
+            selectedMonths.add(ymd.substring(0, 6));
+            spent += cost;
+        }
+
+        List<String> selectedYmds = new ArrayList<>();
+        Map<String, List<Integer>> selectedDays = new LinkedHashMap<>();
+        for (String ymd : plannedYmds) {
+            if (!selected.contains(ymd)) continue;
+            selectedYmds.add(ymd);
+            selectedDays.computeIfAbsent(ymd.substring(0, 6), k -> new ArrayList<>()).add(Integer.parseInt(ymd.substring(6)));
+        }
+        List<ExpectedYmdTimeRange> selectedEntries = plannedEntries.stream()
+                .filter(e -> selected.contains(e.getYmd()))
+                .collect(Collectors.toList());
+        Map<String, Integer> dropped = new LinkedHashMap<>(droppedCounts);
+        dropped.put("今回見送り（日付）", plannedYmds.size() - selectedYmds.size());
+        return new ScanPlanner(selectedYmds, selectedDays, selectedEntries, dropped);
+    }
+
+    /// 探索する日付がないか
+    public boolean isEmpty() {
+        return plannedYmds.isEmpty();
+    }
+
+    /// 探索する日付（yyyyMMdd、探索順）
+    public List<String> getPlannedYmds() {
+        return plannedYmds;
+    }
+
+    /// 計画に残した希望（過去日・除外日・直前・充足の希望を除く）
+    public List<ExpectedYmdTimeRange> getPlannedEntries() {
+        return plannedEntries;
+    }
+
+    /// 指定の月（yyyyMM）に探索する日付があるか
+    public boolean coversMonth(String yyyymm) {
+        return daysByMonth.containsKey(yyyymm);
+    }
+
+    /// 指定の月（yyyyMM）で探索する日（探索しない月は空リスト）
+    public List<Integer> getDays(String yyyymm) {
+        return daysByMonth.getOrDefault(yyyymm, List.of());
+    }
+
+    /// 月（yyyyMM）の探索順（計画にない月は最後）
+    public int monthRank(String yyyymm) {
+        int rank = new ArrayList<>(daysByMonth.keySet()).indexOf(yyyymm);
+        return rank < 0 ? Integer.MAX_VALUE : rank;
+    }
+
+    /// 日付（yyyyMMdd）の探索順（計画にない日付は最後）
+    public int rankOf(String ymd) {
+        int rank = plannedYmds.indexOf(ymd);
+        return rank < 0 ? Integer.MAX_VALUE : rank;
+    }
+
+    /// 探索計画をログに出力する
+    public void report() {
+        LogWriter.write("[INFO] 探索計画: 月 " + daysByMonth.keySet() + " / 日付 " + plannedYmds.size() + "件 " + plannedYmds
+                + (droppedCounts.isEmpty() ? "" : " / 対象外 " + droppedCounts));
+    }
+}
@@ -160,7 +160,7 @@ public class TennisCourtCompareUtil {
     }
 
     /// コート名からエリア名だけを抽出する
-    private static String extractAreaName(String courtName) {
+    static String extractAreaName(String courtName) {
         if (courtName.contains("茅ヶ崎公園")) {
             return "茅ヶ崎公園";
         } else if (courtName.contains("芹沢スポーツ広場")) {
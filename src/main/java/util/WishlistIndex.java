@@ -0,0 +1,93 @@
+package util;
+
+import log.LogWriter;
+import model.CourtAreaType;
+import model.ExpectedYmdTimeRange;
+import model.TimeRange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// 希望日（expectedDate.csv）を（日付・コートエリア・時間帯）で引ける形にした索引
+///
+/// 日付ページごとに全希望を走査する代わりに、空きのある枠から該当する希望を直接引く。
+/// 1日付あたりの照合はその日付のコート・枠の数に比例し、希望の件数にはよらない。
+public class WishlistIndex {
+    /// 索引に登録した希望（ファイル順の番号付き）
+    public static class Entry {
+        /// ファイル内の順番（照合結果をファイル順に並べるのに使う）
+        private final int order;
+        private final ExpectedYmdTimeRange expected;
+
+        private Entry(int order, ExpectedYmdTimeRange expected) {
+            this.order = order;
+            this.expected = expected;
+        }
+
+        public int getOrder() {
+            return order;
+        }
+
+        public ExpectedYmdTimeRange getExpected() {
+            return expected;
+        }
+    }
+
+    /// 読み込んだ希望（ファイル順）
+    private final List<ExpectedYmdTimeRange> entries;
+    /// 日付 → その日付の希望（ファイル順）
+    private final Map<String, List<ExpectedYmdTimeRange>> entriesByYmd = new HashMap<>();
+    /// 日付 → コートエリア → 時間帯 → 希望（ファイル順）
+    private final Map<String, Map<CourtAreaType, Map<TimeRange, List<Entry>>>> index = new HashMap<>();
+
+    public WishlistIndex(List<ExpectedYmdTimeRange> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        for (int i = 0; i < entries.size(); i++) {
+            ExpectedYmdTimeRange expected = entries.get(i);
+            String ymd = expected.getYmd();
+            if (ymd != null) {
+                entriesByYmd.computeIfAbsent(ymd, k -> new ArrayList<>()).add(expected);
+            }
+            // コート名キーワード・希望日がなければ照合しない
+            if (expected.getCourtAreaName() == null || expected.getCourtAreaName().isBlank()) {
+                LogWriter.write("[除外理由] コート名キーワード未指定のため抽出処理をスキップ");
+                continue;
+            }
+            if (ymd == null || ymd.isBlank()) {
+                LogWriter.write("[除外理由] 希望日(ymd)未指定のため抽出処理をスキップ");
+                continue;
+            }
+            if (expected.getTimeRange() == null) {
+                // 時間帯が一致する枠はない
+                continue;
+            }
+            CourtAreaType area = FilterUtill.resolveExpectedArea(expected.getCourtAreaName());
+            index.computeIfAbsent(ymd, k -> new EnumMap<>(CourtAreaType.class))
+                    .computeIfAbsent(area, k -> new EnumMap<>(TimeRange.class))
+                    .computeIfAbsent(expected.getTimeRange(), k -> new ArrayList<>())
+                    .add(new Entry(i, expected));
+        }
+        // 作成後は変更しない（ScanConfig として複数のスレッドから参照する）
+        entriesByYmd.replaceAll((ymd, list) -> Collections.unmodifiableList(list));
+    }
+
+    /// 読み込んだ希望（ファイル順）
+    public List<ExpectedYmdTimeRange> getEntries() {
+        return entries;
+    }
+
+    /// 指定した日付の希望（ファイル順）
+    public List<ExpectedYmdTimeRange> entriesFor(String ymd) {
+        return entriesByYmd.getOrDefault(ymd, List.of());
+    }
+
+    /// 指定した日付・コートエリアの希望（時間帯ごと。なければnull）
+    public Map<TimeRange, List<Entry>> lookup(String ymd, CourtAreaType area) {
+        Map<CourtAreaType, Map<TimeRange, List<Entry>>> byArea = index.get(ymd);
+        return byArea == null ? null : byArea.get(area);
+    }
+}
@@ -0,0 +1,66 @@
+package connection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// AdaptiveRateLimiter の基準遅延と混雑判定を確かめるテスト
+class AdaptiveRateLimiterTest {
+    private static final long MS = 1_000_000L;
+
+    private static AdaptiveRateLimiter limiter(int baselineWindow) {
+        return new AdaptiveRateLimiter(100, 100, 1, 4, 8, 3.0, baselineWindow);
+    }
+
+    @Test
+    void baselineIsKeptPerRequestClass() {
+        AdaptiveRateLimiter limiter = limiter(8);
+        limiter.recordOutcome(RequestClass.NAVIGATION, 10 * MS, 200, false);
+        limiter.recordOutcome(RequestClass.SCAN, 100 * MS, 200, false);
+        assertEquals(10 * MS, limiter.getBaselineLatencyNanos(RequestClass.NAVIGATION));
+        assertEquals(100 * MS, limiter.getBaselineLatencyNanos(RequestClass.SCAN));
+        // 速い画面遷移があっても、日付ページの通常の応答時間は混雑とみなさない
+        limiter.recordOutcome(RequestClass.SCAN, 120 * MS, 200, false);
+        assertTrue(limiter.getConcurrencyLimit() >= 4);
+    }
+
+    @Test
+    void headAnd304AreNotUsed() {
+        AdaptiveRateLimiter limiter = limiter(8);
+        limiter.recordOutcome(null, 1 * MS, 200, false);
+        limiter.recordOutcome(RequestClass.SCAN, 2 * MS, 304, false);
+        assertEquals(0, limiter.getBaselineLatencyNanos(RequestClass.SCAN));
+        limiter.recordOutcome(RequestClass.SCAN, 100 * MS, 200, false);
+        limiter.recordOutcome(RequestClass.SCAN, 200 * MS, 200, false);
+        assertEquals(100 * MS, limiter.getBaselineLatencyNanos(RequestClass.SCAN));
+        assertTrue(limiter.getConcurrencyLimit() >= 4);
+    }
+
+    @Test
+    void failuresAreNotUsedForBaseline() {
+        AdaptiveRateLimiter limiter = limiter(8);
+        limiter.recordOutcome(RequestClass.SCAN, 1 * MS, 0, false);
+        limiter.recordOutcome(RequestClass.SCAN, 1 * MS, 200, true);
+        assertEquals(0, limiter.getBaselineLatencyNanos(RequestClass.SCAN));
+    }
+
+    @Test
+    void oldFastSamplesLeaveTheWindow() {
+        AdaptiveRateLimiter limiter = limiter(4);
+        limiter.recordOutcome(RequestClass.SCAN, 10 * MS, 200, false);
+        for (int i = 0; i < 4; i++) {
+            limiter.recordOutcome(RequestClass.SCAN, 25 * MS, 200, false);
+        }
+        assertEquals(25 * MS, limiter.getBaselineLatencyNanos(RequestClass.SCAN));
+    }
+
+    @Test
+    void slowResponseHalvesConcurrency() {
+        AdaptiveRateLimiter limiter = limiter(8);
+        limiter.recordOutcome(RequestClass.SCAN, 100 * MS, 200, false);
+        int before = limiter.getConcurrencyLimit();
+        limiter.recordOutcome(RequestClass.SCAN, 400 * MS, 200, false);
+        assertEquals(before / 2, limiter.getConcurrencyLimit());
+    }
+}
@@ -0,0 +1,149 @@
+package connection;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// AsyncRetry の重複リクエストと再試行を確かめるテスト
+class AsyncRetryTest {
+    private static final long HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    /// 送信したリクエスト（テスト側で完了させる）
+    private final List<CompletableFuture<String>> sent = new CopyOnWriteArrayList<>();
+    private final Supplier<CompletableFuture<String>> attempt = () -> {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        sent.add(future);
+        return future;
+    };
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private AsyncRetry retry(long hedgeDelayNanos) {
+        return new AsyncRetry(() -> scheduler, requestClass -> hedgeDelayNanos);
+    }
+
+    /// 送信数が count 以上になるまで待つ
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(sent.size() >= count, "sent " + sent.size());
+    }
+
+    @Test
+    void hedgeWinsAndPrimaryIsCancelled() throws Exception {
+        AsyncRetry retry = retry(HEDGE_DELAY_NANOS);
+        CompletableFuture<String> result = retry.withRetry("u", RequestClass.SCAN, attempt);
+        awaitSent(2);
+        sent.get(1).complete("hedge");
+        assertEquals("hedge", result.get(5, TimeUnit.SECONDS));
+        assertTrue(sent.get(0).isCancelled());
+        assertEquals(1, retry.getHedgeCount());
+        assertEquals(1, retry.getHedgeWinCount());
+    }
+
+    @Test
+    void primaryWinsAndHedgeIsCancelled() throws Exception {
+        AsyncRetry retry = retry(HEDGE_DELAY_NANOS);
+        CompletableFuture<String> result = retry.withRetry("u", RequestClass.SCAN, attempt);
+        awaitSent(2);
+        sent.get(0).complete("primary");
+        assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+        assertTrue(sent.get(1).isCancelled());
+        assertEquals(0, retry.getHedgeWinCount());
+    }
+
+    @Test
+    void fastResponseSendsNoHedge() throws Exception {
+        AsyncRetry retry = retry(TimeUnit.SECONDS.toNanos(1));
+        CompletableFuture<String> result = retry.withRetry("u", RequestClass.SCAN, attempt);
+        awaitSent(1);
+        sent.get(0).complete("primary");
+        assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+        Thread.sleep(1200);
+        assertEquals(1, sent.size());
+        assertEquals(0, retry.getHedgeCount());
+    }
+
+    @Test
+    void classWithoutHedgingSendsOnce() throws Exception {
+        AsyncRetry retry = retry(HEDGE_DELAY_NANOS);
+        CompletableFuture<String> result = retry.withRetry("u", RequestClass.NAVIGATION, attempt);
+        Thread.sleep(100);
+        assertEquals(1, sent.size());
+        sent.get(0).complete("ok");
+        assertEquals("ok", result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failedAttemptIsRetried() throws Exception {
+        AsyncRetry retry = retry(0);
+        CompletableFuture<String> result = retry.withRetry("u", RequestClass.SCAN, attempt);
+        awaitSent(1);
+        sent.get(0).completeExceptionally(new IOException("reset"));
+        awaitSent(2);
+        sent.get(1).complete("second");
+        assertEquals("second", result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, retry.getRetryCount());
+    }
+
+    @Test
+    void hedgedAttemptFailsOnlyWhenBothFail() throws Exception {
+        AsyncRetry retry = retry(HEDGE_DELAY_NANOS);
+        CompletableFuture<String> result = retry.withRetry("u", RequestClass.SCAN, attempt);
+        awaitSent(2);
+        sent.get(0).completeExceptionally(new IOException("primary"));
+        Thread.sleep(50);
+        assertEquals(0, retry.getRetryCount());
+        sent.get(1).completeExceptionally(new IOException("hedge"));
+        // 次の試行が送られる
+        awaitSent(3);
+        assertEquals(1, retry.getRetryCount());
+        sent.get(2).complete("third");
+        assertEquals("third", result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        AsyncRetry retry = retry(0);
+        CompletableFuture<String> result = retry.withRetry("u", RequestClass.SCAN, attempt);
+        for (int i = 0; i < RequestClass.SCAN.getMaxAttempts(); i++) {
+            awaitSent(i + 1);
+            sent.get(i).completeExceptionally(new IOException("fail " + i));
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals(RequestClass.SCAN.getMaxAttempts(), sent.size());
+    }
+
+    @Test
+    void siteUnavailableIsNotRetried() throws Exception {
+        AsyncRetry retry = retry(0);
+        CompletableFuture<String> result = retry.withRetry("u", RequestClass.SCAN, attempt);
+        awaitSent(1);
+        sent.get(0).completeExceptionally(new SiteUnavailableException("open"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SiteUnavailableException.class, e.getCause());
+        Thread.sleep(300);
+        assertEquals(1, sent.size());
+    }
+}
@@ -0,0 +1,254 @@
+package connection;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// 復号前のバイト列の走査（BytePatternMatcher）が、復号した本文に対する判定（PageFacts.fromText）と一致することを確かめるテスト
+///
+/// 空行除去する場合（画面遷移）と受信したままの本文で判定する場合（POST）の両方を比べる。
+/// 紛らわしい並びは個別のテストで確かめ、部品を組み合わせた本文での比較は固定の種で少数だけ行う。
+class BytePatternMatcherTest {
+    private static final Charset SHIFT_JIS = Charset.forName("Shift_JIS");
+    private static final Charset[] CHARSETS = {
+            StandardCharsets.UTF_8, SHIFT_JIS, Charset.forName("windows-31j"), StandardCharsets.ISO_8859_1};
+    /// 本文の部品（目印・その一部・2バイト文字・空白・改行）
+    private static final String[] PIECES = {
+            "g_sessionid=", "ABC123", "\"", "&", "   ・dspErr()", "・dspErr()", "  ・無効なパラメータを受信しました",
+            "タイムアウトしました", "メンテナンス中", "システムメンテナンス", "サービスを停止", "<iframe", "<IFRAME", "<IfRaMe",
+            "form_nm", "FORM_NM", " ", "  ", "\t", "\n", "\r\n", "x", "あ", "ア", "表", "ソ", "・", "g_", "sessionid=", "é", "ｱ",
+            "dspErr()", "無効な", "=", "<", "i", "frame", "Ｇ", "ｇ", "<form", "<FORM", "link-table", "LINK-TABLE"};
+
+    @Test
+    void randomBodiesMatchDecodedText() throws IOException {
+        Random r = new Random(20250601L);
+        int cases = 500;
+        int scanned = 0;
+        for (int i = 0; i < cases; i++) {
+            StringBuilder sb = new StringBuilder();
+            int pieces = r.nextInt(30);
+            for (int j = 0; j < pieces; j++) {
+                sb.append(PIECES[r.nextInt(PIECES.length)]);
+            }
+            Charset charset = CHARSETS[r.nextInt(CHARSETS.length)];
+            byte[] bytes = sb.toString().getBytes(charset);
+            if (r.nextInt(5) == 0 && bytes.length > 0) {
+                // 壊れたバイト並び
+                bytes[r.nextInt(bytes.length)] = (byte) r.nextInt(256);
+            }
+            boolean oneByteReads = r.nextBoolean();
+            for (boolean stripLines : new boolean[]{true, false}) {
+                if (assertSameFacts(bytes, charset, stripLines, oneByteReads)) {
+                    scanned++;
+                }
+            }
+        }
+        // 走査結果を出さない（復号して判定する）ケースばかりでは比べたことにならない
+        assertTrue(scanned > cases, "走査結果を出した件数が少なすぎます: " + scanned + "/" + cases * 2);
+    }
+
+    @Test
+    void gzipBodyIsScannedAfterInflating() throws IOException {
+        byte[] body = "<html>\n  <IFRAME src=\"x\">\n g_sessionid=XYZ&a=1\n</html>".getBytes(SHIFT_JIS);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(body);
+        }
+        ResponseBodyDecoder.Scanned scanned = ResponseBodyDecoder.scan(new ByteArrayInputStream(gzipped.toByteArray()),
+                "text/html; charset=Shift_JIS", "gzip", StandardCharsets.UTF_8, true);
+        PageFacts facts = scanned.getFacts();
+        assertNotNull(facts);
+        assertTrue(facts.has(PageMarker.IFRAME));
+        assertEquals("XYZ", facts.getSessionId());
+        assertEquals(ResponseBodyDecoder.decode(new ByteArrayInputStream(gzipped.toByteArray()),
+                "text/html; charset=Shift_JIS", "gzip", StandardCharsets.UTF_8), scanned.decode());
+    }
+
+    @Test
+    void shiftJisTrailByteDoesNotStartMarker() throws IOException {
+        // 2バイト目が 'g'・'f' の文字の直後に目印の残りを続けると、バイト列上だけ目印が現れる
+        for (char trail : new char[]{'g', 'f', 'G', 'F'}) {
+            String lead = shiftJisCharEndingWith((byte) trail);
+            String text = "<p>" + lead + (Character.toLowerCase(trail) == 'g' ? "_sessionid=ABC\"" : "orm_nm") + "</p>";
+            for (boolean stripLines : new boolean[]{true, false}) {
+                PageFacts facts = scan(text.getBytes(SHIFT_JIS), SHIFT_JIS, stripLines);
+                assertNotNull(facts, text);
+                assertFalse(facts.has(PageMarker.SESSION_ID), text);
+                assertFalse(facts.has(PageMarker.FORM_NM), text);
+                assertFalse(facts.isSessionIdResolved(), text);
+            }
+        }
+    }
+
+    @Test
+    void shiftJisMarkerAfterTwoByteCharIsFound() throws IOException {
+        // 2バイト目がASCIIと重なる文字（ソ・表は 0x5C）の直後から始まる目印は一致する
+        for (String prefix : new String[]{"ソ", "表", "ｱ", shiftJisCharEndingWith((byte) 'g')}) {
+            String text = prefix + "g_sessionid=S1&" + prefix + "form_nm" + prefix + "タイムアウトしました";
+            for (boolean stripLines : new boolean[]{true, false}) {
+                PageFacts facts = scan(text.getBytes(SHIFT_JIS), SHIFT_JIS, stripLines);
+                assertNotNull(facts, text);
+                assertTrue(facts.has(PageMarker.SESSION_ID), text);
+                assertTrue(facts.has(PageMarker.FORM_NM), text);
+                assertTrue(facts.has(PageMarker.TIMEOUT), text);
+                assertEquals("S1", facts.getSessionId(), text);
+                assertEquals(ResponseClass.SESSION_EXPIRED, facts.getResponseClass(), text);
+            }
+        }
+    }
+
+    @Test
+    void invalidShiftJisIsLeftToDecoding() throws IOException {
+        byte[][] invalid = {
+                {'a', (byte) 0x82},                 // 2バイト文字の1バイト目で終わる
+                {(byte) 0x82, '\n', 'b'},           // 2バイト目として不正
+                {(byte) 0x81, (byte) 0x7F, 'c'}};   // 2バイト目として不正
+        for (byte[] bytes : invalid) {
+            for (boolean stripLines : new boolean[]{true, false}) {
+                assertNull(scan(bytes, SHIFT_JIS, stripLines));
+            }
+        }
+    }
+
+    @Test
+    void leadingSpaceMarkerAtLineStartIsStrippedWithLines() throws IOException {
+        for (Charset charset : CHARSETS) {
+            for (String text : new String[]{"   ・dspErr()", "<script>\n   ・dspErr()\n</script>", "\t   ・dspErr()",
+                    "  ・無効なパラメータを受信しました\n"}) {
+                if (!charset.newEncoder().canEncode(text)) {
+                    continue;
+                }
+                byte[] bytes = text.getBytes(charset);
+                // 空行除去すると行頭の空白が消えるため一致しない
+                PageFacts stripped = scan(bytes, charset, true);
+                assertFalse(stripped.isErrorPage(), text + " " + charset);
+                // 受信したままの本文では一致する
+                PageFacts raw = scan(bytes, charset, false);
+                assertTrue(raw.isErrorPage(), text + " " + charset);
+                assertSameFacts(bytes, charset, true, false);
+                assertSameFacts(bytes, charset, false, false);
+            }
+        }
+    }
+
+    @Test
+    void leadingSpaceMarkerMidLineIsFound() throws IOException {
+        for (Charset charset : CHARSETS) {
+            for (String text : new String[]{"x   ・dspErr()", "<script>   ・dspErr()</script>", " ;\t   ・dspErr()",
+                    "エラー  ・無効なパラメータを受信しました"}) {
+                if (!charset.newEncoder().canEncode(text)) {
+                    continue;
+                }
+                byte[] bytes = text.getBytes(charset);
+                for (boolean stripLines : new boolean[]{true, false}) {
+                    PageFacts facts = scan(bytes, charset, stripLines);
+                    assertTrue(facts.isErrorPage(), text + " " + charset);
+                    assertSameFacts(bytes, charset, stripLines, true);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sessionIdIsCapturedAcrossReads() throws IOException {
+        String text = "<a href=\"/cultos/reserve/gin_menu?g_sessionid=  Ab12Cd34 &u=1\">\n<input value=\"g_sessionid=x\">";
+        for (Charset charset : CHARSETS) {
+            PageFacts facts = ResponseBodyDecoder.scan(new OneByteInputStream(text.getBytes(charset)), null, null, charset, true).getFacts();
+            assertNotNull(facts);
+            assertTrue(facts.isSessionIdResolved());
+            assertEquals("Ab12Cd34", facts.getSessionId());
+        }
+        // 値が改行をまたぐ・空の場合は文字列からの取り出しに任せる
+        for (String unresolved : new String[]{"g_sessionid=AB\nCD\"", "g_sessionid=\"", "g_sessionid=g_sessionid=A\""}) {
+            PageFacts facts = scan(unresolved.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, true);
+            assertNotNull(facts);
+            assertTrue(facts.has(PageMarker.SESSION_ID));
+            assertFalse(facts.isSessionIdResolved(), unresolved);
+        }
+    }
+
+    @Test
+    void emptyBodyIsTransient() throws IOException {
+        for (boolean stripLines : new boolean[]{true, false}) {
+            PageFacts facts = scan(new byte[0], SHIFT_JIS, stripLines);
+            assertTrue(facts.isEmpty());
+            assertEquals(ResponseClass.TRANSIENT, facts.getResponseClass());
+        }
+    }
+
+    private static PageFacts scan(byte[] bytes, Charset charset, boolean stripLines) throws IOException {
+        return ResponseBodyDecoder.scan(new ByteArrayInputStream(bytes), null, null, charset, stripLines).getFacts();
+    }
+
+    /**
+     * 走査結果と、復号した本文から作った判定を比べる。
+     *
+     * @return 走査結果を出したか（復号できないバイト並びで走査結果がnullならfalse）
+     */
+    private static boolean assertSameFacts(byte[] bytes, Charset charset, boolean stripLines, boolean oneByteReads) throws IOException {
+        InputStream in = oneByteReads ? new OneByteInputStream(bytes) : new ByteArrayInputStream(bytes);
+        ResponseBodyDecoder.Scanned scanned = ResponseBodyDecoder.scan(in, null, null, charset, stripLines);
+        String decoded = scanned.decode();
+        String context = charset + " stripLines=" + stripLines + " bytes=" + Arrays.toString(bytes)
+                + "\n" + decoded;
+        if (stripLines) {
+            assertEquals(ResponseBodyDecoder.decode(new ByteArrayInputStream(bytes), null, null, charset), decoded, context);
+        }
+        PageFacts facts = scanned.getFacts();
+        if (facts == null) {
+            return false;
+        }
+        if (!stripLines) {
+            assertEquals(new String(bytes, charset), decoded, context);
+        }
+        PageFacts expected = PageFacts.fromText(decoded);
+        for (PageMarker marker : PageMarker.values()) {
+            assertEquals(expected.has(marker), facts.has(marker), () -> marker + " " + context);
+        }
+        assertEquals(expected.isEmpty(), facts.isEmpty(), context);
+        assertEquals(expected.getResponseClass(), facts.getResponseClass(), context);
+        if (facts.isSessionIdResolved()) {
+            // ConnectionUtil.extractGSessionId(String) と同じ取り出し方
+            assertEquals(decoded.split("g_sessionid=")[1].split("[\"&]")[0].trim(), facts.getSessionId(), context);
+        }
+        return true;
+    }
+
+    /// 2バイト目が指定のバイトになるShift_JISの文字
+    private static String shiftJisCharEndingWith(byte trail) {
+        for (int lead = 0x81; lead <= 0x9F; lead++) {
+            byte[] pair = {(byte) lead, trail};
+            String decoded = new String(pair, SHIFT_JIS);
+            if (decoded.length() == 1 && decoded.charAt(0) != '\uFFFD' && Arrays.equals(decoded.getBytes(SHIFT_JIS), pair)) {
+                return decoded;
+            }
+        }
+        throw new IllegalStateException("2バイト目が " + trail + " の文字がありません");
+    }
+
+    /// 1バイトずつ返す（走査の途中状態が読み込みの区切りをまたいでも変わらないことの確認用）
+    private static final class OneByteInputStream extends ByteArrayInputStream {
+        OneByteInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package connection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// ResponseClass.classify の分類を確かめるテスト
+class ResponseClassTest {
+    /// メンテナンス専用の画面
+    private static final String MAINTENANCE_PAGE = "<html><body><h1>ただいまシステムメンテナンス中です</h1><p>終了までお待ちください</p></body></html>";
+    /// お知らせのバナーがあるトップページ
+    private static final String TOP_PAGE_WITH_NOTICE = "<html><body><div class=\"info\">システムメンテナンスのお知らせ</div>"
+            + "<form name=\"login\" action=\"/login\"><input type=\"submit\"></form><iframe src=\"/menu\"></iframe></body></html>";
+    /// コート表の下にメンテナンス予定が書かれたページ
+    private static final String COURT_PAGE_WITH_NOTICE = "<html><body><table class=\"link-table\"><tr><td>○</td></tr></table>"
+            + "<p>11月3日はメンテナンス中のため利用できません</p></body></html>";
+    private static final String COURT_PAGE = "<html><body><table class=\"link-table\"><tr><td>○</td></tr></table></body></html>";
+
+    @Test
+    void maintenanceIsConfirmedBy503OrDedicatedPage() {
+        assertEquals(ResponseClass.MAINTENANCE, ResponseClass.classify(503, MAINTENANCE_PAGE));
+        assertEquals(ResponseClass.MAINTENANCE, ResponseClass.classify(503, TOP_PAGE_WITH_NOTICE));
+        assertEquals(ResponseClass.MAINTENANCE, ResponseClass.classify(200, MAINTENANCE_PAGE));
+        assertEquals(ResponseClass.MAINTENANCE, ResponseClass.classify(200, "<p>サービスを停止しています</p>"));
+        assertTrue(ResponseClass.MAINTENANCE.isConfirmedOutage());
+    }
+
+    @Test
+    void noticeOnNormalPageIsNotConfirmedOutage() {
+        assertEquals(ResponseClass.MAINTENANCE_NOTICE, ResponseClass.classify(200, TOP_PAGE_WITH_NOTICE));
+        assertEquals(ResponseClass.MAINTENANCE_NOTICE, ResponseClass.classify(200, COURT_PAGE_WITH_NOTICE));
+        assertTrue(ResponseClass.MAINTENANCE_NOTICE.isSiteFailure());
+        assertFalse(ResponseClass.MAINTENANCE_NOTICE.isConfirmedOutage());
+    }
+
+    @Test
+    void errorPageTakesPrecedenceOverNotice() {
+        String expired = "<script>\n   ・dspErr()</script><form name=\"f\"></form>システムメンテナンスのお知らせ";
+        assertEquals(ResponseClass.SESSION_EXPIRED, ResponseClass.classify(200, expired));
+        String invalid = "<p>x  ・無効なパラメータを受信しました</p><form name=\"f\"></form>メンテナンス中";
+        assertEquals(ResponseClass.INVALID_PARAMETER, ResponseClass.classify(200, invalid));
+    }
+
+    @Test
+    void transportFailuresAreTransient() {
+        assertEquals(ResponseClass.TRANSIENT, ResponseClass.classify(0, (String) null));
+        assertEquals(ResponseClass.TRANSIENT, ResponseClass.classify(429, COURT_PAGE));
+        assertEquals(ResponseClass.TRANSIENT, ResponseClass.classify(500, COURT_PAGE));
+        assertEquals(ResponseClass.TRANSIENT, ResponseClass.classify(503, COURT_PAGE));
+        assertEquals(ResponseClass.TRANSIENT, ResponseClass.classify(200, ""));
+    }
+
+    @Test
+    void normalPagesAreOk() {
+        assertEquals(ResponseClass.OK, ResponseClass.classify(200, COURT_PAGE));
+        assertEquals(ResponseClass.OK, ResponseClass.classify(COURT_PAGE));
+        assertEquals(ResponseClass.MAINTENANCE, ResponseClass.classify(MAINTENANCE_PAGE));
+    }
+}
@@ -0,0 +1,118 @@
+package connection;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// SiteCircuitBreaker の状態遷移と保存を確かめるテスト
+class SiteCircuitBreakerTest {
+    private static final int THRESHOLD = 3;
+
+    @TempDir
+    Path dir;
+
+    private SiteCircuitBreaker breaker(Duration cooldown) {
+        return new SiteCircuitBreaker(dir.resolve("breaker.json").toString(), THRESHOLD, cooldown, Duration.ofHours(1));
+    }
+
+    @Test
+    void noticePagesOpenOnlyAtThreshold() {
+        SiteCircuitBreaker breaker = breaker(Duration.ofMinutes(5));
+        breaker.record(ResponseClass.MAINTENANCE_NOTICE);
+        breaker.record(ResponseClass.MAINTENANCE_NOTICE);
+        assertEquals(SiteCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.record(ResponseClass.MAINTENANCE_NOTICE);
+        assertEquals(SiteCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(ResponseClass.MAINTENANCE_NOTICE, breaker.getOpenReason());
+    }
+
+    @Test
+    void okResetsConsecutiveFailures() {
+        SiteCircuitBreaker breaker = breaker(Duration.ofMinutes(5));
+        breaker.record(ResponseClass.TRANSIENT);
+        breaker.record(ResponseClass.MAINTENANCE_NOTICE);
+        breaker.record(ResponseClass.OK);
+        breaker.record(ResponseClass.TRANSIENT);
+        breaker.record(ResponseClass.TRANSIENT);
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void invalidParameterIsNotCounted() {
+        SiteCircuitBreaker breaker = breaker(Duration.ofMinutes(5));
+        for (int i = 0; i < THRESHOLD * 2; i++) {
+            breaker.record(ResponseClass.INVALID_PARAMETER);
+        }
+        assertEquals(SiteCircuitBreaker.State.CLOSED, breaker.getState());
+        assertNull(breaker.getOpenReason());
+    }
+
+    @Test
+    void maintenanceOpensAtOnceAndIsPersisted() {
+        SiteCircuitBreaker breaker = breaker(Duration.ofMinutes(5));
+        breaker.record(ResponseClass.MAINTENANCE);
+        assertEquals(SiteCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        // 待機時間中は確認用のリクエストも送らない
+        assertFalse(breaker.tryStartProbe());
+
+        SiteCircuitBreaker restarted = breaker(Duration.ofMinutes(5));
+        assertEquals(SiteCircuitBreaker.State.OPEN, restarted.getState());
+        assertEquals(ResponseClass.MAINTENANCE, restarted.getOpenReason());
+        assertEquals(breaker.getOpenUntil().toEpochMilli(), restarted.getOpenUntil().toEpochMilli());
+    }
+
+    @Test
+    void sessionExpiredOpenIsNotPersisted() {
+        SiteCircuitBreaker breaker = breaker(Duration.ofMinutes(5));
+        for (int i = 0; i < THRESHOLD; i++) {
+            breaker.record(ResponseClass.SESSION_EXPIRED);
+        }
+        assertEquals(SiteCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(SiteCircuitBreaker.State.CLOSED, breaker(Duration.ofMinutes(5)).getState());
+    }
+
+    @Test
+    void successfulProbeCloses() {
+        SiteCircuitBreaker breaker = breaker(Duration.ZERO);
+        breaker.record(ResponseClass.MAINTENANCE);
+        assertTrue(breaker.tryStartProbe());
+        assertEquals(SiteCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 確認用のリクエストは同時に1件だけ
+        assertFalse(breaker.tryStartProbe());
+        assertFalse(breaker.allowRequest());
+        breaker.onProbeResult(ResponseClass.OK);
+        assertEquals(SiteCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(SiteCircuitBreaker.State.CLOSED, breaker(Duration.ZERO).getState());
+    }
+
+    @Test
+    void probeOnPageWithNoticeCloses() {
+        SiteCircuitBreaker breaker = breaker(Duration.ZERO);
+        breaker.record(ResponseClass.MAINTENANCE);
+        assertTrue(breaker.tryStartProbe());
+        breaker.onProbeResult(ResponseClass.MAINTENANCE_NOTICE);
+        assertEquals(SiteCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void failedProbeReopensWithLongerCooldown() {
+        Duration cooldown = Duration.ofMinutes(5);
+        SiteCircuitBreaker breaker = breaker(cooldown);
+        breaker.record(ResponseClass.MAINTENANCE);
+        // 確認用のリクエストが失敗した
+        breaker.onProbeResult(ResponseClass.TRANSIENT);
+        assertEquals(SiteCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(ResponseClass.TRANSIENT, breaker.getOpenReason());
+        Duration remaining = Duration.between(Instant.now(), breaker.getOpenUntil());
+        assertTrue(remaining.compareTo(cooldown.multipliedBy(2).minusSeconds(5)) > 0, remaining.toString());
+    }
+}
@@ -0,0 +1,85 @@
+package connection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// TennisUrlResolver の直接取得（学習済みURL・テンプレート）で、別の日付のページを使わないことを確かめるテスト
+class TennisUrlResolverTest {
+
+    @Test
+    void wrongDatePageFromTemplateDropsTemplate() {
+        TennisUrlResolver resolver = new TennisUrlResolver();
+        resolver.learn("20250601", "/cultos/reserve/gin_tennis?ymd=20250601&g_sessionid=OLD&k=1");
+        resolver.learn("20250602", "/cultos/reserve/gin_tennis?ymd=20250602&g_sessionid=OLD&k=1");
+        String url = resolver.resolve("20250603", "NEW");
+        assertEquals("/cultos/reserve/gin_tennis?ymd=20250603&g_sessionid=NEW&k=1", url);
+
+        // サーバー側のセッション状態で、別の日付（6/10）のページが返ってきた
+        String body = courtPage("20250610", "6月10日");
+        assertFalse(TennisUrlResolver.isPageFor(body, "20250603"));
+        resolver.invalidate("20250603");
+        // テンプレートを破棄して4段階の探索に戻る（学習済みの日付はそのまま使える）
+        assertNull(resolver.resolve("20250603", "NEW"));
+        assertNotNull(resolver.resolve("20250601", "NEW"));
+    }
+
+    @Test
+    void wrongDatePageFromStoredUrlDropsThatDate() {
+        TennisUrlResolver resolver = new TennisUrlResolver();
+        resolver.learn("20250601", "/cultos/reserve/gin_tennis?k=abc&g_sessionid=OLD");
+        assertNotNull(resolver.resolve("20250601", "NEW"));
+
+        assertFalse(TennisUrlResolver.isPageFor(courtPage("20250605", "6月5日"), "20250601"));
+        resolver.invalidate("20250601");
+        assertNull(resolver.resolve("20250601", "NEW"));
+    }
+
+    @Test
+    void pageForRequestedDateIsAccepted() {
+        assertTrue(TennisUrlResolver.isPageFor(courtPage("20250603", "6月3日"), "20250603"));
+    }
+
+    @Test
+    void linkWithAnotherDateInsideTableIsRejected() {
+        String body = "<table class=\"link-table\"><tr><td><a href=\"/r?ymd=20250603&amp;t=1\">○</a></td>"
+                + "<td><a href=\"/r?ymd=20250604&amp;t=2\">○</a></td></tr></table>";
+        assertFalse(TennisUrlResolver.isPageFor(body, "20250603"));
+    }
+
+    @Test
+    void linksOutsideTableAndOtherParametersAreIgnored() {
+        // 前日・翌日へのリンクや、表示月のパラメータは日付の判定に使わない
+        String body = "<a href=\"/day?ymd=20250602\">前日</a><a href=\"/day?ymd=20250604\">翌日</a>"
+                + "<a href=\"/month?uhyojiymd=20250701\">翌月</a>"
+                + "<table class=\"link-table\"><tr><td><a href=\"/r?ymd=20250603&amp;t=1\">○</a></td></tr></table>"
+                + "<a href=\"/day?ymd=20250605\">次へ</a>";
+        assertTrue(TennisUrlResolver.isPageFor(body, "20250603"));
+    }
+
+    @Test
+    void pageWithoutLinksIsCheckedByHeading() {
+        String full = "<h2>2025年6月3日(火)</h2><table class=\"link-table\"><tr><td>×</td></tr></table>";
+        assertTrue(TennisUrlResolver.isPageFor(full, "20250603"));
+        assertTrue(TennisUrlResolver.isPageFor(full.replace("6月3日", "06月03日"), "20250603"));
+        assertFalse(TennisUrlResolver.isPageFor(full.replace("6月3日", "6月13日"), "20250603"));
+        // "11月1日" の中の "1月1日" は一致とみなさない
+        assertFalse(TennisUrlResolver.isPageFor(full.replace("6月3日", "11月1日"), "20260101"));
+        // 日付を確かめられないページは使わない
+        assertFalse(TennisUrlResolver.isPageFor("<table class=\"link-table\"><tr><td>×</td></tr></table>", "20250603"));
+        assertFalse(TennisUrlResolver.isPageFor(null, "20250603"));
+    }
+
+    /// 見出しと空き枠のリンクを含むテニスiframe
+    private static String courtPage(String ymd, String heading) {
+        return "<html><body><h2>" + heading + "</h2><table class=\"link-table\">"
+                + "<tr><th>施設</th><th>9:00<br>～</th><th>11:00<br>～</th></tr>"
+                + "<tr><td>中央公園庭球場1コート</td>"
+                + "<td><a href=\"/cultos/reserve/gin_yoyaku?ymd=" + ymd + "&amp;court=1&amp;time=0\">○</a></td>"
+                + "<td>×</td></tr></table></body></html>";
+    }
+}
@@ -0,0 +1,75 @@
+package util;
+
+import model.ExpectedYmdTimeRange;
+import model.TennisCourt;
+import model.TimeRange;
+import model.TimeSlot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// DemandTracker の残り予約希望数が、希望の照合（getExpectedCourts）と同じ数え方になることを確かめるテスト
+class DemandTrackerTest {
+    private static final String YMD = "20250610";
+
+    private final DemandTracker tracker = new DemandTracker(new WishlistIndex(List.of(
+            new ExpectedYmdTimeRange(YMD, TimeRange.MORNING, "柳島スポーツ公園", 2, false),
+            new ExpectedYmdTimeRange(YMD, TimeRange.EVENING, "YANAGISHIMA_SPORTS_PARK", 1, false),
+            new ExpectedYmdTimeRange("20250702", TimeRange.MORNING, "茅ヶ崎公園", 1, false))));
+
+    @Test
+    void reservationsAreCountedPerFacilityAndTimeRange() {
+        // 同じ施設の別のコートの予約も数える（時間帯・日付が異なる予約は数えない）
+        ReservedSlotCounter reserved = ReservedSlotCounter.of(List.of(
+                court("柳島スポーツ公園庭球場1", YMD, TimeRange.MORNING),
+                court("柳島スポーツ公園庭球場3", YMD, TimeRange.MORNING),
+                court("柳島スポーツ公園庭球場3", "20250611", TimeRange.EVENING),
+                court("柳島しおさい公園庭球場", YMD, TimeRange.EVENING)));
+        assertEquals(2, tracker.totalDemand(reserved));
+        assertTrue(tracker.hasDemand(YMD, reserved));
+        assertTrue(tracker.hasDemandInMonth("202507", reserved));
+
+        reserved.add(court("柳島スポーツ公園庭球場2", YMD), slot(TimeRange.EVENING));
+        assertFalse(tracker.hasDemand(YMD, reserved));
+        assertFalse(tracker.hasDemandInMonth("202506", reserved));
+        assertTrue(tracker.hasDemandInMonth("202507", reserved));
+        assertFalse(tracker.hasDemand("20250611", reserved));
+    }
+
+    @Test
+    void remainingMatchesExpectedCourts() {
+        ExpectedYmdTimeRange expected = new ExpectedYmdTimeRange(YMD, TimeRange.MORNING, "柳島スポーツ公園", 3, false);
+        TennisCourt page = court("柳島スポーツ公園庭球場2", YMD, TimeRange.MORNING, TimeRange.MORNING, TimeRange.MORNING);
+        for (int reservedCount = 0; reservedCount <= 4; reservedCount++) {
+            ReservedSlotCounter reserved = new ReservedSlotCounter();
+            for (int i = 0; i < reservedCount; i++) {
+                reserved.add(court("柳島スポーツ公園庭球場" + (i + 1), YMD), slot(TimeRange.MORNING));
+            }
+            List<TennisCourt> matched = FilterUtill.getExpectedCourts(List.of(page), new WishlistIndex(List.of(expected)), reserved);
+            int matchedSlots = matched.isEmpty() ? 0 : matched.get(0).getTimeSlotList().size();
+            assertEquals(matchedSlots, DemandTracker.remaining(expected, reserved), "reserved=" + reservedCount);
+        }
+    }
+
+    private static TennisCourt court(String courtName, String ymd, TimeRange... timeRanges) {
+        TennisCourt court = new TennisCourt(courtName);
+        court.setYmd(ymd);
+        for (TimeRange timeRange : timeRanges) {
+            court.addTimeSlot(slot(timeRange));
+        }
+        return court;
+    }
+
+    private static TimeSlot slot(TimeRange timeRange) {
+        TimeSlot slot = new TimeSlot();
+        slot.setTime(timeRange.name());
+        slot.setTimeRange(timeRange);
+        slot.setAvailable(true);
+        slot.setUrl("/r");
+        return slot;
+    }
+}
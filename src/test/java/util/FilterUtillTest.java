@@ -0,0 +1,251 @@
+package util;
+
+import model.CourtAreaType;
+import model.ExpectedYmdTimeRange;
+import model.TennisCourt;
+import model.TimeRange;
+import model.TimeSlot;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// 索引を使った希望の照合（getExpectedCourts）を確かめるテスト
+///
+/// 予約済み枠数・直前の日付・同じコートの行の繰り返しを例で確かめ、
+/// 組み合わせは、希望1件ずつページ全体を照合して連結した結果と固定の種で少数だけ比べる。
+class FilterUtillTest {
+    private static final DateTimeFormatter YMD = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /// ページに現れるコート名（エリアの判定・施設名の抽出が異なるもの）
+    private static final String[] COURT_NAMES = {
+            "茅ヶ崎公園庭球場1", "茅ヶ崎公園庭球場2", "柳島スポーツ公園庭球場1", "柳島スポーツ公園庭球場3",
+            "柳島しおさい公園庭球場", "堤スポーツ広場庭球場A", "芹沢スポーツ広場庭球場", "市民テニスコート"};
+    /// 希望のコートエリア（キーワード・enum名・未指定・該当なし）
+    private static final String[] AREA_KEYWORDS = {
+            "茅ヶ崎公園", "柳島スポーツ公園", "YANAGISHIMA_SPORTS_PARK", "柳島しおさい公園", "堤スポーツ広場", "芹沢スポーツ広場",
+            "CHIGASAKI_PARK", "OTHER", "その他", "存在しない公園", "", " ", null};
+    private static final TimeRange[] TIME_RANGES = {
+            TimeRange.MORNING, TimeRange.LATE_MORNING, TimeRange.EARLY_AFTERNOON, TimeRange.EVENING, TimeRange.UNKNOWN, null};
+
+    @Test
+    void matchesPerEntryMatching() {
+        Random r = new Random(20250601L);
+        int cases = 300;
+        int matched = 0;
+        for (int i = 0; i < cases; i++) {
+            List<String> dates = dates(r);
+            String pageYmd = dates.get(r.nextInt(dates.size()));
+            List<TennisCourt> courtList = courtPage(r, pageYmd);
+            List<ExpectedYmdTimeRange> expectedList = wishlist(r, dates, pageYmd);
+            ReservedSlotCounter reserved = ReservedSlotCounter.of(reservations(r, dates));
+
+            List<TennisCourt> expected = new ArrayList<>();
+            for (ExpectedYmdTimeRange expectedData : expectedList) {
+                expected.addAll(perEntry(courtList, expectedData, reserved));
+            }
+            List<TennisCourt> actual = FilterUtill.getExpectedCourts(courtList, new WishlistIndex(expectedList), reserved);
+            assertEquals(describe(expected), describe(actual), "case " + i);
+            if (!expected.isEmpty()) {
+                matched++;
+            }
+        }
+        // 一致する枠のないケースばかりでは比べたことにならない
+        assertTrue(matched > cases / 4, "照合結果のあるケースが少なすぎます: " + matched + "/" + cases);
+    }
+
+    @Test
+    void maxCountLimitsSlotsAfterExistingReservations() {
+        String ymd = LocalDate.now().plusDays(10).format(YMD);
+        TennisCourt court = court("柳島スポーツ公園庭球場1", ymd, TimeRange.MORNING, TimeRange.MORNING, TimeRange.MORNING, TimeRange.EVENING);
+        // 施設が同じ別のコートの予約も同じ施設の予約として数える
+        TennisCourt reserved = court("柳島スポーツ公園庭球場3", ymd, TimeRange.MORNING);
+        for (int maxCount = -1; maxCount <= 4; maxCount++) {
+            List<ExpectedYmdTimeRange> expectedList = List.of(new ExpectedYmdTimeRange(ymd, TimeRange.MORNING, "柳島スポーツ公園", maxCount, false));
+            List<TennisCourt> actual = FilterUtill.getExpectedCourts(List.of(court), new WishlistIndex(expectedList),
+                    ReservedSlotCounter.of(List.of(reserved)));
+            int slots = actual.isEmpty() ? 0 : actual.get(0).getTimeSlotList().size();
+            assertEquals(Math.max(0, Math.min(3, maxCount - 1)), slots, "maxCount=" + maxCount);
+            assertEquals(describe(perEntry(List.of(court), expectedList.get(0), ReservedSlotCounter.of(List.of(reserved)))),
+                    describe(actual), "maxCount=" + maxCount);
+        }
+    }
+
+    @Test
+    void chokkinOkKeepsCourtsWithinTwoDays() {
+        for (int days = -1; days <= 4; days++) {
+            String ymd = LocalDate.now().plusDays(days).format(YMD);
+            TennisCourt court = court("茅ヶ崎公園庭球場1", ymd, TimeRange.EVENING);
+            for (boolean chokkinOk : new boolean[]{true, false}) {
+                List<ExpectedYmdTimeRange> expectedList = List.of(new ExpectedYmdTimeRange(ymd, TimeRange.EVENING, "茅ヶ崎公園", 1, chokkinOk));
+                List<TennisCourt> actual = FilterUtill.getExpectedCourts(List.of(court), new WishlistIndex(expectedList),
+                        ReservedSlotCounter.of(List.of()));
+                boolean tooClose = days >= 0 && days <= 2;
+                assertEquals(chokkinOk || !tooClose ? 1 : 0, actual.size(), "days=" + days + " chokkinOk=" + chokkinOk);
+            }
+        }
+    }
+
+    @Test
+    void duplicateCourtRowsAreMatchedPerRow() {
+        String ymd = LocalDate.now().plusDays(8).format(YMD);
+        // 同じコートの行がページ内で繰り返される（内容が同じ行・枠が異なる行）
+        List<TennisCourt> courtList = List.of(
+                court("堤スポーツ広場庭球場A", ymd, TimeRange.MORNING, TimeRange.LATE_MORNING),
+                court("堤スポーツ広場庭球場A", ymd, TimeRange.MORNING, TimeRange.LATE_MORNING),
+                court("堤スポーツ広場庭球場A", ymd, TimeRange.LATE_MORNING),
+                court("柳島しおさい公園庭球場", ymd, TimeRange.MORNING));
+        List<ExpectedYmdTimeRange> expectedList = List.of(
+                new ExpectedYmdTimeRange(ymd, TimeRange.LATE_MORNING, "堤スポーツ広場", 1, false),
+                new ExpectedYmdTimeRange(ymd, TimeRange.MORNING, "TSUTSUMI_SPORTS_PARK", 2, false),
+                new ExpectedYmdTimeRange(ymd, TimeRange.LATE_MORNING, "堤スポーツ広場", 1, false));
+        List<TennisCourt> expected = new ArrayList<>();
+        for (ExpectedYmdTimeRange expectedData : expectedList) {
+            expected.addAll(perEntry(courtList, expectedData, ReservedSlotCounter.of(List.of())));
+        }
+        List<TennisCourt> actual = FilterUtill.getExpectedCourts(courtList, new WishlistIndex(expectedList), ReservedSlotCounter.of(List.of()));
+        // 希望のファイル順 → ページ内の行の順（3 + 2 + 3 件）
+        assertEquals(8, actual.size());
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    /// 基準日付（直前の日付・先の日付・形式不正の日付）
+    private static List<String> dates(Random r) {
+        LocalDate today = LocalDate.now();
+        List<String> dates = new ArrayList<>();
+        int count = 1 + r.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            dates.add(r.nextInt(20) == 0 ? "2025061" : today.plusDays(r.nextInt(12) - 1).format(YMD));
+        }
+        return dates;
+    }
+
+    /// 1日付分のページ（同じコートの行の繰り返しを含む）
+    private static List<TennisCourt> courtPage(Random r, String ymd) {
+        List<TennisCourt> courtList = new ArrayList<>();
+        int rows = 1 + r.nextInt(8);
+        for (int i = 0; i < rows; i++) {
+            if (!courtList.isEmpty() && r.nextInt(4) == 0) {
+                // 前の行の繰り返し
+                TennisCourt previous = courtList.get(r.nextInt(courtList.size()));
+                TennisCourt copy = new TennisCourt(previous.getCourtName());
+                copy.setYmd(previous.getYmd());
+                for (TimeSlot slot : previous.getTimeSlotList()) {
+                    copy.addTimeSlot(slot(slot.getTimeRange(), slot.isAvailable(), slot.getUrl()));
+                }
+                courtList.add(copy);
+                continue;
+            }
+            TennisCourt court = new TennisCourt(COURT_NAMES[r.nextInt(r.nextBoolean() ? 4 : COURT_NAMES.length)]);
+            court.setYmd(r.nextInt(10) == 0 ? null : ymd);
+            int slots = r.nextInt(6);
+            for (int s = 0; s < slots; s++) {
+                TimeRange timeRange = TIME_RANGES[r.nextInt(r.nextBoolean() ? 2 : TIME_RANGES.length)];
+                court.addTimeSlot(slot(timeRange, r.nextInt(3) != 0, "/r?" + i + "_" + s));
+            }
+            courtList.add(court);
+        }
+        return courtList;
+    }
+
+    /// 希望（同じ日時・エリアの重複、maxCount 0以下、直前OKを含む。多くはページの日付・よくあるエリアにする）
+    private static List<ExpectedYmdTimeRange> wishlist(Random r, List<String> dates, String pageYmd) {
+        List<ExpectedYmdTimeRange> expectedList = new ArrayList<>();
+        int count = r.nextInt(8);
+        for (int i = 0; i < count; i++) {
+            String ymd;
+            if (r.nextInt(15) == 0) {
+                ymd = r.nextBoolean() ? null : "";
+            } else {
+                ymd = r.nextInt(4) != 0 ? pageYmd : dates.get(r.nextInt(dates.size()));
+            }
+            String keyword = r.nextInt(3) != 0 ? AREA_KEYWORDS[r.nextInt(3)] : AREA_KEYWORDS[r.nextInt(AREA_KEYWORDS.length)];
+            TimeRange timeRange = r.nextInt(3) != 0 ? TIME_RANGES[r.nextInt(2)] : TIME_RANGES[r.nextInt(TIME_RANGES.length)];
+            expectedList.add(new ExpectedYmdTimeRange(ymd, timeRange, keyword, r.nextInt(5) - 1, r.nextBoolean()));
+        }
+        return expectedList;
+    }
+
+    /// 予約済みコート（同じ施設の別のコート・複数枠を含む）
+    private static List<TennisCourt> reservations(Random r, List<String> dates) {
+        List<TennisCourt> yykCourtList = new ArrayList<>();
+        int count = r.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            TennisCourt yyk = new TennisCourt(COURT_NAMES[r.nextInt(COURT_NAMES.length)]);
+            yyk.setYmd(dates.get(r.nextInt(dates.size())));
+            int slots = 1 + r.nextInt(2);
+            for (int s = 0; s < slots; s++) {
+                yyk.addTimeSlot(slot(TIME_RANGES[r.nextInt(TIME_RANGES.length)], true, null));
+            }
+            yykCourtList.add(yyk);
+        }
+        return yykCourtList;
+    }
+
+    private static TennisCourt court(String courtName, String ymd, TimeRange... timeRanges) {
+        TennisCourt court = new TennisCourt(courtName);
+        court.setYmd(ymd);
+        for (TimeRange timeRange : timeRanges) {
+            court.addTimeSlot(slot(timeRange, true, "/r?" + court.getTimeSlotList().size()));
+        }
+        return court;
+    }
+
+    private static TimeSlot slot(TimeRange timeRange, boolean available, String url) {
+        TimeSlot slot = new TimeSlot();
+        slot.setTime(timeRange == null ? "" : timeRange.name());
+        slot.setTimeRange(timeRange);
+        slot.setAvailable(available);
+        slot.setUrl(url);
+        return slot;
+    }
+
+    /// 比較用にコートリストを文字列化する
+    private static String describe(List<TennisCourt> courtList) {
+        StringBuilder sb = new StringBuilder();
+        for (TennisCourt court : courtList) {
+            sb.append(court.getCourtName()).append('@').append(court.getYmd()).append(court.getTimeSlotList()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /// 希望1件分の照合結果（ページ全体を順に見て、空きのある一致する枠を残り枠数まで残す）
+    private static List<TennisCourt> perEntry(List<TennisCourt> courtList, ExpectedYmdTimeRange expectedData, ReservedSlotCounter reserved) {
+        List<TennisCourt> extractedCourtList = new ArrayList<>();
+        String ymd = expectedData.getYmd();
+        String keyword = expectedData.getCourtAreaName();
+        if (ymd == null || ymd.isBlank() || keyword == null || keyword.isBlank()) {
+            return extractedCourtList;
+        }
+        if (!expectedData.isChokkinOk() && ymd.length() == 8
+                && FilterUtill.isLessThanSpecifiedExtensionDate(LocalDate.now(), LocalDate.parse(ymd, YMD))) {
+            return extractedCourtList;
+        }
+        CourtAreaType expectedArea = FilterUtill.resolveExpectedArea(keyword);
+        for (TennisCourt court : courtList) {
+            if (!ymd.equals(court.getYmd()) || CourtAreaType.fromCourtName(court.getCourtName()) != expectedArea) {
+                continue;
+            }
+            int remain = expectedData.getMaxCount() - reserved.countOf(ymd, court.getCourtName(), expectedData.getTimeRange());
+            List<TimeSlot> slots = new ArrayList<>();
+            for (TimeSlot slot : court.getTimeSlotList()) {
+                if (slots.size() < remain && slot.isAvailable() && TimeRange.timeRangeMatches(slot.getTimeRange(), expectedData.getTimeRange())) {
+                    slots.add(slot);
+                }
+            }
+            if (!slots.isEmpty()) {
+                TennisCourt filteredCourt = new TennisCourt(court.getCourtName());
+                filteredCourt.setYmd(court.getYmd());
+                filteredCourt.setTimeSlotList(slots);
+                extractedCourtList.add(filteredCourt);
+            }
+        }
+        return extractedCourtList;
+    }
+}
@@ -0,0 +1,361 @@
+package util;
+
+import model.TennisCourt;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// HtmlTableTokenizer の読み取り結果がJsoupでの解析と一致することを確かめるテスト
+///
+/// 紛らわしい書き方ごとの例と、ランダムに組み立てたHTMLでの比較を行う。
+/// ランダムな比較はコート表・予約一覧それぞれについて、表の行・セル（th/td・テキスト・href）と解析後のコートリストの両方を比べる。
+/// 既定は少数の固定の種で行い、大量の比較（合わせて48万件）は "comparison" タグとして mvn -P comparison test で実行する。
+/// 不一致の場合は乱数の種とHTMLをメッセージに出すので、同じ種で再現できる。
+class HtmlTableTokenizerTest {
+    /// 既定のランダムな比較の件数（コート表・予約一覧それぞれ）
+    private static final int CASES = 300;
+    /// 大量の比較の件数（コート表・予約一覧それぞれ）
+    private static final int FULL_CASES = 240_000;
+    private static final long SEED = 20250601L;
+    private static final String YMD = "20250601";
+
+    private static final String[] TIMES = {"9:00", "11:00", "13:00", "15:00", "17:00", "19:00"};
+    private static final String[] COURT_NAMES = {"中央公園庭球場", "柳島スポーツ公園庭球場", "堤庭球場"};
+    /// 空白の書き方（nbspはまとめられる空白、全角空白は文字として扱われる）
+    private static final String[] SPACES = {"", "", " ", "\n", "  \n\t", "\r\n", "&nbsp;", "\u00A0", "\u3000", "&#x3000;"};
+    /// セルの中に入りうるインラインの書き方
+    private static final String[] INLINE = {
+            "", "<br>", "<br/>", "<span>", "</span>", "<b>", "</b>", "<font color=\"red\">", "</font>",
+            "<!-- x -->", "<!--<td>-->", "<img src=\"/img/a.gif\" alt=\"○\">", "<nobr>", "</nobr>", "&amp;", "&lt;", "&gt;",
+            "&#9675;", "&#x25CB;", "&quot;", "&copy;", "&times", "\u200B", "\u00AD", "<wbr>", "<script>var s='<td>';</script>",
+            "<style>td{}</style>"};
+    /// Jsoupへの切り替えになる書き方（まれに混ぜる）
+    private static final String[] FALLBACK = {
+            "<div>x</div>", "<p>x", "<table><tr><td>入れ子</td></tr></table>", "<pre>x</pre>", "<!-->", "<span class=\"a>",
+            "<textarea>x</textarea>", "<ul><li>x</ul>", "<a href=x\"y>", "<select><option>x</select>"};
+
+    @Test
+    void courtPagesMatchJsoup() {
+        compareCourtPages(CASES);
+    }
+
+    @Test
+    @Tag("comparison")
+    void manyCourtPagesMatchJsoup() {
+        compareCourtPages(FULL_CASES);
+    }
+
+    @Test
+    void reservedPagesMatchJsoup() {
+        compareReservedPages(CASES);
+    }
+
+    @Test
+    @Tag("comparison")
+    void manyReservedPagesMatchJsoup() {
+        compareReservedPages(FULL_CASES);
+    }
+
+    @Test
+    void omittedEndTagsCloseCellsAndRows() {
+        HtmlTableTokenizer.Table table = assertMatchesJsoup("<table class=\"link-table\"><tr><th>施設<th>9:00"
+                + "<tr><td>A<td><a href=\"/r?ymd=20250601\">○</a><tr><td>B</th><td>×</table>");
+        assertEquals("true\nth[施設](null) th[9:00](null) \ntd[A](null) td[○](/r?ymd=20250601) \ntd[B](null) td[×](null) \n",
+                describe(table));
+    }
+
+    @Test
+    void commentAndScriptInsideCellAreNotMarkup() {
+        HtmlTableTokenizer.Table table = assertMatchesJsoup("<table class=\"link-table\"><tr>"
+                + "<td>○<!-- <td>x</td> --></td><td><script>var s='<td>';</script>×</td></tr></table>");
+        assertEquals(2, table.getRows().get(0).size());
+    }
+
+    @Test
+    void tagsAndClassAreMatchedIgnoringCase() {
+        HtmlTableTokenizer.Table table = assertMatchesJsoup("<TABLE CLASS='x link-table' summary=\"空き\"><TR><TD>○</TD></TR></TABLE>");
+        assertTrue(table.isFound());
+        assertEquals("○", table.getRows().get(0).get(0).getText());
+    }
+
+    @Test
+    void firstMatchingTableIsRead() {
+        HtmlTableTokenizer.Table table = assertMatchesJsoup("<table class=\"other\"><tr><td>別の表</td></tr></table>"
+                + "<table class=\"link-table\"><tr><td>対象</td></tr></table>"
+                + "<table class=\"link-table\"><tr><td>後の表</td></tr></table>");
+        assertEquals("対象", table.getRows().get(0).get(0).getText());
+    }
+
+    @Test
+    void entitiesAndSpacesMatchJsoup() {
+        assertMatchesJsoup("<table class=\"link-table\"><tr><td>&times</td><td>&#9675;</td><td>&#x25CB;&amp;&lt;&gt;&quot;</td>"
+                + "<td>&nbsp;○&nbsp;</td><td>\u00A0○\u3000</td><td>&#x3000;○</td><td>\r\n ○\t</td>"
+                + "<td>○\u200B\u00AD</td><td>a < b</td></tr></table>");
+    }
+
+    @Test
+    void hrefIsTakenFromFirstLinkAttribute() {
+        HtmlTableTokenizer.Table table = assertMatchesJsoup("<table class=\"link-table\"><tr>"
+                + "<td><a href=\"/r?a=1&amp;b=&lt;2&gt;\" href=\"/ignored\">○</a></td>"
+                + "<td><A HREF='/r?ymd=20250601&time=2'>○</A></td><td><a href=\"  /y  \">○</a></td>"
+                + "<td><a name=\"x\">○</a></td><td><a href=/x?a=1>○</a></td></tr></table>");
+        assertEquals("/r?a=1&b=<2>", table.getRows().get(0).get(0).getHref());
+    }
+
+    @Test
+    void blockContentInCellFallsBackToJsoup() {
+        assertNull(HtmlTableTokenizer.readFirstTable("<table class=\"link-table\"><tr><td><p>x</td></tr></table>", "link-table"));
+        assertNull(HtmlTableTokenizer.readFirstTable("<table class=\"link-table\"><tr><td><div>x</div></td></tr></table>", "link-table"));
+    }
+
+    @Test
+    void tableInsideCommentOrScriptIsNotFound() {
+        String html = "<html><body><!-- <table class=\"link-table\"><tr><td>旧</td></tr></table> -->"
+                + "<script>document.write('<table class=\"link-table\">');</script></body></html>";
+        HtmlTableTokenizer.Table table = HtmlTableTokenizer.readFirstTable(html, "link-table");
+        assertNotNull(table);
+        assertFalse(table.isFound());
+        assertFalse(ParserUtil.parseLinkTableWithJsoup(html).isFound());
+    }
+
+    @Test
+    void nestedTableFallsBackToJsoup() {
+        String html = "<table class=\"link-table\"><tr><td><table><tr><td>x</td></tr></table></td></tr></table>";
+        assertNull(HtmlTableTokenizer.readFirstTable(html, "link-table"));
+    }
+
+    /// トークナイザで読み取れることと、Jsoupでの解析と一致することを確かめる
+    private static HtmlTableTokenizer.Table assertMatchesJsoup(String html) {
+        HtmlTableTokenizer.Table table = HtmlTableTokenizer.readFirstTable(html, "link-table");
+        assertNotNull(table, () -> "Jsoupへ切り替えられました\n" + html);
+        assertEquals(describe(ParserUtil.parseLinkTableWithJsoup(html)), describe(table), html);
+        return table;
+    }
+
+    private static void compareCourtPages(int cases) {
+        Random random = new Random(SEED);
+        int streamed = 0;
+        for (int i = 0; i < cases; i++) {
+            long seed = random.nextLong();
+            String html = courtPage(new Random(seed));
+            HtmlTableTokenizer.Table table = HtmlTableTokenizer.readFirstTable(html, "link-table");
+            if (table != null) {
+                streamed++;
+                assertSameTable(ParserUtil.parseLinkTableWithJsoup(html), table, seed, html);
+            }
+            assertSameCourts(html, seed, h -> ParserUtil.parseTennisCourtsFromHtml(h, YMD, false),
+                    h -> ParserUtil.parseTennisCourtsFromHtml(h, YMD, true));
+        }
+        // Jsoupへの切り替えばかりでは比べたことにならない
+        assertTrue(streamed > cases / 2, "トークナイザで読み取れた件数が少なすぎます: " + streamed + "/" + cases);
+    }
+
+    private static void compareReservedPages(int cases) {
+        Random random = new Random(SEED + 1);
+        int streamed = 0;
+        for (int i = 0; i < cases; i++) {
+            long seed = random.nextLong();
+            String html = reservedPage(new Random(seed));
+            HtmlTableTokenizer.Table table = HtmlTableTokenizer.readFirstTable(html, null);
+            if (table != null) {
+                streamed++;
+                assertSameTable(HtmlTableTokenizer.fromElement(Jsoup.parse(html).selectFirst("table")), table, seed, html);
+            }
+            assertSameCourts(html, seed, h -> ReservedCourtParser.parseReservedTennisCourtsFromHtml(h, false),
+                    h -> ReservedCourtParser.parseReservedTennisCourtsFromHtml(h, true));
+        }
+        assertTrue(streamed > cases / 2, "トークナイザで読み取れた件数が少なすぎます: " + streamed + "/" + cases);
+    }
+
+    /// コート表に近い形のHTML（見出し行の繰り返し・閉じタグの省略・コメント・文字参照などをランダムに含む）
+    private static String courtPage(Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(pick(random, "<!DOCTYPE html>\n", "", "<?xml version=\"1.0\"?>"))
+          .append("<html><head><title>施設空き状況</title>")
+          .append(pick(random, "", "<script>if (a < b) { x = '<table class=\"link-table\">'; }</script>",
+                  "<style>.link-table td { color: red; }</style>"))
+          .append("</head><body>\n")
+          .append(pick(random, "", "<!-- <table class=\"link-table\"><tr><td>旧</td></tr></table> -->",
+                  "<table class=\"other\"><tr><td>別の表</td></tr></table>", "<form><input type=\"hidden\" name=\"g_sessionid\" value=\"abc\"></form>"))
+          .append(pick(random, "<table class=\"link-table\">", "<TABLE CLASS='x link-table' summary=\"空き\">",
+                  "<table summary=\"空き\" class=link-table>", "<table\nclass=\"LINK-TABLE y\" >"));
+        boolean section = random.nextInt(4) == 0;
+        if (section) {
+            sb.append(pick(random, "<tbody>", "<thead>", "\n<tbody>\n"));
+        }
+        int blocks = 1 + random.nextInt(3);
+        int columns = 1 + random.nextInt(TIMES.length);
+        for (int block = 0; block < blocks; block++) {
+            sb.append(openRow(random)).append(pick(random, "<th>施設</th>", "<th> 施設 </th>", "<td>施設", "<th>施<!-- -->設"));
+            for (int t = 0; t < columns; t++) {
+                sb.append(random.nextBoolean() ? "<th>" : "<td>").append(TIMES[t])
+                  .append(pick(random, "<br>～", "<br>\n～", "&nbsp;～", "～", "<br>&#65374;"))
+                  .append(closeCell(random, "th"));
+            }
+            sb.append(closeRow(random));
+            int rows = random.nextInt(5);
+            for (int row = 0; row < rows; row++) {
+                sb.append(openRow(random)).append(random.nextInt(8) == 0 ? "<th>" : "<td class=\"name\">")
+                  .append(space(random)).append(COURT_NAMES[random.nextInt(COURT_NAMES.length)])
+                  .append(inline(random)).append(1 + random.nextInt(4)).append("コート").append(space(random))
+                  .append(closeCell(random, "td"));
+                int cells = columns + random.nextInt(3) - 1;
+                for (int c = 0; c < cells; c++) {
+                    sb.append("<td>").append(space(random)).append(slot(random)).append(space(random)).append(closeCell(random, "td"));
+                }
+                sb.append(closeRow(random));
+            }
+        }
+        if (section && random.nextBoolean()) {
+            sb.append(pick(random, "</tbody>", "</thead>", "</tfoot>"));
+        }
+        sb.append(pick(random, "</table>", "</table>\n", "</TABLE>", ""))
+          .append(pick(random, "", "<table class=\"link-table\"><tr><th>施設</th><th>9:00</th></tr><tr><td>後の表</td><td>○</td></tr></table>"))
+          .append("</body></html>");
+        return sb.toString();
+    }
+
+    /// 予約一覧に近い形のHTML
+    private static String reservedPage(Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<html><head><title>予約一覧</title>")
+          .append(pick(random, "", "<script>var t = '<table>';</script>", "<!-- <table><tr><td>x</td></tr></table> -->"))
+          .append("</head><body>\n")
+          .append(pick(random, "<table class=\"yyk-list\">", "<TABLE>", "<table border=1>"));
+        if (random.nextInt(4) == 0) {
+            sb.append("<tbody>");
+        }
+        sb.append(openRow(random)).append("<th>利用日時</th><th>施設</th>").append(pick(random, "<th>状態</th>", "")).append(closeRow(random));
+        int rows = random.nextInt(8);
+        for (int row = 0; row < rows; row++) {
+            int day = 1 + random.nextInt(28);
+            int hour = 9 + random.nextInt(6) * 2;
+            String ymd = String.format("202506%02d", day);
+            sb.append(openRow(random));
+            if (random.nextInt(6) == 0) {
+                sb.append("<th>").append(row).append(closeCell(random, "th"));
+            }
+            sb.append("<td>").append(space(random));
+            boolean link = random.nextInt(5) != 0;
+            if (link) {
+                sb.append(pick(random, "<a href=\"/cultos/reserve/gin_yyk_detail?ymd=" + ymd + "&amp;no=" + row + "\">",
+                        "<a href='/cultos/reserve/gin_yyk_detail?no=" + row + "&ymd=" + ymd + "'>", "<a>", "<a href=\"?ymd=" + ymd + "\">"));
+            }
+            sb.append("2025/06/").append(String.format("%02d", day)).append(pick(random, "(日) ", "(日)&nbsp;", "(日)\n", "(日)<br>"))
+              .append(hour).append(":00").append(pick(random, "〜", "～", " 〜 ")).append(hour + 2).append(":00");
+            if (link) {
+                sb.append(pick(random, "</a>", ""));
+            }
+            sb.append(inline(random)).append(closeCell(random, "td"))
+              .append("<td>").append(space(random)).append(COURT_NAMES[random.nextInt(COURT_NAMES.length)])
+              .append(1 + random.nextInt(8)).append("コート").append(inline(random)).append(closeCell(random, "td"));
+            if (random.nextBoolean()) {
+                sb.append("<td>予約済").append(closeCell(random, "td"));
+            }
+            sb.append(closeRow(random));
+        }
+        sb.append(pick(random, "</table>", "</TABLE>", ""))
+          .append("</body></html>");
+        return sb.toString();
+    }
+
+    /// 時間枠のセルの中身（リンク・記号・コメントなど）
+    private static String slot(Random random) {
+        StringBuilder sb = new StringBuilder();
+        switch (random.nextInt(6)) {
+            case 0:
+            case 1:
+                sb.append(pick(random, "<a href=\"/cultos/reserve/gin_yoyaku?ymd=" + YMD + "&amp;time=1\">",
+                        "<A HREF='/cultos/reserve/gin_yoyaku?ymd=" + YMD + "&time=2'>", "<a href=/cultos/reserve/x?a=1>",
+                        "<a href=\"  /cultos/reserve/y  \">", "<a href=\"\">", "<a name=\"x\">",
+                        "<a href=\"/r?a=1&amp;b=&lt;2&gt;\" href=\"/ignored\">"))
+                  .append(pick(random, "○", "<img src=\"/img/maru.gif\" alt=\"○\">○", "△", " ○ "))
+                  .append(pick(random, "</a>", "</A>", ""));
+                break;
+            case 2:
+                sb.append(pick(random, "×", "<!-- 予約済み -->×", "－", "&times;", "休"));
+                break;
+            case 3:
+                sb.append(pick(random, "○", "&#9675;", "△", "◯"));
+                break;
+            case 4:
+                sb.append(inline(random)).append(pick(random, "○", "×", "")).append(inline(random));
+                break;
+            default:
+                break;
+        }
+        if (random.nextInt(40) == 0) {
+            sb.append(FALLBACK[random.nextInt(FALLBACK.length)]);
+        }
+        if (random.nextInt(60) == 0) {
+            // 文字としての '<'
+            sb.append(pick(random, "a < b", "<1", "< /x>", "</ >"));
+        }
+        return sb.toString();
+    }
+
+    private static String openRow(Random random) {
+        return pick(random, "<tr>", "<tr>", "\n<tr>\n", "<TR class=\"r\">", "");
+    }
+
+    private static String closeRow(Random random) {
+        return pick(random, "</tr>", "</tr>\n", "</TR>", "");
+    }
+
+    private static String closeCell(Random random, String name) {
+        return pick(random, "</" + name + ">", "</" + name + ">", "", "</" + name.toUpperCase() + ">\n", "</" + (name.equals("td") ? "th" : "td") + ">");
+    }
+
+    private static String space(Random random) {
+        return SPACES[random.nextInt(SPACES.length)];
+    }
+
+    private static String inline(Random random) {
+        return INLINE[random.nextInt(INLINE.length)];
+    }
+
+    private static String pick(Random random, String... options) {
+        return options[random.nextInt(options.length)];
+    }
+
+    private static void assertSameTable(HtmlTableTokenizer.Table expected, HtmlTableTokenizer.Table actual, long seed, String html) {
+        assertEquals(describe(expected), describe(actual), () -> "表の読み取り結果が異なります（seed=" + seed + "）\n" + html);
+    }
+
+    private static void assertSameCourts(String html, long seed, Function<String, List<TennisCourt>> jsoup,
+                                         Function<String, List<TennisCourt>> streaming) {
+        assertEquals(describeCourts(jsoup.apply(html)), describeCourts(streaming.apply(html)),
+                () -> "解析結果が異なります（seed=" + seed + "）\n" + html);
+    }
+
+    /// 比較用に表を文字列化する
+    private static String describe(HtmlTableTokenizer.Table table) {
+        StringBuilder sb = new StringBuilder().append(table.isFound()).append('\n');
+        for (List<HtmlTableTokenizer.Cell> row : table.getRows()) {
+            for (HtmlTableTokenizer.Cell cell : row) {
+                sb.append(cell.isHeader() ? "th[" : "td[").append(cell.getText()).append("](").append(cell.getHref()).append(") ");
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /// 比較用にコートリストを文字列化する
+    private static String describeCourts(List<TennisCourt> courtList) {
+        StringBuilder sb = new StringBuilder();
+        for (TennisCourt court : courtList) {
+            sb.append(court.getCourtName()).append('@').append(court.getYmd()).append(court.getTimeSlotList()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -85,8 +85,36 @@ fi
 # 12) 作業ディレクトリへ移動（相対参照対策）
 cd "$WORKDIR"
 
-# 13) 実行（exec でプロセス置換：終了コードがそのまま launchd に伝わる）
-exec "$JAVA" -jar "$JAR" >> "$STDOUT_LOG" 2>> "$STDERR_LOG"
+# 13) 起動を速くするための設定
+#     RESV_STARTUP_TIMING=1 なら起動時間の計測のみ（起動から最初のHTTPリクエストまで。探索はしない）
+APP_ARGS=()
+[ "${RESV_STARTUP_TIMING:-}" = "1" ] && APP_ARGS=(--startup-timing)
+#     RESV_NATIVE=1 かつネイティブイメージ（mvn -P native package の resv-native）があればそれを実行
+NATIVE="$WORKDIR/resv-native"
+if [ "${RESV_NATIVE:-}" = "1" ] && [ "${RESV_DAEMON:-}" != "1" ] && [ -x "$NATIVE" ]; then
+  echo "$(date '+%Y-%m-%d %H:%M:%S') [INFO] native image: $NATIVE" >> "$STDOUT_LOG"
+  exec "$NATIVE" "${APP_ARGS[@]}" >> "$STDOUT_LOG" 2>> "$STDERR_LOG"
+fi
+#     AppCDS（RESV_CDS=0 で無効）：JARと同名の .jsa がJARより新しければ使い、なければ今回の実行の終了時に作成する
+#     （アーカイブはJARのパスに結びつくため、配置先で作成する）
+JSA="${JAR%.jar}.jsa"
+CDS_OPTS=()
+if [ "${RESV_CDS:-1}" = "1" ]; then
+  if [ -f "$JSA" ] && [ "$JSA" -nt "$JAR" ]; then
+    CDS_OPTS=(-XX:SharedArchiveFile="$JSA" -Xshare:auto)
+  else
+    CDS_OPTS=(-XX:ArchiveClassesAtExit="$JSA")
+    echo "$(date '+%Y-%m-%d %H:%M:%S') [INFO] creating CDS archive: $JSA" >> "$STDOUT_LOG"
+  fi
+fi
+
+# 14) 実行（exec でプロセス置換：終了コードがそのまま launchd に伝わる）
+#     RESV_DAEMON=1 なら常駐モード（JVMを起動したまま内部のスケジューラで探索を繰り返す）
+if [ "${RESV_DAEMON:-}" = "1" ]; then
+  echo "$(date '+%Y-%m-%d %H:%M:%S') [INFO] daemon mode" >> "$STDOUT_LOG"
+  exec "$JAVA" "${CDS_OPTS[@]}" -cp "$JAR" org.example.DaemonMain >> "$STDOUT_LOG" 2>> "$STDERR_LOG"
+fi
+exec "$JAVA" "${CDS_OPTS[@]}" -jar "$JAR" "${APP_ARGS[@]}" >> "$STDOUT_LOG" 2>> "$STDERR_LOG"
 
-# 14) 通常到達しないが保険
+# 15) 通常到達しないが保険
 rm -f "$LOCKFILE" 2>/dev/null || true